@@ -0,0 +1,21 @@
+package com.eric_eldard.harpocrates.benchmark;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * Runs JMH with the usual command line options (ex: a regex of the benchmarks to run, {@code -p threads=4},
+ * {@code -rf json}), adding the GC profiler unless it's been given already, so every result comes with its allocation
+ * rate
+ */
+public class BenchmarkRunner
+{
+    public static void main(String[] args) throws Exception
+    {
+        if (!Arrays.asList(args).contains("gc"))
+        {
+            args = Stream.concat(Stream.of("-prof", "gc"), Arrays.stream(args)).toArray(String[]::new);
+        }
+        org.openjdk.jmh.Main.main(args);
+    }
+}
@@ -0,0 +1,69 @@
+package com.eric_eldard.harpocrates.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.eric_eldard.harpocrates.persistence.ColumnDef;
+
+/**
+ * Writing each column of the sample table back out as a definition for a MODIFY, as the classifier does for every
+ * column it comments, from the column as {@code INFORMATION_SCHEMA.COLUMNS} describes it
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassifierBenchmark
+{
+    private final List<ColumnDef> columnDefs = columnDefs();
+
+    @Benchmark
+    public int toDefinition(ThroughputCounters counters)
+    {
+        int length = 0;
+        for (ColumnDef columnDef : columnDefs)
+        {
+            length += columnDef.toDefinition(true).length();
+        }
+        counters.count(columnDefs.size(), 0);
+        return length;
+    }
+
+    /**
+     * The sample table's columns, and a few with the attributes that take the most work to carry over
+     */
+    private static List<ColumnDef> columnDefs()
+    {
+        List<ColumnDef> columnDefs = new ArrayList<>();
+        for (String name : SampleDump.COLUMN_NAMES)
+        {
+            String unquoted = name.substring(1, name.length() - 1);
+            columnDefs.add(unquoted.equals("id") ?
+                new ColumnDef(unquoted, "bigint", null, null, null, false, null, "auto_increment", null, "") :
+                new ColumnDef(unquoted, "varchar(255)", "utf8mb4", "utf8mb4_0900_ai_ci", null, true, null, "", null,
+                    ""));
+        }
+        columnDefs.add(new ColumnDef("status", "varchar(20)", "utf8mb4", "utf8mb4_0900_ai_ci", null, false,
+            "it's \\new\\", "", null, ""));
+        columnDefs.add(new ColumnDef("created", "timestamp", null, null, null, false, "CURRENT_TIMESTAMP",
+            "DEFAULT_GENERATED", null, ""));
+        columnDefs.add(new ColumnDef("updated", "datetime(3)", null, null, null, true, "CURRENT_TIMESTAMP(3)",
+            "DEFAULT_GENERATED on update CURRENT_TIMESTAMP(3)", null, ""));
+        columnDefs.add(new ColumnDef("label", "varchar(300)", "utf8mb4", "utf8mb4_0900_ai_ci", null, true, null,
+            "VIRTUAL GENERATED INVISIBLE", "concat(`organization`,_utf8mb4' ',`doc_id`)", ""));
+        return columnDefs;
+    }
+}
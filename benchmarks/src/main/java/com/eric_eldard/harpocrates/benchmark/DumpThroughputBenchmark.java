@@ -0,0 +1,84 @@
+package com.eric_eldard.harpocrates.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.eric_eldard.harpocrates.service.ObfuscatorService;
+
+/**
+ * Obfuscating a whole dump file, from disk to disk, as READ_DUMP would. The dump is written once per trial, to the
+ * temp dir, which should be on a disk fast enough not to be what's measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class DumpThroughputBenchmark
+{
+    @Param({"SINGLE", "EXTENDED"})
+    public SampleDump.Shape shape;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"200000"})
+    public int rows;
+
+    private File dir;
+
+    private File dumpFile;
+
+    private long dumpSize;
+
+    private ObfuscatorService obfuscatorService;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        dir = Files.createTempDirectory("harpocrates-bench").toFile();
+        dumpFile = new File(dir, "dump.sql");
+        dumpSize = SampleDump.write(dumpFile, rows, shape);
+        // No checkpoints or progress reports; they'd only add syncs and logging to what's measured
+        obfuscatorService = new ObfuscatorService(threads, ObfuscatorService.DEFAULT_BATCH_SIZE, 0,
+            ObfuscatorService.OutputFormat.SQL, 0, Duration.ZERO);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        File[] files = dir.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Benchmark
+    public void obfuscate(ThroughputCounters counters) throws IOException
+    {
+        obfuscatorService.obfuscate(dumpFile, new File(dir, "obfuscated.sql").getPath());
+        counters.count(rows, dumpSize);
+    }
+}
@@ -0,0 +1,115 @@
+package com.eric_eldard.harpocrates.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.eric_eldard.harpocrates.service.AddressService;
+import com.eric_eldard.harpocrates.service.DateService;
+import com.eric_eldard.harpocrates.service.DocIdService;
+import com.eric_eldard.harpocrates.service.NameService;
+import com.eric_eldard.harpocrates.service.OrganizationService;
+import com.eric_eldard.harpocrates.service.PhoneNumberService;
+import com.eric_eldard.harpocrates.service.SsnService;
+
+/**
+ * Each of the services generating a replacement value, appending it to a reused buffer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeneratorBenchmark
+{
+    private final StringBuilder out = new StringBuilder(256);
+
+    @Benchmark
+    public StringBuilder address()
+    {
+        out.setLength(0);
+        AddressService.INSTANCE.appendAddress(out);
+        return out;
+    }
+
+    @Benchmark
+    public StringBuilder city()
+    {
+        out.setLength(0);
+        AddressService.INSTANCE.appendCity(out);
+        return out;
+    }
+
+    @Benchmark
+    public StringBuilder streetAddress()
+    {
+        out.setLength(0);
+        AddressService.INSTANCE.appendStreetAddress(out);
+        return out;
+    }
+
+    @Benchmark
+    public StringBuilder date()
+    {
+        out.setLength(0);
+        DateService.INSTANCE.appendRandomDate(out);
+        return out;
+    }
+
+    @Benchmark
+    public StringBuilder docId()
+    {
+        out.setLength(0);
+        DocIdService.INSTANCE.appendDocId("AA000000", out);
+        return out;
+    }
+
+    @Benchmark
+    public StringBuilder givenName()
+    {
+        out.setLength(0);
+        NameService.INSTANCE.appendGivenName(out);
+        return out;
+    }
+
+    @Benchmark
+    public StringBuilder surname()
+    {
+        out.setLength(0);
+        NameService.INSTANCE.appendSurname(out);
+        return out;
+    }
+
+    @Benchmark
+    public StringBuilder organization()
+    {
+        out.setLength(0);
+        OrganizationService.INSTANCE.appendOrganization(out);
+        return out;
+    }
+
+    @Benchmark
+    public StringBuilder phoneNumber()
+    {
+        out.setLength(0);
+        PhoneNumberService.INSTANCE.appendPhoneNumber(out);
+        return out;
+    }
+
+    @Benchmark
+    public StringBuilder ssn()
+    {
+        out.setLength(0);
+        SsnService.INSTANCE.appendSsn(out);
+        return out;
+    }
+}
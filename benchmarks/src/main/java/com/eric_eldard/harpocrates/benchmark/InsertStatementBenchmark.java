@@ -0,0 +1,72 @@
+package com.eric_eldard.harpocrates.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.eric_eldard.harpocrates.service.ObfuscatorService;
+
+/**
+ * The per-statement work of obfuscating a dump: finding the values in each tuple of an INSERT, and rewriting the
+ * INSERT with its sensitive values replaced. The dump is held in memory and obfuscated on a single thread, and the
+ * output is small enough to stay in the page cache, so it's the statements that are measured rather than the disk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InsertStatementBenchmark
+{
+    @Param({"SINGLE", "EXTENDED"})
+    public SampleDump.Shape shape;
+
+    @Param({"10000"})
+    public int rows;
+
+    // No checkpoints or progress reports; they'd only add syncs and logging to what's measured
+    private final ObfuscatorService obfuscatorService = new ObfuscatorService(1, ObfuscatorService.DEFAULT_BATCH_SIZE,
+        0, ObfuscatorService.OutputFormat.SQL, 0, Duration.ZERO);
+
+    private byte[] dump;
+
+    private File outputFile;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        dump = SampleDump.bytes(rows, shape);
+        outputFile = new File(Files.createTempDirectory("harpocrates-bench").toFile(), "obfuscated.sql");
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        outputFile.delete();
+        outputFile.getParentFile().delete();
+    }
+
+    @Benchmark
+    public void obfuscate(ThroughputCounters counters) throws IOException
+    {
+        obfuscatorService.obfuscate(new ByteArrayInputStream(dump), outputFile.getPath());
+        counters.count(rows, dump.length);
+    }
+}
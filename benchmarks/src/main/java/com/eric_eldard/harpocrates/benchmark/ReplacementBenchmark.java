@@ -0,0 +1,63 @@
+package com.eric_eldard.harpocrates.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.eric_eldard.harpocrates.io.ByteBuilder;
+import com.eric_eldard.harpocrates.model.ReplacementTemplate;
+import com.eric_eldard.harpocrates.service.RowReplacements;
+
+/**
+ * Writing one replacement value into an INSERT, from its compiled pattern: placeholders, document ID masks, and
+ * literal text, escaped and quoted. Each invocation is a new row, so no generated value is reused.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplacementBenchmark
+{
+    @Param({
+        "{FULL_ADDRESS}",
+        "{STREET_ADDRESS}, {CITY}, {STATE}, {ZIP_CODE}",
+        "{GIVEN_NAME}.{SURNAME}@test.com",
+        "#{AA000000}",
+        "ID-#{AA}-#{A0}-#{00}",
+        "4111111111111111"
+    })
+    public String pattern;
+
+    private final RowReplacements replacements = new RowReplacements();
+
+    private final ByteBuilder out = new ByteBuilder(1024);
+
+    private ReplacementTemplate template;
+
+    @Setup
+    public void setUp()
+    {
+        template = ReplacementTemplate.compile(pattern);
+    }
+
+    @Benchmark
+    public ByteBuilder appendTo()
+    {
+        out.setLength(0);
+        replacements.reset();
+        template.appendTo(out, replacements);
+        return out;
+    }
+}
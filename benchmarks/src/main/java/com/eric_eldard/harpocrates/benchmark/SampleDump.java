@@ -0,0 +1,172 @@
+package com.eric_eldard.harpocrates.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.eric_eldard.harpocrates.enumeration.Action;
+import com.eric_eldard.harpocrates.enumeration.DataType;
+import com.eric_eldard.harpocrates.model.DataDefinition;
+
+/**
+ * A mysqldump-style dump of a single table shaped like the demo's {@code Customer}: a mix of replaced, removed,
+ * ignored and unclassified columns, with values that are awkward to parse (commas, parens, both kinds of escaped
+ * quote, NULLs)
+ */
+public final class SampleDump
+{
+    public static final String TABLE_NAME = "`Customer`";
+
+    /**
+     * Data definitions keyed by backtick-quoted column name, in column order; {@code null} for unclassified columns
+     */
+    public static final Map<String, DataDefinition> COLUMNS = columns();
+
+    public static final List<String> COLUMN_NAMES = List.copyOf(COLUMNS.keySet());
+
+    public static final String COLUMN_LIST = String.join(", ", COLUMN_NAMES);
+
+    public enum Shape
+    {
+        /**
+         * One row per INSERT, as {@code mysqldump --extended-insert=FALSE} writes them
+         */
+        SINGLE(1),
+
+        /**
+         * Many rows per INSERT, as mysqldump writes them by default
+         */
+        EXTENDED(500);
+
+        private final int rowsPerInsert;
+
+        Shape(int rowsPerInsert)
+        {
+            this.rowsPerInsert = rowsPerInsert;
+        }
+
+        public int getRowsPerInsert()
+        {
+            return rowsPerInsert;
+        }
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    public static long write(File file, int rows, Shape shape) throws IOException
+    {
+        try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))
+        {
+            write(out, rows, shape);
+        }
+        return file.length();
+    }
+
+    /**
+     * @return the dump, in memory, for benchmarks which shouldn't measure reading it from disk
+     */
+    public static byte[] bytes(int rows, Shape shape)
+    {
+        StringWriter out = new StringWriter();
+        try
+        {
+            write(out, rows, shape);
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex); // a StringWriter never throws
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void write(Writer out, int rows, Shape shape) throws IOException
+    {
+        out.write("-- MySQL dump 10.13\n\n");
+        out.write("DROP TABLE IF EXISTS " + TABLE_NAME + ";\n");
+        out.write(createTable());
+        out.write("\nLOCK TABLES " + TABLE_NAME + " WRITE;\n");
+        out.write("/*!40000 ALTER TABLE " + TABLE_NAME + " DISABLE KEYS */;\n");
+        for (int id = 1; id <= rows; id += shape.getRowsPerInsert())
+        {
+            out.write(insert(id, Math.min(shape.getRowsPerInsert(), rows - id + 1)));
+            out.write('\n');
+        }
+        out.write("/*!40000 ALTER TABLE " + TABLE_NAME + " ENABLE KEYS */;\n");
+        out.write("UNLOCK TABLES;\n");
+    }
+
+    private static String createTable()
+    {
+        StringBuilder stmt = new StringBuilder("CREATE TABLE " + TABLE_NAME + " (\n");
+        COLUMNS.forEach((name, dataDef) ->
+        {
+            stmt.append("  ").append(name).append(name.equals("`id`") ? " bigint NOT NULL" : " varchar(255) DEFAULT NULL");
+            if (dataDef != null)
+            {
+                stmt.append(" COMMENT 'dataClassification=")
+                    .append(URLEncoder.encode(dataDef.toJson(), StandardCharsets.UTF_8))
+                    .append('\'');
+            }
+            stmt.append(",\n");
+        });
+        return stmt.append("  PRIMARY KEY (`id`)\n) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;\n").toString();
+    }
+
+    /**
+     * @return an INSERT of {@code rows} rows, with ids from {@code firstId} on, without a line terminator
+     */
+    private static String insert(int firstId, int rows)
+    {
+        StringBuilder stmt = new StringBuilder("INSERT INTO " + TABLE_NAME + " (" + COLUMN_LIST + ") VALUES ");
+        for (int id = firstId; id < firstId + rows; id++)
+        {
+            if (id > firstId)
+            {
+                stmt.append(',');
+            }
+            stmt.append('(').append(id)
+                .append(",'Initech, Inc. (").append(id).append(")'")
+                .append(",'").append(id).append(" O''Malley St, Springfield, IL, 62701'")
+                .append(",'").append(id).append(" Elm St'")
+                .append(",'4111-1111-1111-").append(String.format("%04d", id % 10_000)).append('\'')
+                .append(id % 7 == 0 ? ",NULL" : ",'W9-" + id + "'")
+                .append(",'it\\'s a secret, (isn''t it?)'")
+                .append(",'keep this, as-is'")
+                .append(",'not sensitive ").append(id).append('\'')
+                .append(",'ID-").append(id).append('\'')
+                .append(')');
+        }
+        return stmt.append(';').toString();
+    }
+
+    private static Map<String, DataDefinition> columns()
+    {
+        Map<String, DataDefinition> columns = new LinkedHashMap<>();
+        columns.put("`id`", null);
+        columns.put("`organization`", DataDefinition.of(DataType.ORGANIZATION, Action.REPLACE, null, null));
+        columns.put("`full_address`", DataDefinition.of(DataType.FULL_ADDRESS, Action.REPLACE, null, null));
+        columns.put("`random_address`", DataDefinition.of(DataType.ADDRESS, Action.REPLACE, null, null));
+        columns.put("`payment_card`", DataDefinition.of(DataType.PAYMENT_CARD, Action.REPLACE, null, null));
+        columns.put("`doc_id`", DataDefinition.of(DataType.DOCUMENT_ID, Action.REPLACE, null, "W9"));
+        columns.put("`remove_this_text`", DataDefinition.of(DataType.OTHER, Action.REMOVE, null, null));
+        columns.put("`ignore_this_text`", DataDefinition.of(DataType.OTHER, Action.IGNORE, null, null));
+        columns.put("`not_sensitive_text`", DataDefinition.of(DataType.NOT_SENSITIVE, Action.REPLACE, null, null));
+        columns.put("`multi_doc_id`", DataDefinition.of(DataType.OTHER, Action.REPLACE, "ID-#{AA}-#{A0}-#{00}", null));
+        return columns;
+    }
+
+    private SampleDump()
+    {
+        // util ctor
+    }
+}
@@ -0,0 +1,36 @@
+package com.eric_eldard.harpocrates.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the rows and bytes a benchmark gets through, which JMH reports alongside its score as rates: {@code rows}
+ * in rows per second and {@code mb} in MB per second (in throughput mode, with seconds as the output time unit)
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class ThroughputCounters
+{
+    public long rows;
+
+    public double mb;
+
+    @Setup(Level.Iteration)
+    public void reset()
+    {
+        rows = 0;
+        mb = 0;
+    }
+
+    /**
+     * Not a counter itself; JMH only reports public fields, and public methods that take no arguments
+     */
+    public void count(long rowCount, long byteCount)
+    {
+        rows += rowCount;
+        mb += byteCount / (double) (1 << 20);
+    }
+}
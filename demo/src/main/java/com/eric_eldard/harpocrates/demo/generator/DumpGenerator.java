@@ -0,0 +1,413 @@
+package com.eric_eldard.harpocrates.demo.generator;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.persistence.Entity;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.util.ClassUtils;
+
+import com.eric_eldard.harpocrates.annotation.DataClassification;
+
+/**
+ * Writes a made-up dump of the tables of your {@link DataClassification}-annotated entities, for load testing the
+ * obfuscator. It looks like the output of mysqldump: the tables are created as Hibernate would create them, with their
+ * classifications in their column comments, as {@code DataClassifierImpl} would write them, and are filled with rows of
+ * values which are shaped like the real thing, but awkward to parse (see {@link FakeValues}).
+ * <br><br>
+ * The same seed and options always make the same dump, byte for byte, so a throughput or memory regression can be
+ * measured against the same input every time.
+ * <pre>{@code
+ * java -cp harpocrates-demo-0.1-SNAPSHOT-fat.jar com.eric_eldard.harpocrates.demo.generator.DumpGenerator \
+ *     /path/to/dump.sql --size-mb=10240
+ * }</pre>
+ */
+public class DumpGenerator
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(DumpGenerator.class);
+
+    private static final String ROWS_OPTION = "rows";
+
+    private static final String SIZE_MB_OPTION = "size-mb";
+
+    private static final String WIDTH_OPTION = "width";
+
+    private static final String ROWS_PER_INSERT_OPTION = "rows-per-insert";
+
+    private static final String COMPLETE_INSERT_OPTION = "complete-insert";
+
+    private static final String SEED_OPTION = "seed";
+
+    private static final String THREADS_OPTION = "threads";
+
+    private static final String ENTITIES_OPTION = "entities";
+
+    private static final Set<String> OPTIONS = Set.of(
+        ROWS_OPTION,
+        SIZE_MB_OPTION,
+        WIDTH_OPTION,
+        ROWS_PER_INSERT_OPTION,
+        COMPLETE_INSERT_OPTION,
+        SEED_OPTION,
+        THREADS_OPTION,
+        ENTITIES_OPTION
+    );
+
+    private static final String DEFAULT_ENTITY_PACKAGE = "com.eric_eldard.harpocrates.demo.model";
+
+    /**
+     * About what mysqldump puts in an INSERT by default
+     */
+    public static final int DEFAULT_ROWS_PER_INSERT = 1000;
+
+    /**
+     * Enough to keep every worker busy while the INSERTs before theirs are written
+     */
+    private static final int INSERTS_AHEAD_PER_THREAD = 4;
+
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 20;
+
+    private static final long PROGRESS_INTERVAL = 1L << 30;
+
+    private static final String HEADER = """
+        -- MySQL dump 10.13  Distrib 8.0.33, for Linux (x86_64)
+        --
+        -- Host: localhost    Database: harpocrates
+        -- ------------------------------------------------------
+        -- Server version	8.0.33
+
+        /*!40101 SET @OLD_CHARACTER_SET_CLIENT=@@CHARACTER_SET_CLIENT */;
+        /*!50503 SET NAMES utf8mb4 */;
+        /*!40014 SET @OLD_UNIQUE_CHECKS=@@UNIQUE_CHECKS, UNIQUE_CHECKS=0 */;
+        /*!40014 SET @OLD_FOREIGN_KEY_CHECKS=@@FOREIGN_KEY_CHECKS, FOREIGN_KEY_CHECKS=0 */;
+        """;
+
+    private static final String FOOTER = """
+        /*!40014 SET FOREIGN_KEY_CHECKS=@OLD_FOREIGN_KEY_CHECKS */;
+        /*!40014 SET UNIQUE_CHECKS=@OLD_UNIQUE_CHECKS */;
+        /*!40101 SET CHARACTER_SET_CLIENT=@OLD_CHARACTER_SET_CLIENT */;
+
+        -- Dump completed
+        """;
+
+    private final List<EntityTable> tables;
+
+    private final int rowsPerInsert;
+
+    private final boolean completeInsert;
+
+    private final long seed;
+
+    private final int threads;
+
+    /**
+     * @param rowsPerInsert  1 for a dump like {@code mysqldump --extended-insert=FALSE} makes
+     * @param completeInsert {@code true} to list the columns in every INSERT, as {@code mysqldump --complete-insert}
+     *                       does
+     * @param threads        the number of threads making INSERTs. The dump is the same however many there are.
+     */
+    public DumpGenerator(List<EntityTable> tables, int rowsPerInsert, boolean completeInsert, long seed, int threads)
+    {
+        Preconditions.checkArgument(!tables.isEmpty(), "There are no tables to generate");
+        Preconditions.checkArgument(rowsPerInsert > 0, "Rows per INSERT must be positive");
+        Preconditions.checkArgument(threads > 0, "Threads must be positive");
+        this.tables = tables;
+        this.rowsPerInsert = rowsPerInsert;
+        this.completeInsert = completeInsert;
+        this.seed = seed;
+        this.threads = threads;
+    }
+
+    public static void main(String[] args)
+    {
+        if (args.length < 2)
+        {
+            throw new IllegalArgumentException("""
+                Too few arguments. Expected 2:
+                /output/dump.sql (--rows=n | --size-mb=n) [--width=n] [--rows-per-insert=n] [--complete-insert]
+                    [--seed=n] [--threads=n] [--entities=package.to.scan]
+                """.stripIndent());
+        }
+
+        Map<String, String> options = parseOptions(args);
+        Preconditions.checkArgument(options.containsKey(ROWS_OPTION) != options.containsKey(SIZE_MB_OPTION),
+            "Give either --rows or --size-mb");
+        int width = Integer.parseInt(options.getOrDefault(WIDTH_OPTION, "0"));
+        List<EntityTable> tables = findEntities(options.getOrDefault(ENTITIES_OPTION, DEFAULT_ENTITY_PACKAGE)).stream()
+            .map(entity -> EntityTable.of(entity, width))
+            .toList();
+        DumpGenerator generator = new DumpGenerator(
+            tables,
+            Integer.parseInt(options.getOrDefault(ROWS_PER_INSERT_OPTION, String.valueOf(DEFAULT_ROWS_PER_INSERT))),
+            Boolean.parseBoolean(options.getOrDefault(COMPLETE_INSERT_OPTION, "false")),
+            Long.parseLong(options.getOrDefault(SEED_OPTION, "0")),
+            Integer.parseInt(options.getOrDefault(
+                THREADS_OPTION, String.valueOf(Runtime.getRuntime().availableProcessors())))
+        );
+
+        File file = new File(args[0]);
+        long start = System.nanoTime();
+        long bytes;
+        try
+        {
+            bytes = options.containsKey(ROWS_OPTION) ?
+                generator.writeRows(file, Long.parseLong(options.get(ROWS_OPTION))) :
+                generator.writeSize(file, Long.parseLong(options.get(SIZE_MB_OPTION)) << 20);
+        }
+        catch (IOException ex)
+        {
+            throw new RuntimeException("Error writing dump to [" + file + "]", ex);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        LOGGER.info("Wrote {} MB to [{}] in {} s ({} MB/s)",
+            bytes >> 20, file, Math.round(seconds), Math.round((bytes >> 20) / seconds));
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    public long writeRows(File file, long rowsPerTable) throws IOException
+    {
+        return write(file, rowsPerTable, Long.MAX_VALUE);
+    }
+
+    /**
+     * Writes about {@code bytes}, split evenly between the tables; each table's rows stop with the INSERT which takes
+     * them past its share
+     *
+     * @return the number of bytes written
+     */
+    public long writeSize(File file, long bytes) throws IOException
+    {
+        return write(file, Long.MAX_VALUE, bytes / tables.size());
+    }
+
+    private long write(File file, long rowsPerTable, long bytesPerTable) throws IOException
+    {
+        try (CountingOutput out = new CountingOutput(new FileOutputStream(file));
+             ExecutorService workers = Executors.newFixedThreadPool(threads))
+        {
+            out.write(HEADER);
+            for (int t = 0; t < tables.size(); t++)
+            {
+                EntityTable table = tables.get(t);
+                String name = '`' + table.getName() + '`';
+                String insertPrefix = "INSERT INTO " + name + (completeInsert ? " (" + table.columnList() + ")" : "") +
+                    " VALUES ";
+                out.write("\n--\n-- Table structure for table " + name + "\n--\n\n" +
+                    "DROP TABLE IF EXISTS " + name + ";\n" +
+                    "/*!40101 SET @saved_cs_client     = @@character_set_client */;\n" +
+                    "/*!50503 SET character_set_client = utf8mb4 */;\n" +
+                    table.createTable() + '\n' +
+                    "/*!40101 SET character_set_client = @saved_cs_client */;\n\n" +
+                    "--\n-- Dumping data for table " + name + "\n--\n\n" +
+                    "LOCK TABLES " + name + " WRITE;\n" +
+                    "/*!40000 ALTER TABLE " + name + " DISABLE KEYS */;\n");
+
+                // INSERTs are made ahead on the workers, and written in order, until the table has enough
+                Deque<Future<byte[]>> pending = new ArrayDeque<>();
+                long tableStart = out.getCount();
+                long nextId = 1;
+                long insertNumber = 0;
+                while (out.getCount() - tableStart < bytesPerTable)
+                {
+                    while (pending.size() < threads * INSERTS_AHEAD_PER_THREAD && nextId <= rowsPerTable)
+                    {
+                        long firstId = nextId;
+                        int rows = (int) Math.min(rowsPerInsert, rowsPerTable - firstId + 1);
+                        long insertSeed = mix(mix(seed, t), insertNumber++);
+                        pending.add(workers.submit(() -> makeInsert(table, insertPrefix, firstId, rows, insertSeed)));
+                        nextId += rows;
+                    }
+                    if (pending.isEmpty())
+                    {
+                        break;
+                    }
+                    out.write(await(pending.remove()));
+                }
+                pending.forEach(insert -> insert.cancel(false));
+
+                out.write("/*!40000 ALTER TABLE " + name + " ENABLE KEYS */;\nUNLOCK TABLES;\n");
+            }
+            out.write(FOOTER);
+            return out.getCount();
+        }
+    }
+
+    /**
+     * @param seed the INSERT's own seed, so it comes out the same whichever worker makes it, and whenever
+     * @return the INSERT, with its line terminator, in UTF-8
+     */
+    private static byte[] makeInsert(EntityTable table, String insertPrefix, long firstId, int rows, long seed)
+    {
+        FakeValues values = new FakeValues(seed);
+        StringBuilder stmt = new StringBuilder(insertPrefix.length() + rows * 256).append(insertPrefix);
+        for (long id = firstId; id < firstId + rows; id++)
+        {
+            if (id > firstId)
+            {
+                stmt.append(',');
+            }
+            appendRow(stmt, table, id, values);
+        }
+        return stmt.append(";\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] await(Future<byte[]> insert) throws IOException
+    {
+        try
+        {
+            return insert.get();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating dump", ex);
+        }
+        catch (ExecutionException ex)
+        {
+            throw new RuntimeException("Error generating dump", ex.getCause());
+        }
+    }
+
+    /**
+     * @return a well-mixed combination of two numbers (SplitMix64's finalizer, applied to their sum), to derive a
+     * separate seed for each table and INSERT
+     */
+    private static long mix(long a, long b)
+    {
+        long z = a * 0x9E3779B97F4A7C15L + b;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static void appendRow(StringBuilder stmt, EntityTable table, long id, FakeValues values)
+    {
+        stmt.append('(');
+        List<EntityColumn> columns = table.getColumns();
+        for (int i = 0; i < columns.size(); i++)
+        {
+            if (i > 0)
+            {
+                stmt.append(',');
+            }
+            values.append(stmt, columns.get(i), id);
+        }
+        stmt.append(')');
+    }
+
+    /**
+     * @return the entity classes in {@code basePackage} with at least one {@link DataClassification}, by name
+     */
+    private static List<Class<?>> findEntities(String basePackage)
+    {
+        ClassPathScanningCandidateComponentProvider classPathScanner =
+            new ClassPathScanningCandidateComponentProvider(false);
+        classPathScanner.addIncludeFilter(new AnnotationTypeFilter(Entity.class));
+
+        List<Class<?>> entities = classPathScanner.findCandidateComponents(basePackage).stream()
+            .map(BeanDefinition::getBeanClassName)
+            .<Class<?>>map(className -> ClassUtils.resolveClassName(className, DumpGenerator.class.getClassLoader()))
+            .filter(DumpGenerator::hasDataClassifications)
+            .sorted(Comparator.comparing(Class::getName))
+            .toList();
+        Preconditions.checkArgument(!entities.isEmpty(),
+            "There are no entities with data classifications in [" + basePackage + "]");
+        return entities;
+    }
+
+    private static boolean hasDataClassifications(Class<?> entity)
+    {
+        return Arrays.stream(entity.getDeclaredFields())
+            .anyMatch(field -> field.isAnnotationPresent(DataClassification.class));
+    }
+
+    private static Map<String, String> parseOptions(String[] args)
+    {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i++)
+        {
+            String arg = args[i];
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--"))
+            {
+                throw new IllegalArgumentException(
+                    "Unrecognized option [" + arg + "]. Expected --name=value or --name");
+            }
+            String name = separator < 0 ? arg.substring(2) : arg.substring(2, separator);
+            if (!OPTIONS.contains(name))
+            {
+                throw new IllegalArgumentException("Unknown option [" + name + "]. Please choose from " + OPTIONS);
+            }
+            options.put(name, separator < 0 ? "true" : arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    /**
+     * Counts the bytes written, and logs progress every {@link #PROGRESS_INTERVAL}
+     */
+    private static class CountingOutput implements AutoCloseable
+    {
+        private final OutputStream out;
+
+        private long count;
+
+        private long nextProgress = PROGRESS_INTERVAL;
+
+        CountingOutput(OutputStream out)
+        {
+            this.out = new BufferedOutputStream(out, OUTPUT_BUFFER_SIZE);
+        }
+
+        void write(String text) throws IOException
+        {
+            write(text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void write(byte[] bytes) throws IOException
+        {
+            out.write(bytes);
+            count += bytes.length;
+            if (count >= nextProgress)
+            {
+                LOGGER.info("Wrote {} MB", count >> 20);
+                nextProgress += PROGRESS_INTERVAL;
+            }
+        }
+
+        long getCount()
+        {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.eric_eldard.harpocrates.demo.generator;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import com.eric_eldard.harpocrates.model.DataDefinition;
+
+@Getter
+@AllArgsConstructor
+public class EntityColumn
+{
+    private final String name;
+
+    private final Kind kind;
+
+    /**
+     * {@code null} if the column isn't classified
+     */
+    private final DataDefinition dataDefinition;
+
+    @Getter
+    @AllArgsConstructor
+    public enum Kind
+    {
+        ID("bigint NOT NULL AUTO_INCREMENT"),
+        NUMBER("bigint DEFAULT NULL"),
+        DATE("date DEFAULT NULL"),
+        DATETIME("datetime(6) DEFAULT NULL"),
+        TEXT("varchar(255) DEFAULT NULL");
+
+        /**
+         * The column's type and attributes, in a CREATE TABLE statement
+         */
+        private final String definition;
+    }
+}
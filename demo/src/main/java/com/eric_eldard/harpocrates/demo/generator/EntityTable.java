@@ -0,0 +1,158 @@
+package com.eric_eldard.harpocrates.demo.generator;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.core.annotation.AnnotationUtils;
+
+import com.eric_eldard.harpocrates.annotation.DataClassification;
+import com.eric_eldard.harpocrates.model.DataDefinition;
+
+/**
+ * The table an entity is stored in, as Hibernate would create it and {@code DataClassifierImpl} would comment it: every
+ * field a column, {@code camelCase} names in {@code snake_case} unless they're given by {@link Column}, and each
+ * {@link DataClassification} url-encoded into its column's comment
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class EntityTable
+{
+    private static final String EXTRA_COLUMN_PREFIX = "extra_text_";
+
+    private final String name;
+
+    private final List<EntityColumn> columns;
+
+    /**
+     * @param extraColumns the number of unclassified text columns to add after the entity's own, to widen its rows
+     */
+    public static EntityTable of(Class<?> entity, int extraColumns)
+    {
+        Table tableAnnotation = AnnotationUtils.findAnnotation(entity, Table.class);
+        String name = tableAnnotation == null || tableAnnotation.name().isEmpty() ?
+            entity.getSimpleName() :
+            tableAnnotation.name();
+
+        List<EntityColumn> columns = new ArrayList<>();
+        for (Field field : entity.getDeclaredFields())
+        {
+            if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers()) &&
+                !field.isAnnotationPresent(Transient.class))
+            {
+                columns.add(makeColumn(field));
+            }
+        }
+        for (int i = 1; i <= extraColumns; i++)
+        {
+            columns.add(new EntityColumn(EXTRA_COLUMN_PREFIX + i, EntityColumn.Kind.TEXT, null));
+        }
+        return new EntityTable(name, List.copyOf(columns));
+    }
+
+    /**
+     * @return a CREATE TABLE statement, as {@code SHOW CREATE TABLE} would print it
+     */
+    public String createTable()
+    {
+        StringBuilder stmt = new StringBuilder("CREATE TABLE `").append(name).append("` (\n");
+        String primaryKey = null;
+        for (EntityColumn column : columns)
+        {
+            stmt.append("  `").append(column.getName()).append("` ").append(column.getKind().getDefinition());
+            if (column.getDataDefinition() != null)
+            {
+                stmt.append(" COMMENT 'dataClassification=")
+                    .append(URLEncoder.encode(column.getDataDefinition().toJson(), StandardCharsets.UTF_8))
+                    .append('\'');
+            }
+            stmt.append(",\n");
+            if (column.getKind() == EntityColumn.Kind.ID)
+            {
+                primaryKey = column.getName();
+            }
+        }
+
+        if (primaryKey == null)
+        {
+            stmt.setLength(stmt.length() - 2);
+            stmt.append('\n');
+        }
+        else
+        {
+            stmt.append("  PRIMARY KEY (`").append(primaryKey).append("`)\n");
+        }
+        return stmt.append(") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;").toString();
+    }
+
+    /**
+     * @return the column names, backtick-quoted and comma-separated, as {@code mysqldump --complete-insert} lists them
+     */
+    public String columnList()
+    {
+        return columns.stream()
+            .map(column -> '`' + column.getName() + '`')
+            .collect(Collectors.joining(", "));
+    }
+
+    private static EntityColumn makeColumn(Field field)
+    {
+        Column columnAnnotation = AnnotationUtils.findAnnotation(field, Column.class);
+        String name = columnAnnotation == null || columnAnnotation.name().isEmpty() ?
+            toSnakeCase(field.getName()) :
+            columnAnnotation.name();
+
+        // Spring's AnnotationUtils, for DataClassification's aliases
+        DataClassification classification = AnnotationUtils.findAnnotation(field, DataClassification.class);
+        DataDefinition dataDefinition = classification == null ? null : DataDefinition.of(
+            classification.type(),
+            classification.action(),
+            classification.pattern(),
+            classification.description()
+        );
+
+        return new EntityColumn(name, kindOf(field), dataDefinition);
+    }
+
+    private static EntityColumn.Kind kindOf(Field field)
+    {
+        Class<?> type = field.getType();
+        if (field.isAnnotationPresent(Id.class))
+        {
+            return EntityColumn.Kind.ID;
+        }
+        else if (type == long.class || type == Long.class || type == int.class || type == Integer.class)
+        {
+            return EntityColumn.Kind.NUMBER;
+        }
+        else if (type == Date.class || type == LocalDateTime.class)
+        {
+            return EntityColumn.Kind.DATETIME;
+        }
+        else if (type == LocalDate.class)
+        {
+            return EntityColumn.Kind.DATE;
+        }
+        return EntityColumn.Kind.TEXT;
+    }
+
+    private static String toSnakeCase(String fieldName)
+    {
+        return fieldName.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase();
+    }
+}
@@ -0,0 +1,297 @@
+package com.eric_eldard.harpocrates.demo.generator;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import com.eric_eldard.harpocrates.enumeration.DataType;
+
+/**
+ * Made-up values, shaped like real data of each {@link DataType}, written as SQL literals the way mysqldump writes
+ * them. They're chosen to be awkward to parse: commas, parens and semicolons within strings, apostrophes escaped both
+ * as {@code \'} (as mysqldump does) and as {@code ''} (as other tools do), backslashes, escaped line breaks, multibyte
+ * characters and NULLs.
+ * <br><br>
+ * Every value comes from a single seeded random, so the same seed always makes the same values, in the same order.
+ */
+class FakeValues
+{
+    private static final Words GIVEN_NAMES = new Words(
+        "Mary", "James", "Zoë", "D'Andre", "Jean-Luc", "Siobhán", "Mei", "Ngozi", "Renée", "Mohammed", "Ana María",
+        "O'Neal"
+    );
+
+    private static final Words SURNAMES = new Words(
+        "O'Malley", "Smith, Jr.", "García", "Nguyen", "D'Angelo", "Van der Berg", "Müller", "Okafor", "St. John",
+        "Lee (née Park)", "Johnson", "Ó Briain"
+    );
+
+    private static final Words STREETS = new Words(
+        "O'Farrell St", "Main St, Apt 4", "Martin Luther King Jr. Blvd", "Rue de l'Église", "5th Ave (Rear)",
+        "Elm St", "Peachtree Rd NE, Suite 100", "Calle Ñandú"
+    );
+
+    private static final Words CITIES = new Words(
+        "Coeur d'Alene", "Winston-Salem", "St. Louis", "Washington, D.C.", "Española", "Springfield", "O'Fallon",
+        "New York"
+    );
+
+    private static final Words STATES = new Words("ID", "NC", "MO", "DC", "NM", "IL", "CA", "NY", "TX", "WA");
+
+    private static final Words ORGANIZATIONS = new Words(
+        "Initech, Inc.", "Smith & Sons (Holdings)", "Bob's Burgers", "Müller GmbH", "O'Reilly, O'Reilly & Partners",
+        "\"Acme\" Corp.", "Vandelay Industries; Import/Export", "Cyberdyne Systems"
+    );
+
+    private static final Words TEXT = new Words(
+        "lorem", "ipsum", "dolor", "it's", "a,b", "(see note)", "\"quoted\"", "C:\\temp\\", "line\nbreak",
+        "tab\there", "café", "100%", "semi;colon", "don't", "''", "),(", "NULL", "x"
+    );
+
+    private static final Words EMAIL_GIVEN_NAMES = GIVEN_NAMES.asEmailParts();
+
+    private static final Words EMAIL_SURNAMES = SURNAMES.asEmailParts();
+
+    private static final long FIRST_DAY = LocalDate.of(1900, 1, 1).toEpochDay();
+
+    private static final int DAYS = (int) (LocalDate.of(2020, 12, 31).toEpochDay() - FIRST_DAY);
+
+    private final SplittableRandom random;
+
+    FakeValues(long seed)
+    {
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Appends a value for {@code column}, as a SQL literal
+     *
+     * @param id the row's id, for an {@link EntityColumn.Kind#ID} column
+     */
+    void append(StringBuilder out, EntityColumn column, long id)
+    {
+        EntityColumn.Kind kind = column.getKind();
+        if (kind == EntityColumn.Kind.ID)
+        {
+            out.append(id);
+            return;
+        }
+        if (random.nextInt(20) == 0)
+        {
+            out.append("NULL");
+            return;
+        }
+
+        switch (kind)
+        {
+            case NUMBER -> out.append(random.nextInt(1_000_000));
+            case DATE ->
+            {
+                out.append('\'');
+                appendDate(out);
+                out.append('\'');
+            }
+            case DATETIME ->
+            {
+                out.append('\'');
+                appendDate(out);
+                out.append(' ');
+                appendPadded(out, random.nextInt(24)).append(':');
+                appendPadded(out, random.nextInt(60)).append(':');
+                appendPadded(out, random.nextInt(60)).append(".000000'");
+            }
+            default ->
+            {
+                out.append('\'');
+                appendText(out, column.getDataDefinition() == null ? null : column.getDataDefinition().getType());
+                out.append('\'');
+            }
+        }
+    }
+
+    /**
+     * Appends the inside of a string literal, already escaped
+     */
+    private void appendText(StringBuilder out, DataType type)
+    {
+        switch (type == null ? DataType.OTHER : type)
+        {
+            case ADDRESS, FULL_ADDRESS ->
+            {
+                appendStreetAddress(out);
+                out.append(", ");
+                appendWord(out, CITIES);
+                out.append(", ");
+                appendWord(out, STATES);
+                out.append(' ');
+                appendDigits(out, 5);
+            }
+            case CITY -> appendWord(out, CITIES);
+            case DATE -> appendDate(out);
+            case DOCUMENT_ID ->
+            {
+                out.append((char) ('A' + random.nextInt(26))).append((char) ('A' + random.nextInt(26))).append('-');
+                appendDigits(out, 6);
+            }
+            case EMAIL_ADDRESS ->
+            {
+                appendWord(out, EMAIL_GIVEN_NAMES);
+                out.append('.');
+                appendWord(out, EMAIL_SURNAMES);
+                out.append(random.nextInt(1000)).append("@example.com");
+            }
+            case FULL_NAME ->
+            {
+                appendWord(out, GIVEN_NAMES);
+                out.append(' ');
+                appendWord(out, SURNAMES);
+            }
+            case GIVEN_NAME -> appendWord(out, GIVEN_NAMES);
+            case IP_ADDRESS -> out.append(random.nextInt(1, 224)).append('.').append(random.nextInt(256)).append('.')
+                .append(random.nextInt(256)).append('.').append(random.nextInt(1, 255));
+            case ORGANIZATION -> appendWord(out, ORGANIZATIONS);
+            case PAYMENT_CARD ->
+            {
+                appendDigits(out, 4);
+                for (int group = 1; group < 4; group++)
+                {
+                    out.append('-');
+                    appendDigits(out, 4);
+                }
+            }
+            case PHONE_NUMBER ->
+            {
+                out.append('(');
+                appendDigits(out, 3);
+                out.append(") ");
+                appendDigits(out, 3);
+                out.append('-');
+                appendDigits(out, 4);
+            }
+            case STATE -> appendWord(out, STATES);
+            case STREET_ADDRESS -> appendStreetAddress(out);
+            case SSN ->
+            {
+                appendDigits(out, 3);
+                out.append('-');
+                appendDigits(out, 2);
+                out.append('-');
+                appendDigits(out, 4);
+            }
+            case SURNAME -> appendWord(out, SURNAMES);
+            case ZIP_CODE ->
+            {
+                appendDigits(out, 5);
+                if (random.nextBoolean())
+                {
+                    out.append('-');
+                    appendDigits(out, 4);
+                }
+            }
+            default ->
+            {
+                int words = random.nextInt(3, 12);
+                for (int i = 0; i < words; i++)
+                {
+                    out.append(i == 0 ? "" : random.nextInt(4) == 0 ? ", " : " ");
+                    appendWord(out, TEXT);
+                }
+            }
+        }
+    }
+
+    private void appendStreetAddress(StringBuilder out)
+    {
+        out.append(random.nextInt(1, 10_000)).append(' ');
+        appendWord(out, STREETS);
+    }
+
+    private void appendDate(StringBuilder out)
+    {
+        LocalDate date = LocalDate.ofEpochDay(FIRST_DAY + random.nextInt(DAYS));
+        out.append(date.getYear()).append('-');
+        appendPadded(out, date.getMonthValue()).append('-');
+        appendPadded(out, date.getDayOfMonth());
+    }
+
+    private void appendDigits(StringBuilder out, int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            out.append((char) ('0' + random.nextInt(10)));
+        }
+    }
+
+    /**
+     * @param number 0 - 99
+     */
+    private static StringBuilder appendPadded(StringBuilder out, int number)
+    {
+        return out.append((char) ('0' + number / 10)).append((char) ('0' + number % 10));
+    }
+
+    /**
+     * Appends a word picked at random, with any apostrophes doubled one time in four
+     */
+    private void appendWord(StringBuilder out, Words words)
+    {
+        int i = random.nextInt(words.escaped.length);
+        out.append(random.nextInt(4) == 0 ? words.doubled[i] : words.escaped[i]);
+    }
+
+    /**
+     * Words to pick from, escaped ahead of time, since most of what's written is made of them
+     */
+    private static class Words
+    {
+        private final String[] words;
+
+        /**
+         * As mysqldump escapes them
+         */
+        private final String[] escaped;
+
+        /**
+         * As {@link #escaped}, but with apostrophes doubled instead
+         */
+        private final String[] doubled;
+
+        Words(String... words)
+        {
+            this.words = words;
+            escaped = Arrays.stream(words).map(word -> escape(word, "\\'")).toArray(String[]::new);
+            doubled = Arrays.stream(words).map(word -> escape(word, "''")).toArray(String[]::new);
+        }
+
+        /**
+         * @return these words as they might appear in an email address: lower case, without spaces or punctuation,
+         * save the apostrophes and hyphens, which are legal there
+         */
+        Words asEmailParts()
+        {
+            return new Words(Arrays.stream(words)
+                .map(word -> word.toLowerCase().replaceAll("[^\\p{L}\\p{N}'-]", ""))
+                .toArray(String[]::new));
+        }
+
+        private static String escape(String word, String escapedApostrophe)
+        {
+            StringBuilder escaped = new StringBuilder(word.length() + 8);
+            for (int i = 0; i < word.length(); i++)
+            {
+                char c = word.charAt(i);
+                switch (c)
+                {
+                    case '\'' -> escaped.append(escapedApostrophe);
+                    case '"' -> escaped.append("\\\"");
+                    case '\\' -> escaped.append("\\\\");
+                    case '\n' -> escaped.append("\\n");
+                    case '\r' -> escaped.append("\\r");
+                    case '\0' -> escaped.append("\\0");
+                    default -> escaped.append(c);
+                }
+            }
+            return escaped.toString();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.eric_eldard.harpocrates.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A growable byte array, like a {@link StringBuilder} for UTF-8 output
+ */
+public class ByteBuilder
+{
+    private byte[] bytes;
+
+    private int length;
+
+    public ByteBuilder(int initialCapacity)
+    {
+        bytes = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    public int length()
+    {
+        return length;
+    }
+
+    /**
+     * Truncates back to {@code newLength}, which is no more than the current length
+     */
+    public void setLength(int newLength)
+    {
+        length = newLength;
+    }
+
+    public ByteBuilder append(byte b)
+    {
+        ensureCapacity(1);
+        bytes[length++] = b;
+        return this;
+    }
+
+    public ByteBuilder append(byte[] b)
+    {
+        ensureCapacity(b.length);
+        System.arraycopy(b, 0, bytes, length, b.length);
+        length += b.length;
+        return this;
+    }
+
+    /**
+     * Appends an ASCII char
+     */
+    public ByteBuilder append(char ch)
+    {
+        return append((byte) ch);
+    }
+
+    /**
+     * Appends bytes {@code [start, end)} of a {@link ByteLine}
+     */
+    public ByteBuilder append(ByteLine line, int start, int end)
+    {
+        return append(line.getBuffer(), line.getOffset() + start, line.getOffset() + end);
+    }
+
+    /**
+     * Appends bytes {@code [start, end)} of a buffer, without changing its position
+     */
+    public ByteBuilder append(ByteBuffer buffer, int start, int end)
+    {
+        int len = end - start;
+        ensureCapacity(len);
+        buffer.get(start, bytes, length, len);
+        length += len;
+        return this;
+    }
+
+    /**
+     * Appends {@code str} encoded as UTF-8
+     */
+    public ByteBuilder appendUtf8(String str)
+    {
+        ensureCapacity(str.length());
+        for (int i = 0; i < str.length(); i++)
+        {
+            char ch = str.charAt(i);
+            if (ch >= 0x80)
+            {
+                // Not ASCII after all; back out what we've written so far and encode the whole thing
+                length -= i;
+                byte[] encoded = str.getBytes(StandardCharsets.UTF_8);
+                ensureCapacity(encoded.length);
+                System.arraycopy(encoded, 0, bytes, length, encoded.length);
+                length += encoded.length;
+                return this;
+            }
+            bytes[length++] = (byte) ch;
+        }
+        return this;
+    }
+
+    /**
+     * Appends {@code str} encoded as UTF-8, doubling each occurrence of the ASCII char {@code quote}, as in the body of
+     * a SQL string literal. Unpaired surrogates are written as {@code ?}, as {@link String#getBytes} would.
+     */
+    public ByteBuilder appendUtf8Escaped(CharSequence str, char quote)
+    {
+        ensureCapacity(str.length());
+        for (int i = 0; i < str.length(); i++)
+        {
+            char ch = str.charAt(i);
+            if (ch < 0x80)
+            {
+                if (ch == quote)
+                {
+                    append((byte) ch);
+                }
+                append((byte) ch);
+            }
+            else if (ch < 0x800)
+            {
+                ensureCapacity(2);
+                bytes[length++] = (byte) (0xC0 | ch >> 6);
+                bytes[length++] = (byte) (0x80 | ch & 0x3F);
+            }
+            else if (Character.isHighSurrogate(ch) && i + 1 < str.length() && Character.isLowSurrogate(str.charAt(i + 1)))
+            {
+                int codePoint = Character.toCodePoint(ch, str.charAt(++i));
+                ensureCapacity(4);
+                bytes[length++] = (byte) (0xF0 | codePoint >> 18);
+                bytes[length++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                bytes[length++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                bytes[length++] = (byte) (0x80 | codePoint & 0x3F);
+            }
+            else if (Character.isSurrogate(ch))
+            {
+                append((byte) '?');
+            }
+            else
+            {
+                ensureCapacity(3);
+                bytes[length++] = (byte) (0xE0 | ch >> 12);
+                bytes[length++] = (byte) (0x80 | ch >> 6 & 0x3F);
+                bytes[length++] = (byte) (0x80 | ch & 0x3F);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Wraps bytes {@code [start, end)} without copying them; they mustn't be changed while the buffer is in use
+     */
+    public ByteBuffer toByteBuffer(int start, int end)
+    {
+        return ByteBuffer.wrap(bytes, start, end - start);
+    }
+
+    private void ensureCapacity(int additional)
+    {
+        if (length + additional > bytes.length)
+        {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + additional));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.eric_eldard.harpocrates.io;
+
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A line of a dump, viewed in place in the buffer of UTF-8 bytes it was read into.
+ * <br><br>
+ * As a {@link CharSequence}, each byte is one char, so a multibyte UTF-8 character appears as several chars above
+ * {@code 0x7F}. That's all a scanner needs, since everything it looks for (keywords, quotes, backticks, parens, commas)
+ * is ASCII, and no byte of a multibyte character is ever mistaken for ASCII. Only {@link #toString()} decodes.
+ */
+@Getter
+public class ByteLine implements CharSequence
+{
+    private final ByteBuffer buffer;
+
+    /**
+     * The index in {@link #buffer} where this line starts
+     */
+    private final int offset;
+
+    private final int length;
+
+    public ByteLine(ByteBuffer buffer, int offset, int length)
+    {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length()
+    {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index)
+    {
+        return (char) (buffer.get(offset + index) & 0xFF);
+    }
+
+    @Override
+    public ByteLine subSequence(int start, int end)
+    {
+        return new ByteLine(buffer, offset + start, end - start);
+    }
+
+    @Override
+    public String toString()
+    {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
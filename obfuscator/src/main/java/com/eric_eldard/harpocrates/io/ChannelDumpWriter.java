@@ -0,0 +1,50 @@
+package com.eric_eldard.harpocrates.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Writes a dump uncompressed, with as few system calls as possible
+ */
+public class ChannelDumpWriter implements ResumableDumpWriter
+{
+    private final FileChannel channel;
+
+    /**
+     * @param channel closed along with this writer
+     */
+    public ChannelDumpWriter(FileChannel channel)
+    {
+        this.channel = channel;
+    }
+
+    @Override
+    public void write(List<ByteBuffer> segments) throws IOException
+    {
+        ByteBuffer[] buffers = segments.toArray(new ByteBuffer[0]);
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers)
+        {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0)
+        {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    @Override
+    public long sync() throws IOException
+    {
+        channel.force(false);
+        return channel.position();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+}
@@ -0,0 +1,154 @@
+package com.eric_eldard.harpocrates.io;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import com.eric_eldard.harpocrates.model.DataDefinition;
+import com.eric_eldard.harpocrates.model.TableState;
+
+/**
+ * A point in an obfuscation run from which it can be resumed: how far into the dump it had read, how much of the
+ * output was written (and forced to storage) for everything before that, and the table state at that point. Saved
+ * beside the output as {@code <output>.hckp}.
+ */
+@Getter
+@AllArgsConstructor(staticName = "of")
+public class Checkpoint
+{
+    public static final String FILE_SUFFIX = ".hckp";
+
+    private static final int MAGIC = 0x48434B50; // "HCKP"
+
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the dump this run is reading, to make sure a resumed run reads the same one
+     */
+    private final long dumpSize;
+
+    private final long dumpLastModified;
+
+    /**
+     * The offset in the (uncompressed) dump of the first line not yet obfuscated
+     */
+    private final long inputOffset;
+
+    /**
+     * The length of the output file up to the end of that line's predecessor
+     */
+    private final long outputOffset;
+
+    private final TableState tableState;
+
+    /**
+     * @return a checkpoint at the very start of the dump
+     */
+    public static Checkpoint start(long dumpSize, long dumpLastModified)
+    {
+        return of(dumpSize, dumpLastModified, 0, 0, TableState.NONE);
+    }
+
+    public static File fileFor(File outputFile)
+    {
+        return new File(outputFile.getPath() + FILE_SUFFIX);
+    }
+
+    /**
+     * @return {@code null} if there's no checkpoint file
+     */
+    public static Checkpoint load(File checkpointFile) throws IOException
+    {
+        if (!checkpointFile.isFile())
+        {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpointFile))))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                throw new IOException("[" + checkpointFile + "] isn't a checkpoint file, or is from another version");
+            }
+            long dumpSize = in.readLong();
+            long dumpLastModified = in.readLong();
+            long inputOffset = in.readLong();
+            long outputOffset = in.readLong();
+            return of(dumpSize, dumpLastModified, inputOffset, outputOffset, readTableState(in));
+        }
+    }
+
+    /**
+     * Replaces the checkpoint file atomically, so a run killed partway through saving still leaves the last one intact
+     */
+    public void save(File checkpointFile) throws IOException
+    {
+        Path tempFile = Path.of(checkpointFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(dumpSize);
+            out.writeLong(dumpLastModified);
+            out.writeLong(inputOffset);
+            out.writeLong(outputOffset);
+            writeTableState(tableState, out);
+        }
+        Files.move(
+            tempFile,
+            checkpointFile.toPath(),
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE
+        );
+    }
+
+    /**
+     * Data definitions are saved as json, and the plan isn't saved at all; it's compiled again from the definitions
+     */
+    private static void writeTableState(TableState state, DataOutputStream out) throws IOException
+    {
+        out.writeBoolean(state.getTableName() != null);
+        if (state.getTableName() == null)
+        {
+            return;
+        }
+
+        out.writeUTF(state.getTableName());
+        out.writeInt(state.getColumnNames().size());
+        for (String colName : state.getColumnNames())
+        {
+            DataDefinition dataDef = state.getDataDefs().get(colName);
+            out.writeUTF(colName);
+            out.writeUTF(dataDef == null ? "" : dataDef.toJson());
+        }
+        out.writeBoolean(state.getPlan() != null);
+    }
+
+    private static TableState readTableState(DataInputStream in) throws IOException
+    {
+        if (!in.readBoolean())
+        {
+            return TableState.NONE;
+        }
+
+        TableState state = TableState.of(in.readUTF());
+        int columnCount = in.readInt();
+        for (int i = 0; i < columnCount; i++)
+        {
+            String colName = in.readUTF();
+            String dataDefJson = in.readUTF();
+            state = state.withColumn(colName, dataDefJson.isEmpty() ? null : DataDefinition.from(dataDefJson));
+        }
+        return in.readBoolean() ? state.withPlan() : state;
+    }
+}
@@ -0,0 +1,196 @@
+package com.eric_eldard.harpocrates.io;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.eric_eldard.harpocrates.model.DumpSection;
+import com.eric_eldard.harpocrates.model.DumpStatement;
+import com.eric_eldard.harpocrates.util.StatementScanner;
+
+/**
+ * Where each table's section of a dump file starts: the byte offset of every CREATE TABLE that comes after the
+ * previous table's ENABLE KEYS. The obfuscator carries no state between tables, so each section can be obfuscated
+ * independently of the others.
+ * <br><br>
+ * Building an index means reading the whole dump, so it's saved beside the dump (as {@code <dump>.hidx}) and reused for
+ * as long as the dump's size and modification time are unchanged.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class DumpIndex
+{
+    public static final String FILE_SUFFIX = ".hidx";
+
+    private static final int MAGIC = 0x48494458; // "HIDX"
+
+    private static final int VERSION = 1;
+
+    private final long dumpSize;
+
+    private final long dumpLastModified;
+
+    /**
+     * In ascending order. The section before the first table (the dump's header) isn't included.
+     */
+    private final long[] tableStarts;
+
+    /**
+     * @return the saved index for this dump if there's a current one; otherwise, a new index, which is saved for next
+     * time if the dump's directory is writable
+     */
+    public static DumpIndex forDump(File dumpFile, FileChannel channel) throws IOException
+    {
+        File indexFile = new File(dumpFile.getPath() + FILE_SUFFIX);
+        long size = channel.size();
+        long lastModified = dumpFile.lastModified();
+
+        DumpIndex index = load(indexFile);
+        if (index != null && index.dumpSize == size && index.dumpLastModified == lastModified)
+        {
+            return index;
+        }
+
+        index = new DumpIndex(size, lastModified, scan(channel));
+        index.save(indexFile);
+        return index;
+    }
+
+    /**
+     * Divides the dump into sections of whole tables, merging neighbouring tables until each section (but the last) is
+     * at least {@code minBytes} long, so a dump of many small tables isn't split into many tiny sections
+     */
+    public List<DumpSection> sections(long minBytes)
+    {
+        List<DumpSection> sections = new ArrayList<>();
+        long sectionStart = 0;
+        for (long tableStart : tableStarts)
+        {
+            if (tableStart - sectionStart >= minBytes)
+            {
+                sections.add(DumpSection.of(sectionStart, tableStart));
+                sectionStart = tableStart;
+            }
+        }
+        if (sectionStart < dumpSize || sections.isEmpty())
+        {
+            sections.add(DumpSection.of(sectionStart, dumpSize));
+        }
+        return sections;
+    }
+
+    /**
+     * Reads the dump for table boundaries, scanning only the lines which could be a CREATE TABLE or ENABLE KEYS (the
+     * same ones {@link StatementScanner} would recognize as such). A CREATE TABLE found before the previous table's
+     * ENABLE KEYS doesn't start a section; the obfuscator will reject the dump when it reaches that line.
+     */
+    private static long[] scan(FileChannel channel) throws IOException
+    {
+        List<Long> tableStarts = new ArrayList<>();
+        boolean inTable = false;
+
+        MappedDumpReader reader = new MappedDumpReader(channel, 0, channel.size());
+        long chunkOffset = 0;
+        for (ByteBuffer chunk = reader.nextChunk(); chunk != null; chunk = reader.nextChunk())
+        {
+            int lineStart = 0;
+            while (lineStart < chunk.limit())
+            {
+                int lineEnd = lineStart;
+                while (lineEnd < chunk.limit() && chunk.get(lineEnd) != '\n')
+                {
+                    lineEnd++;
+                }
+
+                byte firstByte = chunk.get(lineStart);
+                if (firstByte == '/' || firstByte == 'A' || firstByte == 'C')
+                {
+                    DumpStatement.Type type =
+                        StatementScanner.scan(new ByteLine(chunk, lineStart, lineEnd - lineStart)).getType();
+                    if (type == DumpStatement.Type.CREATE_TABLE && !inTable)
+                    {
+                        tableStarts.add(chunkOffset + lineStart);
+                        inTable = true;
+                    }
+                    else if (type == DumpStatement.Type.ENABLE_KEYS)
+                    {
+                        inTable = false;
+                    }
+                }
+
+                lineStart = lineEnd + 1;
+            }
+            chunkOffset += chunk.limit();
+        }
+
+        return tableStarts.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * @return {@code null} if there's no index file, or it can't be read
+     */
+    private static DumpIndex load(File indexFile)
+    {
+        if (!indexFile.isFile())
+        {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile))))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                return null;
+            }
+            long dumpSize = in.readLong();
+            long dumpLastModified = in.readLong();
+            long[] tableStarts = new long[in.readInt()];
+            for (int i = 0; i < tableStarts.length; i++)
+            {
+                tableStarts[i] = in.readLong();
+            }
+            return new DumpIndex(dumpSize, dumpLastModified, tableStarts);
+        }
+        catch (IOException ex)
+        {
+            // A damaged index is no worse than a missing one; it'll be rebuilt
+            return null;
+        }
+    }
+
+    /**
+     * The index only saves time, so if it can't be saved, it's simply rebuilt next time
+     */
+    private void save(File indexFile)
+    {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(dumpSize);
+            out.writeLong(dumpLastModified);
+            out.writeInt(tableStarts.length);
+            for (long tableStart : tableStarts)
+            {
+                out.writeLong(tableStart);
+            }
+        }
+        catch (IOException ex)
+        {
+            indexFile.delete();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.eric_eldard.harpocrates.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A source of dump bytes, read as a series of chunks which each end on a line boundary, so no line is ever split across
+ * two chunks
+ */
+public interface DumpReader
+{
+    /**
+     * @return the next chunk of whole lines, from index 0 to its limit, or {@code null} at the end of the dump. Only the
+     * last chunk may end without a line terminator. A chunk's contents mustn't change once it's been returned, as it
+     * may still be in use while later chunks are read.
+     */
+    ByteBuffer nextChunk() throws IOException;
+}
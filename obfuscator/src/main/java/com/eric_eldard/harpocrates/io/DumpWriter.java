@@ -0,0 +1,51 @@
+package com.eric_eldard.harpocrates.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * A destination for obfuscated dump bytes. Calls to {@link #write(List)} are made in dump order, from one thread at a
+ * time. Writers which can be resumed into are {@link ResumableDumpWriter}s.
+ */
+public interface DumpWriter extends Closeable
+{
+    /**
+     * Writes each buffer's bytes from its position to its limit
+     */
+    void write(List<ByteBuffer> segments) throws IOException;
+
+    /**
+     * Opens {@code file} for writing, replacing anything already in it. If its name ends in {@code .gz}, the dump is
+     * gzipped as it's written.
+     * @param threads the number of threads to compress on, if compressing
+     */
+    static ResumableDumpWriter open(File file, int threads) throws IOException
+    {
+        return open(file, 0, threads);
+    }
+
+    /**
+     * Opens {@code file} for writing from {@code resumeAt} on, discarding anything after it
+     * @param resumeAt a length returned by {@link ResumableDumpWriter#sync()}
+     */
+    static ResumableDumpWriter open(File file, long resumeAt, int threads) throws IOException
+    {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() < resumeAt)
+        {
+            channel.close();
+            throw new IOException("[" + file + "] is shorter than the " + resumeAt + " bytes expected");
+        }
+        channel.truncate(resumeAt);
+        channel.position(resumeAt);
+
+        return file.getName().endsWith(".gz") ?
+            new ParallelGzipDumpWriter(channel, threads) :
+            new ChannelDumpWriter(channel);
+    }
+}
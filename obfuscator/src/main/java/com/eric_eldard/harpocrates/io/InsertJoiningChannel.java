@@ -0,0 +1,88 @@
+package com.eric_eldard.harpocrates.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a dump whose INSERT statements may each span several lines, as mydumper writes them (one tuple per line), and
+ * joins each back onto a single line, as mysqldump writes them, so it can be read line by line like any other dump.
+ * <br><br>
+ * A line break within an INSERT can only ever fall between tuples, since a line break within a value is always escaped,
+ * so any line break after the start of an INSERT is dropped, until one which follows the statement's {@code ;}.
+ */
+public class InsertJoiningChannel implements ReadableByteChannel
+{
+    private static final byte[] INSERT_PREFIX = "INSERT ".getBytes(StandardCharsets.US_ASCII);
+
+    private final ReadableByteChannel in;
+
+    /**
+     * The number of bytes of {@link #INSERT_PREFIX} the current line has started with so far, or -1 once it's not an
+     * INSERT
+     */
+    private int prefixMatched;
+
+    private boolean inInsert;
+
+    /**
+     * The last byte kept
+     */
+    private byte lastByte = '\n';
+
+    public InsertJoiningChannel(ReadableByteChannel in)
+    {
+        this.in = in;
+    }
+
+    /**
+     * May read fewer bytes than the underlying channel did, or none at all, if it's dropped line breaks
+     */
+    @Override
+    public int read(ByteBuffer dst) throws IOException
+    {
+        int start = dst.position();
+        int read = in.read(dst);
+        if (read <= 0)
+        {
+            return read;
+        }
+
+        int kept = start;
+        for (int i = start; i < start + read; i++)
+        {
+            byte b = dst.get(i);
+            if (b == '\n')
+            {
+                if (inInsert && lastByte != ';')
+                {
+                    continue;
+                }
+                inInsert = false;
+                prefixMatched = 0;
+            }
+            else if (!inInsert && prefixMatched >= 0)
+            {
+                prefixMatched = b == INSERT_PREFIX[prefixMatched] ? prefixMatched + 1 : -1;
+                inInsert = prefixMatched == INSERT_PREFIX.length;
+            }
+            lastByte = b;
+            dst.put(kept++, b);
+        }
+        dst.position(kept);
+        return kept - start;
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return in.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        in.close();
+    }
+}
@@ -0,0 +1,68 @@
+package com.eric_eldard.harpocrates.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * A {@link DumpWriter} which rewrites the dump line by line. The dump bytes it's given are split back into lines,
+ * whatever the boundaries of the buffers they arrive in.
+ */
+public abstract class LineDumpWriter implements DumpWriter
+{
+    private static final int INITIAL_LINE_CAPACITY = 64 * 1024;
+
+    /**
+     * The start of a line split across calls to {@link #write(List)}
+     */
+    private final ByteBuilder partialLine = new ByteBuilder(INITIAL_LINE_CAPACITY);
+
+    @Override
+    public void write(List<ByteBuffer> segments) throws IOException
+    {
+        for (ByteBuffer segment : segments)
+        {
+            int lineStart = segment.position();
+            for (int i = lineStart; i < segment.limit(); i++)
+            {
+                if (segment.get(i) != '\n')
+                {
+                    continue;
+                }
+                if (partialLine.length() > 0)
+                {
+                    partialLine.append(segment, lineStart, i);
+                    writePartialLine();
+                }
+                else
+                {
+                    writeLine(new ByteLine(segment, lineStart, i - lineStart));
+                }
+                lineStart = i + 1;
+            }
+            partialLine.append(segment, lineStart, segment.limit());
+        }
+    }
+
+    /**
+     * @param line a line, without its terminator. Only valid for the duration of the call.
+     */
+    protected abstract void writeLine(ByteLine line) throws IOException;
+
+    /**
+     * Writes the dump's last line, if it had no terminator. Called on closing, before anything else is finished.
+     */
+    protected void writeLastLine() throws IOException
+    {
+        if (partialLine.length() > 0)
+        {
+            writePartialLine();
+        }
+    }
+
+    private void writePartialLine() throws IOException
+    {
+        writeLine(new ByteLine(partialLine.toByteBuffer(0, partialLine.length()), 0, partialLine.length()));
+        partialLine.setLength(0);
+    }
+}
@@ -0,0 +1,96 @@
+package com.eric_eldard.harpocrates.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a dump file as a series of memory-mapped chunks, each of which ends on a line boundary, so no line is ever
+ * split across two chunks and no bytes are copied out of the page cache to read them
+ */
+public class MappedDumpReader implements DumpReader
+{
+    public static final int DEFAULT_CHUNK_SIZE = 256 * 1024 * 1024;
+
+    private final FileChannel channel;
+
+    private final int chunkSize;
+
+    private final long end;
+
+    private long position;
+
+    public MappedDumpReader(FileChannel channel) throws IOException
+    {
+        this(channel, DEFAULT_CHUNK_SIZE);
+    }
+
+    public MappedDumpReader(FileChannel channel, int chunkSize) throws IOException
+    {
+        this.channel = channel;
+        this.chunkSize = chunkSize;
+        this.end = channel.size();
+        this.position = channel.position();
+    }
+
+    /**
+     * Reads only bytes {@code [start, end)} of the channel, which must fall on line boundaries. The channel's position
+     * is neither used nor changed, so readers of different ranges can share a channel across threads.
+     */
+    public MappedDumpReader(FileChannel channel, long start, long end)
+    {
+        this.channel = channel;
+        this.chunkSize = DEFAULT_CHUNK_SIZE;
+        this.end = end;
+        this.position = start;
+    }
+
+    @Override
+    public ByteBuffer nextChunk() throws IOException
+    {
+        if (position >= end)
+        {
+            return null;
+        }
+
+        long mapSize = Math.min(chunkSize, end - position);
+        while (true)
+        {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, mapSize);
+            if (position + mapSize == end)
+            {
+                position = end;
+                return mapped;
+            }
+
+            int end = lastLineEnd(mapped);
+            if (end > 0)
+            {
+                position += end;
+                return mapped.slice(0, end);
+            }
+
+            // A single line longer than the chunk; map more of the file
+            if (mapSize == Integer.MAX_VALUE)
+            {
+                throw new IOException("Line starting at byte " + position + " is longer than " + mapSize + " bytes");
+            }
+            mapSize = Math.min(Math.min(mapSize * 2, Integer.MAX_VALUE), end - position);
+        }
+    }
+
+    /**
+     * @return the index just past the last line terminator in the buffer, or 0 if there is none
+     */
+    private static int lastLineEnd(ByteBuffer buffer)
+    {
+        for (int i = buffer.limit() - 1; i >= 0; i--)
+        {
+            if (buffer.get(i) == '\n')
+            {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,166 @@
+package com.eric_eldard.harpocrates.io;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The files of a dump made by mydumper: for each table, its CREATE TABLE in {@code <db>.<table>-schema.sql} and its
+ * rows in one or more data files, {@code <db>.<table>.sql} or numbered chunks like {@code <db>.<table>.00000.sql}, any
+ * of which may be gzipped ({@code .sql.gz}). Everything else (the {@code metadata} file, database, view and trigger
+ * schemas) holds no rows.
+ * <br><br>
+ * Data files are only recognized by the schema files they belong to, so a data file in a format which can't be read
+ * (ex: {@code --load-data} or zstd compression), or without a schema file to say which of its columns are classified,
+ * is an error rather than something to be copied unobfuscated.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class MydumperDirectory
+{
+    private static final String SCHEMA_SUFFIX = "-schema.sql";
+
+    private static final String METADATA_FILE = "metadata";
+
+    /**
+     * What follows {@code <db>.<table>} in the name of a data file we can read
+     */
+    private static final Pattern DATA_FILE_SUFFIX = Pattern.compile("(\\.\\d+)*\\.sql(\\.gz)?");
+
+    /**
+     * What follows {@code <db>.<table>} in the name of a data file we can't
+     */
+    private static final Pattern UNREADABLE_DATA_FILE_SUFFIX = Pattern.compile("(\\.\\d+)*\\.(sql|dat)\\.\\w+|\\.dat");
+
+    /**
+     * The name of any data file, of any table
+     */
+    private static final Pattern ANY_DATA_FILE = Pattern.compile(".+\\.(sql|dat)(\\.\\w+)?");
+
+    private final List<Table> tables;
+
+    /**
+     * Files with no rows in them, schema files included, to be copied as they are
+     */
+    private final List<File> otherFiles;
+
+    /**
+     * @return {@code true} if this is a directory with a mydumper {@code metadata} file in it
+     */
+    public static boolean isMydumperDirectory(File dir)
+    {
+        return new File(dir, METADATA_FILE).isFile();
+    }
+
+    /**
+     * @throws IllegalArgumentException if there's a data file that can't be obfuscated
+     */
+    public static MydumperDirectory scan(File dir)
+    {
+        File[] entries = dir.listFiles();
+        if (entries == null)
+        {
+            throw new IllegalArgumentException("Cannot list the files in [" + dir + ']');
+        }
+        List<File> files = new ArrayList<>();
+        for (File entry : entries)
+        {
+            if (entry.isFile())
+            {
+                files.add(entry);
+            }
+            else if (!entry.isDirectory())
+            {
+                // Most likely a name which can't be encoded in the file system's charset (see sun.jnu.encoding)
+                throw new IllegalArgumentException("Cannot read [" + entry + ']');
+            }
+        }
+        files.sort(null);
+
+        Map<String, Table> tablesByKey = new HashMap<>();
+        for (File file : files)
+        {
+            String key = schemaKey(file.getName());
+            if (key != null)
+            {
+                tablesByKey.put(key, new Table(file, new ArrayList<>()));
+            }
+        }
+        // Longest first, so a table named like another with a suffix (ex: t and t.1) can't take the other's data files
+        List<String> keys = tablesByKey.keySet().stream()
+            .sorted(Comparator.comparingInt(String::length).reversed())
+            .toList();
+
+        List<File> otherFiles = new ArrayList<>();
+        for (File file : files)
+        {
+            String name = file.getName();
+            String key = keys.stream()
+                .filter(k -> name.startsWith(k + '.'))
+                .findFirst()
+                .orElse(null);
+
+            if (key != null && DATA_FILE_SUFFIX.matcher(name.substring(key.length())).matches())
+            {
+                tablesByKey.get(key).dataFiles.add(file);
+            }
+            else if (isUnreadableDataFile(name, key))
+            {
+                throw new IllegalArgumentException("Cannot obfuscate data file [" + file + "]; " + (key == null ?
+                    "there's no schema file for its table" :
+                    "only uncompressed and gzipped SQL data files are supported"));
+            }
+            else
+            {
+                otherFiles.add(file);
+            }
+        }
+
+        return new MydumperDirectory(List.copyOf(tablesByKey.values()), otherFiles);
+    }
+
+    /**
+     * @return {@code <db>.<table>} if this is a table's schema file, otherwise {@code null}
+     */
+    private static String schemaKey(String fileName)
+    {
+        String name = fileName.endsWith(".gz") ? fileName.substring(0, fileName.length() - 3) : fileName;
+        return name.endsWith(SCHEMA_SUFFIX) ? name.substring(0, name.length() - SCHEMA_SUFFIX.length()) : null;
+    }
+
+    /**
+     * @param key the {@code <db>.<table>} the name starts with, if any
+     */
+    private static boolean isUnreadableDataFile(String fileName, String key)
+    {
+        if (key != null)
+        {
+            return UNREADABLE_DATA_FILE_SUFFIX.matcher(fileName.substring(key.length())).matches();
+        }
+        // Every file mydumper writes that isn't a table's data has -schema in its name, except for the metadata
+        return !fileName.contains("-schema") && ANY_DATA_FILE.matcher(fileName).matches();
+    }
+
+    /**
+     * A table's schema file and data files
+     */
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class Table
+    {
+        private final File schemaFile;
+
+        /**
+         * In name order
+         */
+        private final List<File> dataFiles;
+    }
+}
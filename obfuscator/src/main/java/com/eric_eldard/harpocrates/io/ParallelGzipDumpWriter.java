@@ -0,0 +1,211 @@
+package com.eric_eldard.harpocrates.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a dump gzipped, pigz-style: the dump is cut into fixed-size blocks, and each block is compressed on a pool of
+ * threads as its own gzip member. The members are written back out in order. A file of concatenated members is a valid
+ * gzip file, which gunzip (and {@link java.util.zip.GZIPInputStream}) read as a single stream.
+ */
+public class ParallelGzipDumpWriter implements ResumableDumpWriter
+{
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    /**
+     * A gzip member header: magic number, deflate, no flags, no mtime, no extra flags, unknown OS
+     */
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final FileChannel channel;
+
+    private final int blockSize;
+
+    /**
+     * {@code null} if compressing on the calling thread
+     */
+    private final ExecutorService compressors;
+
+    private final int maxPendingBlocks;
+
+    private final Deque<Future<ByteBuffer>> pendingBlocks = new ArrayDeque<>();
+
+    private byte[] block;
+
+    private int blockLength;
+
+    /**
+     * @param channel closed along with this writer
+     * @param threads the number of threads compressing blocks; if 1, blocks are compressed on the calling thread
+     */
+    public ParallelGzipDumpWriter(FileChannel channel, int threads)
+    {
+        this(channel, threads, DEFAULT_BLOCK_SIZE);
+    }
+
+    public ParallelGzipDumpWriter(FileChannel channel, int threads, int blockSize)
+    {
+        this.channel = channel;
+        this.blockSize = blockSize;
+        this.compressors = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        this.maxPendingBlocks = threads * 2;
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(List<ByteBuffer> segments) throws IOException
+    {
+        for (ByteBuffer segment : segments)
+        {
+            int position = segment.position();
+            while (position < segment.limit())
+            {
+                int len = Math.min(segment.limit() - position, blockSize - blockLength);
+                segment.get(position, block, blockLength, len);
+                position += len;
+                blockLength += len;
+                if (blockLength == blockSize)
+                {
+                    submitBlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Ends the current block early, so everything written so far is in complete gzip members
+     */
+    @Override
+    public long sync() throws IOException
+    {
+        writeAllBlocks();
+        channel.force(false);
+        return channel.position();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try (channel)
+        {
+            writeAllBlocks();
+        }
+        finally
+        {
+            if (compressors != null)
+            {
+                compressors.shutdownNow();
+            }
+        }
+    }
+
+    private void writeAllBlocks() throws IOException
+    {
+        if (blockLength > 0)
+        {
+            submitBlock();
+        }
+        while (!pendingBlocks.isEmpty())
+        {
+            writeNextBlock();
+        }
+    }
+
+    private void submitBlock() throws IOException
+    {
+        byte[] full = block;
+        int len = blockLength;
+        if (compressors == null)
+        {
+            writeFully(compress(full, len));
+        }
+        else
+        {
+            pendingBlocks.add(compressors.submit(() -> compress(full, len)));
+            block = new byte[blockSize]; // the full block's still being read by its compressor
+            while (pendingBlocks.size() > maxPendingBlocks)
+            {
+                writeNextBlock();
+            }
+        }
+        blockLength = 0;
+    }
+
+    private void writeNextBlock() throws IOException
+    {
+        try
+        {
+            writeFully(pendingBlocks.remove().get());
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing dump", ex);
+        }
+        catch (ExecutionException ex)
+        {
+            throw new IOException("Error compressing dump", ex.getCause());
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * @return a complete gzip member holding {@code bytes[0, len)}
+     */
+    private static ByteBuffer compress(byte[] bytes, int len)
+    {
+        // A deflater's native memory is only freed when it's ended, so each block gets its own. Next to deflating a
+        // whole block, making one is cheap.
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try
+        {
+            deflater.setInput(bytes, 0, len);
+            deflater.finish();
+
+            // Incompressible data can grow a little; leave room for that, the header and the trailer
+            byte[] out = new byte[len + len / 1000 + 64];
+            System.arraycopy(GZIP_HEADER, 0, out, 0, GZIP_HEADER.length);
+            int outLength = GZIP_HEADER.length;
+            while (!deflater.finished())
+            {
+                if (outLength == out.length)
+                {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                outLength += deflater.deflate(out, outLength, out.length - outLength);
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, len);
+
+            ByteBuffer member = ByteBuffer.allocate(outLength + 8).order(ByteOrder.LITTLE_ENDIAN);
+            member.put(out, 0, outLength);
+            member.putInt((int) crc.getValue());
+            member.putInt(len);
+            return member.flip();
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.eric_eldard.harpocrates.io;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.eric_eldard.harpocrates.model.DumpStatement;
+import com.eric_eldard.harpocrates.util.StatementScanner;
+
+/**
+ * Merges consecutive INSERTs into the same table (and columns) into extended INSERTs of up to a maximum size, before
+ * passing the dump on to another writer. Restoring a dump of single-row INSERTs is mostly per-statement overhead; this
+ * makes it look like one made with {@code mysqldump --extended-insert}. Keep the maximum within the server's
+ * {@code max_allowed_packet}. An INSERT which is already bigger than that is left as it is.
+ * <br><br>
+ * Each run of INSERTs (a table's data section, in a mysqldump dump) is also wrapped in a transaction, with unique and
+ * foreign key checks off, as {@code mysqldump --no-autocommit} would. The session's settings are restored after it.
+ */
+public class RebatchingDumpWriter extends LineDumpWriter implements ResumableDumpWriter
+{
+    private static final int FLUSH_BYTES = 8 * 1024 * 1024;
+
+    private static final byte[] BEGIN_RUN = ("SET @saved_unique_checks=@@UNIQUE_CHECKS, UNIQUE_CHECKS=0, " +
+        "@saved_foreign_key_checks=@@FOREIGN_KEY_CHECKS, FOREIGN_KEY_CHECKS=0, " +
+        "@saved_autocommit=@@AUTOCOMMIT, AUTOCOMMIT=0;\n").getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] END_RUN = ("COMMIT;\n" +
+        "SET UNIQUE_CHECKS=@saved_unique_checks, FOREIGN_KEY_CHECKS=@saved_foreign_key_checks, " +
+        "AUTOCOMMIT=@saved_autocommit;\n").getBytes(StandardCharsets.UTF_8);
+
+    private final ResumableDumpWriter out;
+
+    private final int maxInsertBytes;
+
+    private final ByteBuilder buffer = new ByteBuilder(FLUSH_BYTES + FLUSH_BYTES / 4);
+
+    private boolean inRun;
+
+    /**
+     * Everything before the first tuple of the INSERT being built ({@code INSERT INTO `table` (...) VALUES }), or
+     * {@code null} if there isn't one
+     */
+    private byte[] insertPrefix;
+
+    private int insertLength;
+
+    /**
+     * @param out            closed along with this writer
+     * @param maxInsertBytes the most bytes in a merged INSERT, including its terminating {@code ;}
+     */
+    public RebatchingDumpWriter(ResumableDumpWriter out, int maxInsertBytes)
+    {
+        this.out = out;
+        this.maxInsertBytes = maxInsertBytes;
+    }
+
+    /**
+     * Ends the current INSERT and transaction, so a run resumed from here starts a fresh one
+     */
+    @Override
+    public long sync() throws IOException
+    {
+        endRun();
+        flush();
+        return out.sync();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try (out)
+        {
+            writeLastLine();
+            endRun();
+            flush();
+        }
+    }
+
+    @Override
+    protected void writeLine(ByteLine line) throws IOException
+    {
+        DumpStatement stmt = StatementScanner.isInsert(line) ? StatementScanner.scan(line) : DumpStatement.OTHER;
+        if (stmt.getType() != DumpStatement.Type.INSERT || line.charAt(line.length() - 1) != ';')
+        {
+            endRun();
+            buffer.append(line, 0, line.length()).append('\n');
+        }
+        else
+        {
+            int valuesStart = stmt.getValuesStart();
+            int valuesEnd = line.length() - 1;
+            if (!inRun)
+            {
+                buffer.append(BEGIN_RUN);
+                inRun = true;
+            }
+            if (insertPrefix != null &&
+                (!prefixEquals(line, valuesStart) || insertLength + 1 + valuesEnd - valuesStart > maxInsertBytes))
+            {
+                endInsert();
+            }
+
+            if (insertPrefix == null)
+            {
+                insertPrefix = new byte[valuesStart];
+                line.getBuffer().get(line.getOffset(), insertPrefix);
+                buffer.append(insertPrefix);
+                insertLength = valuesStart + 1; // with the ; to come
+            }
+            else
+            {
+                buffer.append(',');
+                insertLength++;
+            }
+            buffer.append(line, valuesStart, valuesEnd);
+            insertLength += valuesEnd - valuesStart;
+        }
+
+        if (buffer.length() >= FLUSH_BYTES)
+        {
+            flush();
+        }
+    }
+
+    private boolean prefixEquals(ByteLine line, int prefixLength)
+    {
+        if (prefixLength != insertPrefix.length)
+        {
+            return false;
+        }
+        for (int i = 0; i < prefixLength; i++)
+        {
+            if (line.charAt(i) != (insertPrefix[i] & 0xFF))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void endInsert()
+    {
+        if (insertPrefix != null)
+        {
+            buffer.append(';').append('\n');
+            insertPrefix = null;
+        }
+    }
+
+    private void endRun()
+    {
+        endInsert();
+        if (inRun)
+        {
+            buffer.append(END_RUN);
+            inRun = false;
+        }
+    }
+
+    private void flush() throws IOException
+    {
+        if (buffer.length() > 0)
+        {
+            out.write(List.of(buffer.toByteBuffer(0, buffer.length())));
+            buffer.setLength(0);
+        }
+    }
+}
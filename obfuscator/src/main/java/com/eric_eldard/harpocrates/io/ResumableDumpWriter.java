@@ -0,0 +1,16 @@
+package com.eric_eldard.harpocrates.io;
+
+import java.io.IOException;
+
+/**
+ * A {@link DumpWriter} to a single file, which a failed run can be resumed into from a {@link Checkpoint}
+ */
+public interface ResumableDumpWriter extends DumpWriter
+{
+    /**
+     * Writes everything written so far through to the file and forces it to storage, so the file could be truncated
+     * back to this point and written on from there
+     * @return the file's length
+     */
+    long sync() throws IOException;
+}
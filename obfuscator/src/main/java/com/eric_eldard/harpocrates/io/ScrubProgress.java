@@ -0,0 +1,236 @@
+package com.eric_eldard.harpocrates.io;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * How far an in-place scrub of a database has got, table by table: which tables are done, and for each table under
+ * way, the primary key of the last row up to which every row has been scrubbed and committed. Saved beside the
+ * database's properties file as {@code <properties>.hscrub}.
+ */
+public class ScrubProgress
+{
+    public static final String FILE_SUFFIX = ".hscrub";
+
+    private static final int MAGIC = 0x48534352; // "HSCR"
+
+    private static final int VERSION = 2;
+
+    /**
+     * The database being scrubbed, to make sure a resumed run scrubs the same one
+     */
+    @Getter
+    private final String url;
+
+    private final Set<String> finishedTables;
+
+    /**
+     * Key column values, keyed by backtick-quoted table name
+     */
+    private final Map<String, List<KeyValue>> lastKeys;
+
+    private ScrubProgress(String url, Set<String> finishedTables, Map<String, List<KeyValue>> lastKeys)
+    {
+        this.url = url;
+        this.finishedTables = finishedTables;
+        this.lastKeys = lastKeys;
+    }
+
+    /**
+     * @return progress for a scrub which hasn't started
+     */
+    public static ScrubProgress start(String url)
+    {
+        return new ScrubProgress(url, new HashSet<>(), new HashMap<>());
+    }
+
+    public static File fileFor(File propertiesFile)
+    {
+        return new File(propertiesFile.getPath() + FILE_SUFFIX);
+    }
+
+    /**
+     * @return {@code null} if there's no progress file
+     */
+    public static ScrubProgress load(File progressFile) throws IOException
+    {
+        if (!progressFile.isFile())
+        {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(progressFile))))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                throw new IOException("[" + progressFile + "] isn't a scrub progress file, or is from another version");
+            }
+            ScrubProgress progress = start(in.readUTF());
+
+            int finishedCount = in.readInt();
+            for (int i = 0; i < finishedCount; i++)
+            {
+                progress.finishedTables.add(in.readUTF());
+            }
+
+            int startedCount = in.readInt();
+            for (int i = 0; i < startedCount; i++)
+            {
+                String tableName = in.readUTF();
+                KeyValue[] key = new KeyValue[in.readInt()];
+                for (int k = 0; k < key.length; k++)
+                {
+                    key[k] = KeyValue.read(in);
+                }
+                progress.lastKeys.put(tableName, List.of(key));
+            }
+            return progress;
+        }
+    }
+
+    public boolean isFinished(String tableName)
+    {
+        return finishedTables.contains(tableName);
+    }
+
+    /**
+     * @return {@code null} if the table hasn't been started
+     */
+    public List<KeyValue> getLastKey(String tableName)
+    {
+        return lastKeys.get(tableName);
+    }
+
+    /**
+     * Every row of the table up to and including the one with this key has been scrubbed
+     */
+    public void reached(String tableName, List<KeyValue> lastKey)
+    {
+        lastKeys.put(tableName, lastKey);
+    }
+
+    public void finished(String tableName)
+    {
+        lastKeys.remove(tableName);
+        finishedTables.add(tableName);
+    }
+
+    /**
+     * Replaces the progress file atomically, so a run killed partway through saving still leaves the last one intact
+     */
+    public void save(File progressFile) throws IOException
+    {
+        Path tempFile = Path.of(progressFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(url);
+
+            out.writeInt(finishedTables.size());
+            for (String tableName : finishedTables)
+            {
+                out.writeUTF(tableName);
+            }
+
+            out.writeInt(lastKeys.size());
+            for (Map.Entry<String, List<KeyValue>> entry : lastKeys.entrySet())
+            {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (KeyValue keyValue : entry.getValue())
+                {
+                    keyValue.write(out);
+                }
+            }
+        }
+        Files.move(
+            tempFile,
+            progressFile.toPath(),
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE
+        );
+    }
+
+    /**
+     * The value of one primary key column, with its JDBC type (see {@link Types}), so it can be bound back as that
+     * type. Bound as a string, a key would be compared as one, losing the bytes of a binary key, or the precision of a
+     * BIGINT beyond 2^53.
+     */
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class KeyValue
+    {
+        private final int sqlType;
+
+        /**
+         * The value's bytes for a binary type, or its string form for any other
+         */
+        private final Object value;
+
+        public static KeyValue of(int sqlType, String value)
+        {
+            return new KeyValue(sqlType, value);
+        }
+
+        public static KeyValue of(int sqlType, byte[] value)
+        {
+            return new KeyValue(sqlType, value);
+        }
+
+        /**
+         * @return {@code true} if values of this type are read and kept as bytes
+         */
+        public static boolean isBinary(int sqlType)
+        {
+            return sqlType == Types.BINARY ||
+                sqlType == Types.VARBINARY ||
+                sqlType == Types.LONGVARBINARY ||
+                sqlType == Types.BLOB;
+        }
+
+        private static KeyValue read(DataInputStream in) throws IOException
+        {
+            int sqlType = in.readInt();
+            if (isBinary(sqlType))
+            {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return of(sqlType, bytes);
+            }
+            return of(sqlType, in.readUTF());
+        }
+
+        private void write(DataOutputStream out) throws IOException
+        {
+            out.writeInt(sqlType);
+            if (value instanceof byte[] bytes)
+            {
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            else
+            {
+                out.writeUTF((String) value);
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.eric_eldard.harpocrates.io;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes the sections of a dump concurrently, each to its own temporary segment file, and stitches the segments into
+ * the output in section order as they complete
+ */
+public final class SegmentStitcher
+{
+    private static final int STITCH_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Writes one section of a dump to its segment
+     * @param <E> a checked exception the task may throw, besides {@link IOException}
+     */
+    @FunctionalInterface
+    public interface SegmentTask<T, E extends Exception>
+    {
+        void write(T section, DumpWriter segment) throws IOException, E;
+    }
+
+    /**
+     * Called once a section's segment has been written to the output
+     */
+    @FunctionalInterface
+    public interface StitchListener<T>
+    {
+        void stitched(T section) throws IOException;
+    }
+
+    public static <T, E extends Exception> void stitch(List<T> sections,
+                                                       SegmentTask<T, E> task,
+                                                       int threads,
+                                                       Path segmentDir,
+                                                       DumpWriter out
+    ) throws IOException, E
+    {
+        stitch(sections, task, threads, segmentDir, out, section -> {});
+    }
+
+    /**
+     * Segments are created in {@code segmentDir}, which should be on the same filesystem as the output, and are always
+     * deleted by the time this returns. A failed task's exception is rethrown as-is once the sections before it are
+     * written.
+     * @param threads the number of sections written at a time
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, E extends Exception> void stitch(List<T> sections,
+                                                       SegmentTask<T, E> task,
+                                                       int threads,
+                                                       Path segmentDir,
+                                                       DumpWriter out,
+                                                       StitchListener<T> listener
+    ) throws IOException, E
+    {
+        List<Future<Path>> segments = new ArrayList<>(sections.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            for (T section : sections)
+            {
+                segments.add(executor.submit(() -> writeSegment(section, task, segmentDir)));
+            }
+
+            for (int i = 0; i < segments.size(); i++)
+            {
+                Path segmentFile = segments.get(i).get();
+                copy(segmentFile, out);
+                Files.delete(segmentFile);
+                listener.stitched(sections.get(i));
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing dump segments", ex);
+        }
+        catch (ExecutionException ex)
+        {
+            if (ex.getCause() instanceof RuntimeException runtimeEx)
+            {
+                throw runtimeEx;
+            }
+            if (ex.getCause() instanceof IOException ioEx)
+            {
+                throw ioEx;
+            }
+            if (ex.getCause() instanceof Error error)
+            {
+                throw error;
+            }
+            // Anything else checked can only be the task's E
+            throw (E) ex.getCause();
+        }
+        finally
+        {
+            executor.shutdownNow();
+            executor.close();
+
+            // Clean up the segments of any sections which were written, but not stitched, before a failure
+            for (Future<Path> segment : segments)
+            {
+                if (segment.state() == Future.State.SUCCESS)
+                {
+                    Files.deleteIfExists(segment.resultNow());
+                }
+            }
+        }
+    }
+
+    private static <T, E extends Exception> Path writeSegment(T section, SegmentTask<T, E> task, Path segmentDir)
+        throws IOException, E
+    {
+        Path segmentFile = Files.createTempFile(segmentDir, ".harpocrates-", ".part");
+        boolean completed = false;
+        try (DumpWriter segment = new ChannelDumpWriter(FileChannel.open(segmentFile, StandardOpenOption.WRITE)))
+        {
+            task.write(section, segment);
+            completed = true;
+            return segmentFile;
+        }
+        finally
+        {
+            if (!completed)
+            {
+                Files.deleteIfExists(segmentFile);
+            }
+        }
+    }
+
+    private static void copy(Path segmentFile, DumpWriter out) throws IOException
+    {
+        try (FileChannel segment = FileChannel.open(segmentFile, StandardOpenOption.READ))
+        {
+            long size = segment.size();
+            for (long position = 0; position < size; position += STITCH_CHUNK_SIZE)
+            {
+                out.write(List.of(
+                    segment.map(FileChannel.MapMode.READ_ONLY, position, Math.min(STITCH_CHUNK_SIZE, size - position))
+                ));
+            }
+        }
+    }
+
+    private SegmentStitcher()
+    {
+        // util ctor
+    }
+}
@@ -0,0 +1,94 @@
+package com.eric_eldard.harpocrates.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads a dump from a stream, such as a pipe from mysqldump, which can't be mapped or read more than once. Each chunk
+ * is read into a new heap buffer; whatever's left over after the chunk's last line terminator is carried over to the
+ * start of the next one.
+ */
+public class StreamDumpReader implements DumpReader
+{
+    public static final int DEFAULT_CHUNK_SIZE = 32 * 1024 * 1024;
+
+    private final ReadableByteChannel channel;
+
+    private final int chunkSize;
+
+    /**
+     * The partial line read after the end of the last chunk, from its position to its limit, if any
+     */
+    private ByteBuffer carryOver;
+
+    private boolean endOfStream;
+
+    public StreamDumpReader(ReadableByteChannel channel)
+    {
+        this(channel, DEFAULT_CHUNK_SIZE);
+    }
+
+    public StreamDumpReader(ReadableByteChannel channel, int chunkSize)
+    {
+        this.channel = channel;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public ByteBuffer nextChunk() throws IOException
+    {
+        int carryOverSize = carryOver == null ? 0 : carryOver.remaining();
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(chunkSize, carryOverSize * 2));
+        if (carryOver != null)
+        {
+            buffer.put(carryOver);
+            carryOver = null;
+        }
+
+        int searchFrom = 0;
+        while (true)
+        {
+            while (!endOfStream && buffer.hasRemaining())
+            {
+                endOfStream = channel.read(buffer) < 0;
+            }
+
+            if (endOfStream)
+            {
+                return buffer.position() == 0 ? null : buffer.flip();
+            }
+
+            int end = lastLineEnd(buffer, searchFrom);
+            if (end > 0)
+            {
+                carryOver = buffer.slice(end, buffer.position() - end);
+                return buffer.slice(0, end);
+            }
+
+            // A single line longer than the chunk; keep reading it into a bigger buffer
+            if (buffer.capacity() == Integer.MAX_VALUE)
+            {
+                throw new IOException("Line is longer than " + buffer.capacity() + " bytes");
+            }
+            searchFrom = buffer.position();
+            ByteBuffer bigger = ByteBuffer.allocate((int) Math.min(buffer.capacity() * 2L, Integer.MAX_VALUE));
+            buffer = bigger.put(buffer.flip());
+        }
+    }
+
+    /**
+     * @return the index just past the last line terminator in {@code [from, position)}, or 0 if there is none
+     */
+    private static int lastLineEnd(ByteBuffer buffer, int from)
+    {
+        for (int i = buffer.position() - 1; i >= from; i--)
+        {
+            if (buffer.get(i) == '\n')
+            {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,296 @@
+package com.eric_eldard.harpocrates.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.eric_eldard.harpocrates.exception.BadMatchException;
+import com.eric_eldard.harpocrates.model.DumpStatement;
+import com.eric_eldard.harpocrates.util.StatementScanner;
+import com.eric_eldard.harpocrates.util.TabEncoder;
+
+/**
+ * Writes a dump as a directory of files for a bulk load, like {@code mysqldump --tab} does: for each table, its
+ * CREATE TABLE statement in {@code <table>.sql} and its rows in {@code <table>.txt}, tab-separated as LOAD DATA reads
+ * them (see {@link TabEncoder}). Everything else in the dump goes into a driver script, {@value #DRIVER_SCRIPT}, in
+ * which each CREATE TABLE is replaced with a SOURCE of the table's schema file, and each table's INSERTs with a single
+ * LOAD DATA LOCAL INFILE of its data file. Running the driver script with the mysql client, from the directory,
+ * restores the whole dump:
+ * <pre>
+ * mysql --local-infile=1 db_name &lt; restore-dump.sql
+ * </pre>
+ * Table names are used for file names with anything but letters, digits, {@code _} and {@code $} encoded as
+ * {@code @xxxx} (as MySQL names its own files), so no table's files can collide with the driver script.
+ * <br><br>
+ * Data files are loaded with {@code CHARACTER SET binary}, so their bytes go into the table unconverted, in whatever
+ * character set the dump was written.
+ * <br><br>
+ * The output is spread over too many files to resume, so this isn't a {@link ResumableDumpWriter}.
+ */
+public class TabDumpWriter extends LineDumpWriter
+{
+    public static final String DRIVER_SCRIPT = "restore-dump.sql";
+
+    /**
+     * A file's buffer is written out once it holds this many bytes
+     */
+    private static final int FLUSH_BYTES = 1024 * 1024;
+
+    private final File dir;
+
+    private final BufferedFile driver;
+
+    /**
+     * The column list of each table with a data file, as given in its INSERTs ({@code ""} if they have none)
+     */
+    private final Map<String, String> dataColumns = new HashMap<>();
+
+    /**
+     * Every file written, so they can be told apart from whatever else is in the directory
+     */
+    private final Set<File> files = new LinkedHashSet<>();
+
+    /**
+     * The CREATE TABLE statement being read, or {@code null} if we're not in one
+     */
+    private ByteBuilder schema;
+
+    private String schemaTableName;
+
+    private BufferedFile data;
+
+    private String dataTableName;
+
+    /**
+     * @param dir an existing directory; any files of the same names in it are replaced
+     */
+    public TabDumpWriter(File dir) throws IOException
+    {
+        this.dir = dir;
+        this.driver = open(DRIVER_SCRIPT, false);
+    }
+
+    /**
+     * Deletes the files this writer has written, and nothing else in the directory. For getting rid of an incomplete
+     * dump, once it's closed.
+     */
+    public void deleteFiles() throws IOException
+    {
+        for (File file : files)
+        {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try (driver)
+        {
+            writeLastLine();
+            if (schema != null)
+            {
+                throw new BadMatchException("Reached the end of the dump inside the definition of " + schemaTableName);
+            }
+        }
+        finally
+        {
+            closeData();
+        }
+    }
+
+    @Override
+    protected void writeLine(ByteLine line) throws IOException
+    {
+        if (schema != null)
+        {
+            schema.append(line, 0, line.length()).append('\n');
+            if (StatementScanner.scan(line).getType() == DumpStatement.Type.CREATE_TABLE_END)
+            {
+                try (BufferedFile schemaFile = open(fileName(schemaTableName, ".sql"), false))
+                {
+                    schemaFile.write(schema);
+                }
+                driver.append("SOURCE ").append(fileName(schemaTableName, ".sql")).append("\n");
+                schema = null;
+            }
+            return;
+        }
+
+        DumpStatement stmt = StatementScanner.scan(line);
+        switch (stmt.getType())
+        {
+            case INSERT -> writeRows(line, stmt);
+            case CREATE_TABLE ->
+            {
+                schemaTableName = stmt.getName();
+                if (dataColumns.remove(schemaTableName) != null)
+                {
+                    // Defined again, so dropped again; only the rows which follow will be left in it after a restore
+                    closeData();
+                }
+                schema = new ByteBuilder(4096);
+                schema.append(line, 0, line.length()).append('\n');
+            }
+            default -> driver.append(line);
+        }
+    }
+
+    /**
+     * Writes an INSERT's rows to its table's data file. The first time a table's rows are seen, the LOAD DATA of its
+     * data file takes the INSERT's place in the driver script.
+     */
+    private void writeRows(ByteLine line, DumpStatement insertStmt) throws IOException
+    {
+        String tableName = insertStmt.getName();
+        String columns = insertStmt.hasColumns() ? insertStmt.getColumns() : "";
+        if (!tableName.equals(dataTableName))
+        {
+            closeData();
+
+            String loadedColumns = dataColumns.putIfAbsent(tableName, columns);
+            data = open(fileName(tableName, ".txt"), loadedColumns != null);
+            dataTableName = tableName;
+
+            if (loadedColumns == null)
+            {
+                driver.append("LOAD DATA LOCAL INFILE '").append(fileName(tableName, ".txt"))
+                    .append("' INTO TABLE ").append(tableName).append(" CHARACTER SET binary")
+                    .append(columns.isEmpty() ? "" : " (" + columns + ")").append(";\n");
+            }
+        }
+        if (!columns.equals(dataColumns.get(tableName)))
+        {
+            // The rows of one data file are all loaded into the same columns
+            throw new BadMatchException("Insert statement for " + tableName + " lists different columns than the " +
+                "ones before it: [" + line + ']');
+        }
+
+        TabEncoder.appendRows(line, insertStmt.getValuesStart(), data.buffer);
+        data.flushIfFull();
+    }
+
+    private void closeData() throws IOException
+    {
+        if (data != null)
+        {
+            data.close();
+            data = null;
+            dataTableName = null;
+        }
+    }
+
+    /**
+     * @param append whether to add to the file, rather than replace it
+     */
+    private BufferedFile open(String fileName, boolean append) throws IOException
+    {
+        File file = new File(dir, fileName);
+        files.add(file);
+        return new BufferedFile(file, append);
+    }
+
+    /**
+     * @param tableName a backtick-quoted table name
+     */
+    private static String fileName(String tableName, String extension)
+    {
+        String name = tableName.substring(1, tableName.length() - 1).replace("``", "`");
+        StringBuilder fileName = new StringBuilder(name.length() + extension.length());
+        for (int i = 0; i < name.length(); i++)
+        {
+            char ch = name.charAt(i);
+            if (ch < 0x80 && (Character.isLetterOrDigit(ch) || ch == '_' || ch == '$'))
+            {
+                fileName.append(ch);
+            }
+            else
+            {
+                fileName.append(String.format("@%04x", (int) ch));
+            }
+        }
+        return fileName.append(extension).toString();
+    }
+
+    /**
+     * A file written through a buffer
+     */
+    private static class BufferedFile implements AutoCloseable
+    {
+        private final FileChannel channel;
+
+        private final ByteBuilder buffer = new ByteBuilder(FLUSH_BYTES + FLUSH_BYTES / 4);
+
+        /**
+         * @param append whether to add to the file, rather than replace it
+         */
+        BufferedFile(File file, boolean append) throws IOException
+        {
+            channel = append ?
+                FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND) :
+                FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        BufferedFile append(String str) throws IOException
+        {
+            buffer.appendUtf8(str);
+            flushIfFull();
+            return this;
+        }
+
+        /**
+         * Appends a line, adding its terminator back
+         */
+        void append(ByteLine line) throws IOException
+        {
+            buffer.append(line, 0, line.length()).append('\n');
+            flushIfFull();
+        }
+
+        void write(ByteBuilder bytes) throws IOException
+        {
+            flush();
+            writeFully(bytes.toByteBuffer(0, bytes.length()));
+        }
+
+        void flushIfFull() throws IOException
+        {
+            if (buffer.length() >= FLUSH_BYTES)
+            {
+                flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            try (channel)
+            {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException
+        {
+            writeFully(buffer.toByteBuffer(0, buffer.length()));
+            buffer.setLength(0);
+        }
+
+        private void writeFully(ByteBuffer bytes) throws IOException
+        {
+            while (bytes.hasRemaining())
+            {
+                channel.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.eric_eldard.harpocrates.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A batch of lines obfuscated by a worker. Only slow batches are recorded by default, to be lined up against GC pauses
+ * and the like in the same recording.
+ */
+@Name("com.eric_eldard.harpocrates.ObfuscateBatch")
+@Label("Obfuscate Batch")
+@Category("Harpocrates")
+@Description("A batch of dump lines obfuscated")
+@Threshold("20 ms")
+class ObfuscateBatchEvent extends jdk.jfr.Event
+{
+    @Label("Table")
+    String table;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Rows")
+    long rows;
+}
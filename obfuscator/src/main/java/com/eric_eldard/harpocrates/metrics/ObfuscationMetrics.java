@@ -0,0 +1,552 @@
+package com.eric_eldard.harpocrates.metrics;
+
+import com.google.common.base.Preconditions;
+import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import com.eric_eldard.harpocrates.enumeration.Action;
+import com.eric_eldard.harpocrates.model.LineBatch;
+import com.eric_eldard.harpocrates.model.TablePlan;
+
+/**
+ * Counters for an obfuscation run: throughput, overall and by table; the time spent reading, obfuscating and writing;
+ * and the number of values replaced, removed and ignored. Every report interval, progress since the last report is
+ * logged and recorded as JFR events ({@link ObfuscationProgressEvent}, {@link TableThroughputEvent}), along with an
+ * estimate of the time left. A summary is logged on {@link #close()}.
+ * <br><br>
+ * The counters are {@link LongAdder}s, so the reader, workers and writer can all add to them without contending, and
+ * they're only added to once per batch; within a batch, rows and values are tallied locally by a {@link Batch}.
+ * <br><br>
+ * Rows and values are only counted in tables with something to obfuscate. Other tables' data sections are passed
+ * through without reading their rows, so they only add to the byte counts.
+ */
+public class ObfuscationMetrics implements AutoCloseable
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ObfuscationMetrics.class);
+
+    private static final double MB = 1024 * 1024;
+
+    /**
+     * The number of tables listed in each progress report and in the summary
+     */
+    private static final int TABLES_REPORTED = 10;
+
+    /**
+     * The size of the input, or 0 if it isn't known
+     */
+    private final long inputSize;
+
+    /**
+     * Where in the input obfuscation started, when resuming
+     */
+    private final long inputOffset;
+
+    private final long startNanos = System.nanoTime();
+
+    private final LongAdder readNanos = new LongAdder();
+
+    private final LongAdder obfuscateNanos = new LongAdder();
+
+    private final LongAdder writeNanos = new LongAdder();
+
+    /**
+     * Bytes of the (uncompressed) input obfuscated
+     */
+    private final LongAdder bytes = new LongAdder();
+
+    private final LongAdder rows = new LongAdder();
+
+    private final LongAdder replaced = new LongAdder();
+
+    private final LongAdder removed = new LongAdder();
+
+    private final LongAdder ignored = new LongAdder();
+
+    /**
+     * Bytes of the input as it's stored, when it's read through {@link #counting(InputStream)}
+     */
+    private final LongAdder storedBytesRead = new LongAdder();
+
+    private volatile boolean countingStoredBytes;
+
+    private final Map<String, TableCounters> tables = new ConcurrentHashMap<>();
+
+    /**
+     * {@code null} if progress isn't reported
+     */
+    private final ScheduledExecutorService reporter;
+
+    /**
+     * Guarded by {@code this}
+     */
+    private Snapshot lastReport;
+
+    private ObfuscationMetrics(long inputSize, long inputOffset, Duration reportInterval)
+    {
+        this.inputSize = inputSize;
+        this.inputOffset = inputOffset;
+        lastReport = snapshot();
+
+        if (reportInterval.isZero())
+        {
+            reporter = null;
+        }
+        else
+        {
+            reporter = Executors.newSingleThreadScheduledExecutor(task ->
+            {
+                Thread thread = new Thread(task, "harpocrates-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalMillis = reportInterval.toMillis();
+            reporter.scheduleAtFixedRate(this::report, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Starts counting, and reporting if there's an interval to report at
+     * @param inputSize      the size of the input, or 0 if it isn't known, in which case the time left isn't
+     *                       estimated
+     * @param inputOffset    the offset in the input at which obfuscation starts
+     * @param reportInterval the time between progress reports, or zero for none
+     */
+    public static ObfuscationMetrics start(long inputSize, long inputOffset, Duration reportInterval)
+    {
+        Preconditions.checkArgument(inputSize >= 0, "inputSize must not be negative");
+        Preconditions.checkArgument(!reportInterval.isNegative(), "reportInterval must not be negative");
+        return new ObfuscationMetrics(inputSize, inputOffset, reportInterval);
+    }
+
+    /**
+     * Wraps an input stream, so progress is measured by the bytes read from it, rather than by the bytes obfuscated.
+     * That's needed when the input size is that of the stream as stored, and it's decompressed before it's obfuscated.
+     * Any number of streams may be wrapped, and their bytes read are added together.
+     */
+    public InputStream counting(InputStream in)
+    {
+        countingStoredBytes = true;
+        return new CountingInputStream(in);
+    }
+
+    /**
+     * @param nanos time spent reading the input and scanning it into batches, including decompressing it
+     */
+    public void addReadTime(long nanos)
+    {
+        readNanos.add(nanos);
+    }
+
+    /**
+     * Call as a batch's obfuscation begins, and {@link Batch#end()} it once it's done
+     */
+    public Batch startBatch(LineBatch batch)
+    {
+        return new Batch(batch.getTableState().getTableName(), batch.getBytes().limit());
+    }
+
+    /**
+     * Call as a batch's obfuscated bytes start to be written, and {@link Write#end()} it once they're written
+     * @param outputBytes the number of bytes to be written
+     */
+    public Write startWrite(LineBatch batch, long outputBytes)
+    {
+        return new Write(batch.getTableState().getTableName(), outputBytes);
+    }
+
+    /**
+     * Stops reporting and logs a summary of the whole run
+     */
+    @Override
+    public void close()
+    {
+        if (reporter != null)
+        {
+            reporter.shutdownNow();
+        }
+        logSummary();
+    }
+
+    /**
+     * @return how far through the input we are
+     */
+    private long position()
+    {
+        return countingStoredBytes ? storedBytesRead.sum() : inputOffset + bytes.sum();
+    }
+
+    private Snapshot snapshot()
+    {
+        return new Snapshot(
+            System.nanoTime(),
+            position(),
+            bytes.sum(),
+            rows.sum(),
+            readNanos.sum(),
+            obfuscateNanos.sum(),
+            writeNanos.sum()
+        );
+    }
+
+    private synchronized void report()
+    {
+        try
+        {
+            Snapshot now = snapshot();
+            Snapshot since = lastReport;
+            lastReport = now;
+
+            double seconds = (now.nanos - since.nanos) / 1e9;
+            double bytesPerSecond = (now.bytes - since.bytes) / seconds;
+            double rowsPerSecond = (now.rows - since.rows) / seconds;
+            double positionPerSecond = (now.position - since.position) / seconds;
+            long secondsLeft = inputSize > 0 && positionPerSecond > 0 ?
+                (long) (Math.max(inputSize - now.position, 0) / positionPerSecond) :
+                -1;
+            double[] shares = stageShares(
+                now.readNanos - since.readNanos,
+                now.obfuscateNanos - since.obfuscateNanos,
+                now.writeNanos - since.writeNanos
+            );
+
+            StringBuilder message = new StringBuilder("Read ").append(megabytes(now.position));
+            if (inputSize > 0)
+            {
+                message.append(" of ").append(megabytes(inputSize))
+                    .append(String.format(" (%.1f%%)", 100.0 * now.position / inputSize));
+            }
+            message.append(String.format(", obfuscating %,.1f MB/s and %,.0f rows/s", bytesPerSecond / MB,
+                rowsPerSecond));
+            if (secondsLeft >= 0)
+            {
+                message.append("; about ").append(duration(secondsLeft)).append(" to go");
+            }
+            message.append(". ").append(stagesAndActions(shares));
+            LOGGER.info(message.toString());
+
+            ObfuscationProgressEvent event = new ObfuscationProgressEvent();
+            if (event.shouldCommit())
+            {
+                event.inputPosition = now.position;
+                event.inputSize = inputSize;
+                event.bytesPerSecond = bytesPerSecond;
+                event.rowsPerSecond = rowsPerSecond;
+                event.readShare = shares[0];
+                event.obfuscateShare = shares[1];
+                event.writeShare = shares[2];
+                event.replaced = replaced.sum();
+                event.removed = removed.sum();
+                event.ignored = ignored.sum();
+                event.secondsLeft = secondsLeft;
+                event.commit();
+            }
+
+            reportTables(seconds);
+        }
+        catch (RuntimeException ex)
+        {
+            // An exception would cancel all further reports
+            LOGGER.warn("Failed to report obfuscation progress", ex);
+        }
+    }
+
+    /**
+     * Logs the busiest tables since the last report, and records an event for every table read since then
+     */
+    private void reportTables(double seconds)
+    {
+        // Counts are taken once, since they may go on changing while they're sorted
+        List<TableTotals> active = new ArrayList<>();
+        tables.forEach((name, table) ->
+        {
+            long tableBytes = table.bytes.sum();
+            long tableRows = table.rows.sum();
+            if (tableBytes > table.reportedBytes)
+            {
+                active.add(new TableTotals(name, tableBytes - table.reportedBytes, tableRows - table.reportedRows, 0));
+            }
+            table.reportedBytes = tableBytes;
+            table.reportedRows = tableRows;
+        });
+        active.sort(Comparator.comparingLong((TableTotals table) -> table.bytes).reversed());
+
+        List<String> busiest = new ArrayList<>();
+        for (TableTotals table : active)
+        {
+            double bytesPerSecond = table.bytes / seconds;
+            double rowsPerSecond = table.rows / seconds;
+            if (busiest.size() < TABLES_REPORTED)
+            {
+                busiest.add(String.format("%s %,.1f MB/s %,.0f rows/s", table.name, bytesPerSecond / MB,
+                    rowsPerSecond));
+            }
+
+            TableThroughputEvent event = new TableThroughputEvent();
+            if (event.shouldCommit())
+            {
+                event.table = table.name;
+                event.bytesPerSecond = bytesPerSecond;
+                event.rowsPerSecond = rowsPerSecond;
+                event.rows = table.rows;
+                event.commit();
+            }
+        }
+
+        if (!busiest.isEmpty())
+        {
+            LOGGER.info("Busiest tables: {}", String.join(", ", busiest));
+        }
+    }
+
+    private synchronized void logSummary()
+    {
+        Snapshot end = snapshot();
+        double seconds = (end.nanos - startNanos) / 1e9;
+        LOGGER.info(String.format("Obfuscated %s and %,d rows in %s, averaging %,.1f MB/s and %,.0f rows/s. %s",
+            megabytes(end.bytes), end.rows, duration((long) seconds), end.bytes / MB / seconds, end.rows / seconds,
+            stagesAndActions(stageShares(end.readNanos, end.obfuscateNanos, end.writeNanos))));
+
+        // Each table's throughput while it was being obfuscated shows which are slow to obfuscate, whatever their size
+        List<TableTotals> totals = new ArrayList<>();
+        tables.forEach((name, table) ->
+            totals.add(new TableTotals(name, table.bytes.sum(), table.rows.sum(), table.obfuscateNanos.sum())));
+        String slowest = totals.stream()
+            .sorted(Comparator.comparingLong((TableTotals table) -> table.obfuscateNanos).reversed())
+            .limit(TABLES_REPORTED)
+            .map(table ->
+            {
+                double tableSeconds = table.obfuscateNanos / 1e9;
+                return String.format("%s %,d rows, %s in %,.1f s (%,.1f MB/s)", table.name, table.rows,
+                    megabytes(table.bytes), tableSeconds, table.bytes / MB / tableSeconds);
+            })
+            .collect(Collectors.joining(", "));
+        if (!slowest.isEmpty())
+        {
+            LOGGER.info("Most time spent obfuscating: {}", slowest);
+        }
+    }
+
+    /**
+     * @return the fraction of the time spent in each stage: reading, obfuscating and writing
+     */
+    private static double[] stageShares(long readNanos, long obfuscateNanos, long writeNanos)
+    {
+        double total = Math.max(readNanos + obfuscateNanos + writeNanos, 1);
+        return new double[] {readNanos / total, obfuscateNanos / total, writeNanos / total};
+    }
+
+    private String stagesAndActions(double[] shares)
+    {
+        return String.format("Time spent reading %.0f%%, obfuscating %.0f%%, writing %.0f%%. " +
+                "Values replaced %,d, removed %,d, ignored %,d",
+            100 * shares[0], 100 * shares[1], 100 * shares[2], replaced.sum(), removed.sum(), ignored.sum()
+        );
+    }
+
+    private static String megabytes(long bytes)
+    {
+        return String.format("%,.1f MB", bytes / MB);
+    }
+
+    private static String duration(long seconds)
+    {
+        return String.format("%dh %02dm %02ds", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    /**
+     * One batch's obfuscation, timed, with its rows and values tallied until it {@link #end()}s. Used by one thread at
+     * a time.
+     */
+    public class Batch
+    {
+        private final String table;
+
+        private final int batchBytes;
+
+        private final long start = System.nanoTime();
+
+        private final ObfuscateBatchEvent event = new ObfuscateBatchEvent();
+
+        private long batchRows;
+
+        private long batchReplaced;
+
+        private long batchRemoved;
+
+        private long batchIgnored;
+
+        private Batch(String table, int batchBytes)
+        {
+            this.table = table;
+            this.batchBytes = batchBytes;
+            event.begin();
+        }
+
+        /**
+         * @param plan the plan the rows were obfuscated with, whose {@link Action}s were each applied once per row
+         */
+        public void addRows(int count, TablePlan plan)
+        {
+            batchRows += count;
+            batchReplaced += (long) count * plan.getReplacedCount();
+            batchRemoved += (long) count * plan.getRemovedCount();
+            batchIgnored += (long) count * plan.getIgnoredCount();
+        }
+
+        public void end()
+        {
+            long nanos = System.nanoTime() - start;
+            obfuscateNanos.add(nanos);
+            bytes.add(batchBytes);
+            if (batchRows > 0)
+            {
+                rows.add(batchRows);
+                replaced.add(batchReplaced);
+                removed.add(batchRemoved);
+                ignored.add(batchIgnored);
+            }
+            if (table != null)
+            {
+                TableCounters counters = tables.computeIfAbsent(table, name -> new TableCounters());
+                counters.bytes.add(batchBytes);
+                counters.rows.add(batchRows);
+                counters.obfuscateNanos.add(nanos);
+            }
+
+            event.end();
+            if (event.shouldCommit())
+            {
+                event.table = table;
+                event.bytes = batchBytes;
+                event.rows = batchRows;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * One batch's write, timed until it {@link #end()}s
+     */
+    public class Write
+    {
+        private final long start = System.nanoTime();
+
+        private final WriteBatchEvent event = new WriteBatchEvent();
+
+        private Write(String table, long outputBytes)
+        {
+            event.table = table;
+            event.bytes = outputBytes;
+            event.begin();
+        }
+
+        public void end()
+        {
+            writeNanos.add(System.nanoTime() - start);
+            event.commit();
+        }
+    }
+
+    /**
+     * Per-table counters. The reported counts are only used by the reporter, under the metrics' lock.
+     */
+    private static class TableCounters
+    {
+        private final LongAdder bytes = new LongAdder();
+
+        private final LongAdder rows = new LongAdder();
+
+        private final LongAdder obfuscateNanos = new LongAdder();
+
+        private long reportedBytes;
+
+        private long reportedRows;
+    }
+
+    /**
+     * A table's counts, taken at one time
+     */
+    @AllArgsConstructor
+    private static class TableTotals
+    {
+        private final String name;
+
+        private final long bytes;
+
+        private final long rows;
+
+        private final long obfuscateNanos;
+    }
+
+    @AllArgsConstructor
+    private static class Snapshot
+    {
+        private final long nanos;
+
+        private final long position;
+
+        private final long bytes;
+
+        private final long rows;
+
+        private final long readNanos;
+
+        private final long obfuscateNanos;
+
+        private final long writeNanos;
+    }
+
+    private class CountingInputStream extends FilterInputStream
+    {
+        private CountingInputStream(InputStream in)
+        {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = super.read();
+            if (b >= 0)
+            {
+                storedBytesRead.increment();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException
+        {
+            int count = super.read(buffer, offset, length);
+            if (count > 0)
+            {
+                storedBytesRead.add(count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException
+        {
+            long skipped = super.skip(n);
+            storedBytesRead.add(skipped);
+            return skipped;
+        }
+    }
+}
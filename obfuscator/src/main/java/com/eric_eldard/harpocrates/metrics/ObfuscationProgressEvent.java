@@ -0,0 +1,71 @@
+package com.eric_eldard.harpocrates.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Frequency;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The same figures as each progress report logged by {@link ObfuscationMetrics}, over the interval since the last one
+ */
+@Name("com.eric_eldard.harpocrates.ObfuscationProgress")
+@Label("Obfuscation Progress")
+@Category("Harpocrates")
+@Description("Progress through the dump, and throughput since the last report")
+@StackTrace(false)
+class ObfuscationProgressEvent extends jdk.jfr.Event
+{
+    @Label("Input Position")
+    @DataAmount
+    long inputPosition;
+
+    @Label("Input Size")
+    @Description("0 if it isn't known")
+    @DataAmount
+    long inputSize;
+
+    @Label("Bytes Per Second")
+    @DataAmount
+    @Frequency
+    double bytesPerSecond;
+
+    @Label("Rows Per Second")
+    double rowsPerSecond;
+
+    @Label("Reading")
+    @Description("Share of the interval's busy time spent reading the dump and scanning its lines")
+    @Percentage
+    double readShare;
+
+    @Label("Obfuscating")
+    @Description("Share of the interval's busy time spent obfuscating batches")
+    @Percentage
+    double obfuscateShare;
+
+    @Label("Writing")
+    @Description("Share of the interval's busy time spent writing obfuscated batches")
+    @Percentage
+    double writeShare;
+
+    @Label("Values Replaced")
+    @Description("In total, so far")
+    long replaced;
+
+    @Label("Values Removed")
+    @Description("In total, so far")
+    long removed;
+
+    @Label("Values Ignored")
+    @Description("In total, so far")
+    long ignored;
+
+    @Label("Time Left")
+    @Description("-1 if it can't be estimated")
+    @Timespan(Timespan.SECONDS)
+    long secondsLeft;
+}
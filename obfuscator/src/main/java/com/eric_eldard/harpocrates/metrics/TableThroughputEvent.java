@@ -0,0 +1,34 @@
+package com.eric_eldard.harpocrates.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Frequency;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One table's throughput over the interval since the last progress report, for each table read during it
+ */
+@Name("com.eric_eldard.harpocrates.TableThroughput")
+@Label("Table Throughput")
+@Category("Harpocrates")
+@Description("A table's throughput since the last progress report")
+@StackTrace(false)
+class TableThroughputEvent extends jdk.jfr.Event
+{
+    @Label("Table")
+    String table;
+
+    @Label("Bytes Per Second")
+    @DataAmount
+    @Frequency
+    double bytesPerSecond;
+
+    @Label("Rows Per Second")
+    double rowsPerSecond;
+
+    @Label("Rows")
+    long rows;
+}
@@ -0,0 +1,27 @@
+package com.eric_eldard.harpocrates.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * An obfuscated batch written to the output. Only slow writes are recorded by default, which are usually I/O stalls,
+ * or a gzipped output's compression falling behind.
+ */
+@Name("com.eric_eldard.harpocrates.WriteBatch")
+@Label("Write Batch")
+@Category("Harpocrates")
+@Description("An obfuscated batch of dump lines written")
+@Threshold("20 ms")
+class WriteBatchEvent extends jdk.jfr.Event
+{
+    @Label("Table")
+    String table;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,128 @@
+package com.eric_eldard.harpocrates.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An immutable list of records, each of a fixed number of text fields, to draw replacement values from. Rather than a
+ * String for every field, every field is kept in a single String, end to end, with a table of where each one starts;
+ * that's a fraction of the heap, with no per-value object headers, and the data files are ASCII, so the String is
+ * stored at a byte per char.
+ */
+public class Dataset
+{
+    private final int fieldCount;
+
+    /**
+     * Every field of every record, with nothing between them
+     */
+    private final String fields;
+
+    /**
+     * The index in {@link #fields} at which each field starts, record by record, followed by the length of
+     * {@link #fields}, so each field ends where the next starts
+     */
+    private final int[] fieldStarts;
+
+    private Dataset(int fieldCount, String fields, int[] fieldStarts)
+    {
+        this.fieldCount = fieldCount;
+        this.fields = fields;
+        this.fieldStarts = fieldStarts;
+    }
+
+    /**
+     * @param text       one record per line, with fields separated by commas. Fields past {@code fieldCount} are
+     *                   ignored, as are blank lines. With a single field, the whole line is the field, commas and all.
+     * @param fieldCount the number of fields to keep from each line
+     * @throws IllegalArgumentException if a line has fewer than {@code fieldCount} fields
+     */
+    public static Dataset parse(String text, int fieldCount)
+    {
+        StringBuilder fields = new StringBuilder(text.length());
+        int[] fieldStarts = new int[1024];
+        int fieldsRead = 0;
+
+        int lineStart = 0;
+        while (lineStart < text.length())
+        {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0)
+            {
+                lineEnd = text.length();
+            }
+
+            if (lineEnd > lineStart)
+            {
+                if (fieldsRead + fieldCount >= fieldStarts.length)
+                {
+                    fieldStarts = Arrays.copyOf(fieldStarts, fieldStarts.length * 2);
+                }
+
+                int fieldStart = lineStart;
+                for (int f = 0; f < fieldCount; f++)
+                {
+                    int fieldEnd = fieldCount == 1 ? lineEnd : fieldEnd(text, fieldStart, lineEnd);
+                    if (fieldEnd == lineEnd && f < fieldCount - 1)
+                    {
+                        throw new IllegalArgumentException("Expected " + fieldCount + " fields, but found " + (f + 1) +
+                            ": [" + text.substring(lineStart, lineEnd) + ']');
+                    }
+                    fieldStarts[fieldsRead++] = fields.length();
+                    fields.append(text, fieldStart, fieldEnd);
+                    fieldStart = fieldEnd + 1;
+                }
+            }
+
+            lineStart = lineEnd + 1;
+        }
+
+        fieldStarts = Arrays.copyOf(fieldStarts, fieldsRead + 1);
+        fieldStarts[fieldsRead] = fields.length();
+        return new Dataset(fieldCount, fields.toString(), fieldStarts);
+    }
+
+    /**
+     * @return the index of the comma ending the field starting at {@code fieldStart}, or {@code lineEnd} if it's the
+     * line's last field
+     */
+    private static int fieldEnd(String text, int fieldStart, int lineEnd)
+    {
+        for (int i = fieldStart; i < lineEnd; i++)
+        {
+            if (text.charAt(i) == ',')
+            {
+                return i;
+            }
+        }
+        return lineEnd;
+    }
+
+    /**
+     * @return the number of records
+     */
+    public int size()
+    {
+        return (fieldStarts.length - 1) / fieldCount;
+    }
+
+    /**
+     * @return the index of a record picked at random
+     */
+    public int randomRecord()
+    {
+        return ThreadLocalRandom.current().nextInt(size());
+    }
+
+    public void appendField(StringBuilder out, int record, int field)
+    {
+        int i = record * fieldCount + field;
+        out.append(fields, fieldStarts[i], fieldStarts[i + 1]);
+    }
+
+    public String getField(int record, int field)
+    {
+        int i = record * fieldCount + field;
+        return fields.substring(fieldStarts[i], fieldStarts[i + 1]);
+    }
+}
@@ -0,0 +1,27 @@
+package com.eric_eldard.harpocrates.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A run of whole lines of a dump file, starting outside of any table, which can be obfuscated on its own
+ */
+@Getter
+@AllArgsConstructor(staticName = "of")
+public class DumpSection
+{
+    /**
+     * The byte offset of the section's first line in the dump
+     */
+    private final long start;
+
+    /**
+     * The byte offset just past the section's last line
+     */
+    private final long end;
+
+    public long length()
+    {
+        return end - start;
+    }
+}
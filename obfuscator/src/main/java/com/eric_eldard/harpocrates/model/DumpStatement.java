@@ -0,0 +1,208 @@
+package com.eric_eldard.harpocrates.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import com.eric_eldard.harpocrates.util.StatementScanner;
+
+/**
+ * The result of a {@link StatementScanner} pass over a single dump line. Rather than copying them out, this records
+ * where the interesting parts of the statement are in the line.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class DumpStatement
+{
+    public enum Type
+    {
+        /**
+         * {@code INSERT INTO `table` (`col1`, `col2`) VALUES (...),(...);} (the column list is optional)
+         */
+        INSERT,
+
+        /**
+         * {@code   `col1` varchar(255) DEFAULT NULL,}
+         */
+        COLUMN_DEF,
+
+        /**
+         * {@code   `col1` varchar(255) DEFAULT NULL COMMENT 'dataClassification=...',}
+         */
+        CLASSIFIED_COLUMN_DEF,
+
+        /**
+         * {@code CREATE TABLE `table` (}
+         */
+        CREATE_TABLE,
+
+        /**
+         * {@code ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;} (the end of a CREATE TABLE statement)
+         */
+        CREATE_TABLE_END,
+
+        /**
+         * {@code ALTER TABLE `table` ENABLE KEYS}, usually inside a versioned comment (signals the end of inserts to a
+         * table)
+         */
+        ENABLE_KEYS,
+
+        /**
+         * Any line the obfuscator doesn't need to examine
+         */
+        OTHER
+    }
+
+    public static final DumpStatement OTHER = new DumpStatement(Type.OTHER, null, -1, -1, -1, -1, -1, -1, -1);
+
+    private final Type type;
+
+    private final CharSequence line;
+
+    /**
+     * Start of the table name (or column name for a column def), including the opening backtick
+     */
+    private final int nameStart;
+
+    /**
+     * End (exclusive) of the table or column name, including the closing backtick
+     */
+    private final int nameEnd;
+
+    /**
+     * Start of an INSERT's column list, just inside its opening paren, or -1 if the INSERT has no column list
+     */
+    private final int columnsStart;
+
+    /**
+     * End (exclusive) of an INSERT's column list, at its closing paren
+     */
+    private final int columnsEnd;
+
+    /**
+     * Index of the opening paren of an INSERT's first tuple of values
+     */
+    private final int valuesStart;
+
+    /**
+     * Start of the encoded data definition in a column's comment, just past {@code dataClassification=}
+     */
+    private final int dataDefStart;
+
+    /**
+     * End (exclusive) of the encoded data definition in a column's comment
+     */
+    private final int dataDefEnd;
+
+    public static DumpStatement insert(CharSequence line,
+                                       int nameStart,
+                                       int nameEnd,
+                                       int columnsStart,
+                                       int columnsEnd,
+                                       int valuesStart
+    )
+    {
+        return new DumpStatement(Type.INSERT, line, nameStart, nameEnd, columnsStart, columnsEnd, valuesStart, -1, -1);
+    }
+
+    public static DumpStatement columnDef(CharSequence line, int nameStart, int nameEnd)
+    {
+        return new DumpStatement(Type.COLUMN_DEF, line, nameStart, nameEnd, -1, -1, -1, -1, -1);
+    }
+
+    public static DumpStatement classifiedColumnDef(CharSequence line,
+                                                    int nameStart,
+                                                    int nameEnd,
+                                                    int dataDefStart,
+                                                    int dataDefEnd
+    )
+    {
+        return new DumpStatement(
+            Type.CLASSIFIED_COLUMN_DEF, line, nameStart, nameEnd, -1, -1, -1, dataDefStart, dataDefEnd);
+    }
+
+    public static DumpStatement createTable(CharSequence line, int nameStart, int nameEnd)
+    {
+        return new DumpStatement(Type.CREATE_TABLE, line, nameStart, nameEnd, -1, -1, -1, -1, -1);
+    }
+
+    public static DumpStatement createTableEnd(CharSequence line)
+    {
+        return new DumpStatement(Type.CREATE_TABLE_END, line, -1, -1, -1, -1, -1, -1, -1);
+    }
+
+    public static DumpStatement enableKeys(CharSequence line, int nameStart, int nameEnd)
+    {
+        return new DumpStatement(Type.ENABLE_KEYS, line, nameStart, nameEnd, -1, -1, -1, -1, -1);
+    }
+
+    /**
+     * @return the backtick-quoted table or column name
+     */
+    public String getName()
+    {
+        return line.subSequence(nameStart, nameEnd).toString();
+    }
+
+    /**
+     * Compares the backtick-quoted table or column name to {@code name} without copying it out of the line
+     */
+    public boolean nameEquals(String name)
+    {
+        return regionEquals(nameStart, nameEnd, name);
+    }
+
+    /**
+     * Compares an INSERT's column list to {@code columns} without copying it out of the line
+     */
+    public boolean columnsEqual(String columns)
+    {
+        return hasColumns() && regionEquals(columnsStart, columnsEnd, columns);
+    }
+
+    public boolean hasColumns()
+    {
+        return columnsStart >= 0;
+    }
+
+    /**
+     * @return an INSERT's column list, without surrounding parens
+     */
+    public String getColumns()
+    {
+        return line.subSequence(columnsStart, columnsEnd).toString();
+    }
+
+    public String getEncodedDataDef()
+    {
+        return line.subSequence(dataDefStart, dataDefEnd).toString();
+    }
+
+    private boolean regionEquals(int start, int end, String str)
+    {
+        if (str == null)
+        {
+            return false;
+        }
+        for (int i = 0; i < str.length(); i++)
+        {
+            if (str.charAt(i) >= 0x80)
+            {
+                // The line may be raw UTF-8 bytes (see ByteLine), which only compare char for char with ASCII
+                return line.subSequence(start, end).toString().equals(str);
+            }
+        }
+        if (str.length() != end - start)
+        {
+            return false;
+        }
+        for (int i = 0; i < str.length(); i++)
+        {
+            if (line.charAt(start + i) != str.charAt(i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,35 @@
+package com.eric_eldard.harpocrates.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A run of consecutive, whole dump lines, whose INSERT statements were all read while the dump was in the same
+ * {@link TableState}. That's also the state following the batch's last line.
+ */
+@Getter
+@AllArgsConstructor(staticName = "of")
+public class LineBatch
+{
+    /**
+     * The lines' UTF-8 bytes, terminators included, from index 0 to the buffer's limit
+     */
+    private final ByteBuffer bytes;
+
+    /**
+     * The offset of the batch's first line in the (uncompressed) dump
+     */
+    private final long inputOffset;
+
+    private final TableState tableState;
+
+    /**
+     * @return the offset in the dump just past the batch's last line
+     */
+    public long inputEnd()
+    {
+        return inputOffset + bytes.limit();
+    }
+}
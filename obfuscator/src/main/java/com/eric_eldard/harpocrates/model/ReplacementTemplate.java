@@ -0,0 +1,184 @@
+package com.eric_eldard.harpocrates.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.eric_eldard.harpocrates.enumeration.DataType;
+import com.eric_eldard.harpocrates.io.ByteBuilder;
+import com.eric_eldard.harpocrates.service.RowReplacements;
+
+/**
+ * A replacement pattern, parsed once into a sequence of segments:
+ * <ul>
+ *     <li>literal text, also kept as ready-escaped UTF-8</li>
+ *     <li>placeholders for a generated value, like {@code {SURNAME}} (see {@link RowReplacements#GENERATED_TYPES})</li>
+ *     <li>document ID masks, like {@code #{AA000000}}, where each {@code A} is a random letter and each {@code 0} a
+ *     random digit</li>
+ * </ul>
+ * Anything else in braces is literal text.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class ReplacementTemplate
+{
+    private final Segment[] segments;
+
+    public static ReplacementTemplate compile(String pattern)
+    {
+        List<Segment> segments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+
+        int i = 0;
+        while (i < pattern.length())
+        {
+            Segment segment = null;
+            int segmentEnd = -1;
+
+            char ch = pattern.charAt(i);
+            if (ch == '#' && i + 1 < pattern.length() && pattern.charAt(i + 1) == '{')
+            {
+                segmentEnd = pattern.indexOf('}', i + 2) + 1;
+                String mask = segmentEnd > 0 ? pattern.substring(i + 2, segmentEnd - 1) : "";
+                if (isMask(mask))
+                {
+                    segment = new Segment(null, null, null, mask);
+                }
+            }
+            else if (ch == '{')
+            {
+                segmentEnd = pattern.indexOf('}', i + 1) + 1;
+                DataType dataType = segmentEnd > 0 ? placeholderType(pattern.substring(i, segmentEnd)) : null;
+                if (dataType != null)
+                {
+                    segment = new Segment(null, null, dataType, null);
+                }
+            }
+
+            if (segment == null)
+            {
+                literal.append(ch);
+                i++;
+            }
+            else
+            {
+                if (!literal.isEmpty())
+                {
+                    segments.add(literalSegment(literal));
+                    literal.setLength(0);
+                }
+                segments.add(segment);
+                i = segmentEnd;
+            }
+        }
+        if (!literal.isEmpty())
+        {
+            segments.add(literalSegment(literal));
+        }
+
+        return new ReplacementTemplate(segments.toArray(new Segment[0]));
+    }
+
+    /**
+     * Writes a new replacement value to {@code out}, as a quoted SQL string
+     * @param values the current row's generated values
+     */
+    public void appendTo(ByteBuilder out, RowReplacements values)
+    {
+        out.append('\'');
+        for (Segment segment : segments)
+        {
+            if (segment.literal != null)
+            {
+                out.append(segment.literal);
+            }
+            else if (segment.dataType != null)
+            {
+                out.appendUtf8Escaped(values.get(segment.dataType), '\'');
+            }
+            else
+            {
+                out.appendUtf8Escaped(values.makeDocId(segment.mask), '\'');
+            }
+        }
+        out.append('\'');
+    }
+
+    /**
+     * Writes a new replacement value to {@code out} as plain, unquoted text, such as for a statement parameter
+     * @param values the current row's generated values
+     */
+    public void appendTo(StringBuilder out, RowReplacements values)
+    {
+        for (Segment segment : segments)
+        {
+            if (segment.text != null)
+            {
+                out.append(segment.text);
+            }
+            else if (segment.dataType != null)
+            {
+                out.append(values.get(segment.dataType));
+            }
+            else
+            {
+                out.append(values.makeDocId(segment.mask));
+            }
+        }
+    }
+
+    private static boolean isMask(String mask)
+    {
+        if (mask.isEmpty())
+        {
+            return false;
+        }
+        for (int i = 0; i < mask.length(); i++)
+        {
+            if (mask.charAt(i) != '0' && mask.charAt(i) != 'A')
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the type whose generated value replaces {@code placeholder}, or {@code null} if it isn't a placeholder
+     */
+    private static DataType placeholderType(String placeholder)
+    {
+        for (DataType dataType : RowReplacements.GENERATED_TYPES)
+        {
+            if (placeholder.equals(dataType.getPattern()))
+            {
+                return dataType;
+            }
+        }
+        return null;
+    }
+
+    private static Segment literalSegment(CharSequence text)
+    {
+        String unescaped = text.toString();
+        byte[] escaped = unescaped.replace("'", "''").getBytes(StandardCharsets.UTF_8);
+        return new Segment(unescaped, escaped, null, null);
+    }
+
+    /**
+     * Either the literal text (in both its forms), the data type or the mask is set
+     */
+    @AllArgsConstructor
+    private static class Segment
+    {
+        private final String text;
+
+        private final byte[] literal;
+
+        private final DataType dataType;
+
+        private final String mask;
+    }
+}
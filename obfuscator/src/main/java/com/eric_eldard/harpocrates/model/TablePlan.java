@@ -0,0 +1,144 @@
+package com.eric_eldard.harpocrates.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.eric_eldard.harpocrates.enumeration.Action;
+import com.eric_eldard.harpocrates.enumeration.DataType;
+
+/**
+ * What to do to each row of a table, worked out once from its data definitions: which columns (by position) need
+ * obfuscating, and how. Columns which are unclassified, {@link DataType#NOT_SENSITIVE} or {@link Action#IGNORE}d don't
+ * appear in the plan at all.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class TablePlan
+{
+    /**
+     * The column list this plan applies to, as mysqldump writes it in an INSERT statement: {@code `col1`, `col2`}
+     */
+    private final String columnList;
+
+    private final int columnCount;
+
+    /**
+     * Positions of the columns to obfuscate, in ascending order
+     */
+    private final int[] sensitiveOrdinals;
+
+    /**
+     * For each of {@link #sensitiveOrdinals}, {@link Action#REPLACE} or {@link Action#REMOVE}
+     */
+    private final Action[] actions;
+
+    /**
+     * For each of {@link #sensitiveOrdinals}, the compiled replacement pattern, or {@code null} if the value is removed
+     */
+    private final ReplacementTemplate[] templates;
+
+    /**
+     * The number of {@link #actions} which are {@link Action#REPLACE}
+     */
+    private final int replacedCount;
+
+    /**
+     * The number of classified columns which are left as they are, because they're {@link Action#IGNORE}d
+     */
+    private final int ignoredCount;
+
+    /**
+     * @param columnNames backtick-quoted column names, in the order their values appear in each row
+     * @param dataDefs    data definitions keyed by backtick-quoted column name
+     */
+    public static TablePlan compile(List<String> columnNames, Map<String, DataDefinition> dataDefs)
+    {
+        return compile(String.join(", ", columnNames), columnNames, dataDefs);
+    }
+
+    /**
+     * @param columnList  the column list exactly as an INSERT statement writes it, which may be spaced differently
+     *                    than mysqldump's (ex: mydumper's {@code `col1`,`col2`})
+     * @param columnNames backtick-quoted column names, in the order their values appear in each row
+     * @param dataDefs    data definitions keyed by backtick-quoted column name
+     */
+    public static TablePlan compile(String columnList, List<String> columnNames, Map<String, DataDefinition> dataDefs)
+    {
+        List<Integer> ordinals = new ArrayList<>();
+        List<Action> actions = new ArrayList<>();
+        List<ReplacementTemplate> templates = new ArrayList<>();
+        int replacedCount = 0;
+        int ignoredCount = 0;
+
+        for (int i = 0; i < columnNames.size(); i++)
+        {
+            DataDefinition dataDef = dataDefs.get(columnNames.get(i));
+            if (dataDef == null || dataDef.getType() == DataType.NOT_SENSITIVE)
+            {
+                continue;
+            }
+            if (dataDef.getAction() == Action.IGNORE)
+            {
+                ignoredCount++;
+                continue;
+            }
+
+            String pattern = dataDef.getPattern() == null ?
+                dataDef.getType().getPattern() :
+                dataDef.getPattern();
+
+            ordinals.add(i);
+            if (dataDef.getAction() == Action.REPLACE && pattern != null)
+            {
+                actions.add(Action.REPLACE);
+                templates.add(ReplacementTemplate.compile(pattern));
+                replacedCount++;
+            }
+            else
+            {
+                // Includes DataType#OTHER selected, but no replacement pattern provided; treat instead as Action#REMOVE
+                actions.add(Action.REMOVE);
+                templates.add(null);
+            }
+        }
+
+        return new TablePlan(
+            columnList,
+            columnNames.size(),
+            ordinals.stream().mapToInt(Integer::intValue).toArray(),
+            actions.toArray(new Action[0]),
+            templates.toArray(new ReplacementTemplate[0]),
+            replacedCount,
+            ignoredCount
+        );
+    }
+
+    /**
+     * @return {@code true} if there's nothing in this table to obfuscate
+     */
+    public boolean isPassthrough()
+    {
+        return sensitiveOrdinals.length == 0;
+    }
+
+    /**
+     * @return the number of columns whose values are {@link Action#REMOVE}d
+     */
+    public int getRemovedCount()
+    {
+        return actions.length - replacedCount;
+    }
+
+    /**
+     * @return the position of the last column to obfuscate, or -1 if there is none
+     */
+    public int getLastSensitiveOrdinal()
+    {
+        return isPassthrough() ? -1 : sensitiveOrdinals[sensitiveOrdinals.length - 1];
+    }
+}
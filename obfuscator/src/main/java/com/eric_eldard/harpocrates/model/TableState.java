@@ -0,0 +1,84 @@
+package com.eric_eldard.harpocrates.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the table the obfuscator is currently examining in a dump and what we know of its columns
+ * so far. Because it's immutable, it can be handed off to worker threads along with the lines it applies to.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class TableState
+{
+    /**
+     * The state between tables (that is, before the first CREATE TABLE and after each ENABLE KEYS)
+     */
+    public static final TableState NONE = new TableState(null, List.of(), Map.of(), null);
+
+    /**
+     * The backtick-quoted name of the current table, or {@code null} if we're not inside a table
+     */
+    private final String tableName;
+
+    /**
+     * Backtick-quoted names of every column found in the table definition so far, in order
+     */
+    private final List<String> columnNames;
+
+    /**
+     * Data definitions keyed by backtick-quoted column name
+     */
+    private final Map<String, DataDefinition> dataDefs;
+
+    /**
+     * Compiled at the end of the table definition; {@code null} until then
+     */
+    private final TablePlan plan;
+
+    public static TableState of(String tableName)
+    {
+        return new TableState(tableName, List.of(), Map.of(), null);
+    }
+
+    /**
+     * @param dataDef {@code null} if the column isn't classified
+     */
+    public TableState withColumn(String colName, DataDefinition dataDef)
+    {
+        List<String> newColumnNames = new ArrayList<>(columnNames);
+        newColumnNames.add(colName);
+
+        Map<String, DataDefinition> newDataDefs = dataDefs;
+        if (dataDef != null)
+        {
+            newDataDefs = new HashMap<>(dataDefs);
+            newDataDefs.put(colName, dataDef);
+            newDataDefs = Map.copyOf(newDataDefs);
+        }
+
+        return new TableState(tableName, List.copyOf(newColumnNames), newDataDefs, null);
+    }
+
+    /**
+     * @return this state, with its definition complete and its {@link TablePlan} compiled
+     */
+    public TableState withPlan()
+    {
+        return new TableState(tableName, columnNames, dataDefs, TablePlan.compile(columnNames, dataDefs));
+    }
+
+    /**
+     * @return {@code true} if we're inside a table's definition
+     */
+    public boolean isDefining()
+    {
+        return tableName != null && plan == null;
+    }
+}
@@ -1,26 +1,100 @@
 package com.eric_eldard.harpocrates.runner;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.sql.SQLException;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.core.io.FileUrlResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.PropertiesLoaderUtils;
 
+import com.eric_eldard.harpocrates.io.MydumperDirectory;
+import com.eric_eldard.harpocrates.io.ScrubProgress;
+import com.eric_eldard.harpocrates.service.JdbcCopyService;
+import com.eric_eldard.harpocrates.service.JdbcDumpService;
+import com.eric_eldard.harpocrates.service.JdbcScrubService;
 import com.eric_eldard.harpocrates.service.ObfuscatorService;
+import com.eric_eldard.harpocrates.service.ObfuscatorService.OutputFormat;
 
 public class ObfuscatorRunner
 {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ObfuscatorRunner.class);
+
+    private static final String MYSQLDUMP = "mysqldump";
+
+    private static final String THREADS_OPTION = "threads";
+
+    private static final String BATCH_SIZE_OPTION = "batch-size";
+
+    private static final String ENGINE_OPTION = "engine";
+
+    private static final String CHECKPOINT_INTERVAL_OPTION = "checkpoint-interval";
+
+    private static final String RESUME_OPTION = "resume";
+
+    private static final String FORMAT_OPTION = "format";
+
+    private static final String MAX_INSERT_KB_OPTION = "max-insert-kb";
+
+    private static final String REPORT_INTERVAL_OPTION = "report-interval";
+
+    private static final String URL_PROPERTY = "spring.datasource.url";
+
+    private static final String USERNAME_PROPERTY = "spring.datasource.username";
+
+    private static final String PASSWORD_PROPERTY = "spring.datasource.password";
+
+    private static final Set<String> OPTIONS = Set.of(
+        THREADS_OPTION,
+        BATCH_SIZE_OPTION,
+        ENGINE_OPTION,
+        CHECKPOINT_INTERVAL_OPTION,
+        RESUME_OPTION,
+        FORMAT_OPTION,
+        MAX_INSERT_KB_OPTION,
+        REPORT_INTERVAL_OPTION
+    );
+
+    /**
+     * How CREATE_DUMP reads the database
+     */
+    public enum Engine
+    {
+        /**
+         * Obfuscate the output of mysqldump as it's streamed
+         */
+        MYSQLDUMP,
+
+        /**
+         * Read tables directly over JDBC, in parallel, never selecting classified columns
+         */
+        JDBC
+    }
+
     public enum Mode
     {
         CREATE_DUMP,
-        READ_DUMP;
+        READ_DUMP,
+        COPY_DB,
+        SCRUB_DB;
 
         public static String nameListString()
         {
@@ -39,20 +113,17 @@ public class ObfuscatorRunner
 
         Mode mode = Mode.valueOf(args[0].toUpperCase());
 
-        File dumpFile;
-        String outputFolderPath;
-
         if (mode == Mode.CREATE_DUMP)
         {
             if (args.length < 3)
             {
                 throw new IllegalArgumentException("""
                     Too few arguments. Expected 3:
-                    CREATE_GROUP /path/to/spring/application.properties /output/folder/path
+                    CREATE_DUMP /path/to/spring/application.properties /output/folder/path [--threads=n]
+                        [--batch-size=n] [--engine=mysqldump|jdbc] [--format=sql|tab]
+                        [--max-insert-kb=n] [--report-interval=s]
                     """.stripIndent());
             }
-            dumpFile = makeDump(args[1]);
-            outputFolderPath = args[2];
         }
         else if (mode == Mode.READ_DUMP)
         {
@@ -60,61 +131,250 @@ public class ObfuscatorRunner
             {
                 throw new IllegalArgumentException("""
                     Too few arguments. Expected 3:
-                    READ_DUMP /path/to/existing/dump /output/folder/path
+                    READ_DUMP /path/to/existing/dump /output/folder/path [--threads=n] [--batch-size=n]
+                        [--checkpoint-interval=mb] [--resume] [--format=sql|tab] [--max-insert-kb=n]
+                        [--report-interval=s]
+                    """.stripIndent());
+            }
+        }
+        else if (mode == Mode.COPY_DB)
+        {
+            if (args.length < 3)
+            {
+                throw new IllegalArgumentException("""
+                    Too few arguments. Expected 3:
+                    COPY_DB /path/to/source/application.properties /path/to/target/application.properties
+                        [--threads=n] [--batch-size=n]
+                    """.stripIndent());
+            }
+        }
+        else if (mode == Mode.SCRUB_DB)
+        {
+            if (args.length < 2)
+            {
+                throw new IllegalArgumentException("""
+                    Too few arguments. Expected 2:
+                    SCRUB_DB /path/to/spring/application.properties [--threads=n] [--batch-size=n] [--resume]
                     """.stripIndent());
             }
-            dumpFile = new File(args[1]);
-            outputFolderPath = args[2];
         }
         else
         {
             throw new IllegalArgumentException("Unhandled Mode " + mode);
         }
 
-        Preconditions.checkNotNull(dumpFile);
-        Preconditions.checkArgument(dumpFile.exists());
-        Preconditions.checkArgument(!Strings.isNullOrEmpty(outputFolderPath));
+        // SCRUB_DB has no output
+        Map<String, String> options = parseOptions(args, mode == Mode.SCRUB_DB ? 2 : 3);
+        int threads = Integer.parseInt(options.getOrDefault(THREADS_OPTION, "1"));
+        int batchSize = Integer.parseInt(
+            options.getOrDefault(BATCH_SIZE_OPTION, String.valueOf(ObfuscatorService.DEFAULT_BATCH_SIZE)));
+        long checkpointIntervalMb = Long.parseLong(options.getOrDefault(
+            CHECKPOINT_INTERVAL_OPTION, String.valueOf(ObfuscatorService.DEFAULT_CHECKPOINT_INTERVAL >> 20)));
+        boolean resume = Boolean.parseBoolean(options.getOrDefault(RESUME_OPTION, "false"));
+        OutputFormat format = parseOption(
+            OutputFormat.class, FORMAT_OPTION, options.getOrDefault(FORMAT_OPTION, OutputFormat.SQL.name()));
+        int maxInsertKb = Integer.parseInt(options.getOrDefault(MAX_INSERT_KB_OPTION, "0"));
+        long reportIntervalSeconds = Long.parseLong(options.getOrDefault(
+            REPORT_INTERVAL_OPTION, String.valueOf(ObfuscatorService.DEFAULT_REPORT_INTERVAL.toSeconds())));
+        ObfuscatorService obfuscatorService = new ObfuscatorService(
+            threads,
+            batchSize,
+            checkpointIntervalMb << 20,
+            format,
+            maxInsertKb << 10,
+            Duration.ofSeconds(reportIntervalSeconds)
+        );
 
-        try
+        // A fresh dump is never the same twice, so there'd be no knowing where to pick it up
+        Preconditions.checkArgument(!resume || mode == Mode.READ_DUMP || mode == Mode.SCRUB_DB,
+            "--resume is only supported for READ_DUMP and SCRUB_DB");
+        Preconditions.checkArgument(!resume || format == OutputFormat.SQL, "--resume is only supported for SQL output");
+
+        if (mode == Mode.SCRUB_DB)
+        {
+            Properties props = loadProperties(args[1]);
+            File progressFile = ScrubProgress.fileFor(new File(args[1]).getAbsoluteFile());
+            JdbcScrubService scrubService = new JdbcScrubService(
+                props.getProperty(URL_PROPERTY),
+                props.getProperty(USERNAME_PROPERTY),
+                props.getProperty(PASSWORD_PROPERTY, ""),
+                threads,
+                batchSize
+            );
+
+            try
+            {
+                if (resume)
+                {
+                    scrubService.resume(progressFile);
+                }
+                else
+                {
+                    scrubService.scrub(progressFile);
+                }
+            }
+            catch (IOException | SQLException ex)
+            {
+                throw new RuntimeException("Error scrubbing database", ex);
+            }
+        }
+        else if (mode == Mode.COPY_DB)
         {
-            new ObfuscatorService().obfuscate(dumpFile, outputFolderPath);
+            Properties sourceProps = loadProperties(args[1]);
+            Properties targetProps = loadProperties(args[2]);
+            try
+            {
+                new JdbcCopyService(
+                    sourceProps.getProperty(URL_PROPERTY),
+                    sourceProps.getProperty(USERNAME_PROPERTY),
+                    sourceProps.getProperty(PASSWORD_PROPERTY, ""),
+                    targetProps.getProperty(URL_PROPERTY),
+                    targetProps.getProperty(USERNAME_PROPERTY),
+                    targetProps.getProperty(PASSWORD_PROPERTY, ""),
+                    threads,
+                    batchSize
+                ).copy();
+            }
+            catch (SQLException ex)
+            {
+                throw new RuntimeException("Error copying obfuscated database", ex);
+            }
         }
-        catch (IOException ex)
+        else if (mode == Mode.CREATE_DUMP)
+        {
+            String outputFolderPath = args[2];
+            Preconditions.checkArgument(!Strings.isNullOrEmpty(outputFolderPath));
+            Engine engine =
+                parseOption(Engine.class, ENGINE_OPTION, options.getOrDefault(ENGINE_OPTION, Engine.MYSQLDUMP.name()));
+            Preconditions.checkArgument(engine == Engine.MYSQLDUMP || format == OutputFormat.SQL,
+                "--format=tab is only supported with --engine=mysqldump");
+            Preconditions.checkArgument(engine == Engine.MYSQLDUMP || maxInsertKb == 0,
+                "--max-insert-kb is only supported with --engine=mysqldump");
+            Properties props = loadProperties(args[1]);
+            String url = props.getProperty(URL_PROPERTY);
+            String username = props.getProperty(USERNAME_PROPERTY);
+            String password = props.getProperty(PASSWORD_PROPERTY, "");
+
+            try
+            {
+                if (engine == Engine.JDBC)
+                {
+                    new JdbcDumpService(url, username, password, threads).dump(outputFolderPath);
+                }
+                else
+                {
+                    obfuscateNewDump(MYSQLDUMP, url, username, password, outputFolderPath, obfuscatorService);
+                }
+            }
+            catch (IOException | SQLException ex)
+            {
+                throw new RuntimeException("Error creating obfuscated dump", ex);
+            }
+        }
+        else
         {
-            throw new RuntimeException("Error creating obfuscated dump", ex);
+            String outputFolderPath = args[2];
+            Preconditions.checkArgument(!Strings.isNullOrEmpty(outputFolderPath));
+            File dumpFile = new File(args[1]);
+            Preconditions.checkArgument(dumpFile.exists());
+            boolean mydumper = dumpFile.isDirectory();
+            Preconditions.checkArgument(!mydumper || MydumperDirectory.isMydumperDirectory(dumpFile),
+                "[" + dumpFile + "] is a directory, but not a mydumper dump; it has no metadata file");
+            Preconditions.checkArgument(!mydumper || !resume, "--resume is not supported for mydumper dumps");
+
+            try
+            {
+                if (mydumper)
+                {
+                    obfuscatorService.obfuscateDirectory(dumpFile, outputFolderPath);
+                }
+                else if (resume)
+                {
+                    obfuscatorService.resume(dumpFile, outputFolderPath);
+                }
+                else
+                {
+                    obfuscatorService.obfuscate(dumpFile, outputFolderPath);
+                }
+            }
+            catch (IOException ex)
+            {
+                throw new RuntimeException("Error creating obfuscated dump", ex);
+            }
         }
     }
 
-    // TODO Provide non-Spring prop file option?
-    private static File makeDump(String propertiesFileLocation)
+    /**
+     * Parses trailing {@code --name=value} options, and {@code --name} flags, which are given the value "true"
+     */
+    private static Map<String, String> parseOptions(String[] args, int firstOptionIndex)
+    {
+        Map<String, String> options = new HashMap<>();
+        for (int i = firstOptionIndex; i < args.length; i++)
+        {
+            String arg = args[i];
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--"))
+            {
+                throw new IllegalArgumentException(
+                    "Unrecognized option [" + arg + "]. Expected --name=value or --name");
+            }
+            String name = separator < 0 ? arg.substring(2) : arg.substring(2, separator);
+            if (!OPTIONS.contains(name))
+            {
+                throw new IllegalArgumentException("Unknown option [" + name + "]. Please choose from " + OPTIONS);
+            }
+            options.put(name, separator < 0 ? "true" : arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    /**
+     * @return the constant named (case-insensitively) by an option's value
+     */
+    private static <E extends Enum<E>> E parseOption(Class<E> type, String optionName, String value)
     {
-        Properties props;
         try
         {
-            Resource resource = new FileUrlResource(propertiesFileLocation);
-            props = PropertiesLoaderUtils.loadProperties(resource);
+            return Enum.valueOf(type, value.toUpperCase());
         }
-        catch (IOException ex)
+        catch (IllegalArgumentException ex)
         {
-            throw new IllegalArgumentException(
-                "Cannot read application properties file [" + propertiesFileLocation + ']', ex);
+            throw new IllegalArgumentException("Unknown " + optionName + " [" + value + "]. Please choose from " +
+                Arrays.toString(type.getEnumConstants()).toLowerCase(), ex);
         }
+    }
 
+    // TODO Provide non-Spring prop file option?
+    private static Properties loadProperties(String propertiesFileLocation)
+    {
         try
         {
-            return makeDump(
-                props.getProperty("spring.datasource.url"),
-                props.getProperty("spring.datasource.username"),
-                props.getProperty("spring.datasource.password", "")
-            );
+            Resource resource = new FileUrlResource(propertiesFileLocation);
+            return PropertiesLoaderUtils.loadProperties(resource);
         }
-        catch (IOException | InterruptedException ex)
+        catch (IOException ex)
         {
-            throw new RuntimeException("Error creating unobfuscated dump", ex);
+            throw new IllegalArgumentException(
+                "Cannot read application properties file [" + propertiesFileLocation + ']', ex);
         }
     }
 
-    private static File makeDump(String url, String username, String password) throws IOException, InterruptedException
+    /**
+     * Runs mysqldump and obfuscates its stdout as it's written, so dumping and obfuscating overlap and the unobfuscated
+     * dump never touches the disk. mysqldump's stderr is collected separately, so its warnings and errors can't end up
+     * in the dump; they're logged once it exits, or, if it fails, thrown. A failure ends the stream with an error
+     * rather than an end of file (see {@link MysqldumpOutput}), so the incomplete output is deleted.
+     * @param mysqldump the mysqldump executable, as a path or a name to find on the {@code PATH}
+     */
+    @VisibleForTesting
+    static void obfuscateNewDump(String mysqldump,
+                                 String url,
+                                 String username,
+                                 String password,
+                                 String outputFileLocation,
+                                 ObfuscatorService obfuscatorService
+    ) throws IOException
     {
         String[] hostAndPort = url.substring(url.indexOf("//") + 2, url.lastIndexOf('/')).split(":");
         String host = hostAndPort[0];
@@ -122,25 +382,126 @@ public class ObfuscatorRunner
         String dbName = url.substring(url.lastIndexOf('/') + 1);
         String nonNullPassword = Strings.isNullOrEmpty(password) ? "" : password;
 
-        File tmpDump = File.createTempFile(dbName + "-dump-", ".sql");
-        tmpDump.deleteOnExit();
-
-        // TODO Make OS agnostic
-        String[] cmd = new String[] {
-            "/bin/sh",
-            "-c",
-            String.format("mysqldump --host=\"%s\" --port=\"%s\" --user=\"%s\" --password=\"%s\"" +
-                    " --extended-insert=FALSE --complete-insert=TRUE \"%s\" > %s",
-                host, port, username, nonNullPassword, dbName, tmpDump
-            )
-        };
-
-        Process process = new ProcessBuilder(cmd)
-            .redirectErrorStream(true)
-            .start();
-        process.getInputStream().transferTo(System.out);
-        process.waitFor();
-
-        return tmpDump;
+        // No shell, so there's no quoting to get wrong
+        Process process = new ProcessBuilder(
+            mysqldump,
+            "--host=" + host,
+            "--port=" + port,
+            "--user=" + username,
+            "--password=" + nonNullPassword,
+            "--complete-insert=TRUE",
+            dbName
+        ).start();
+        process.getOutputStream().close();
+
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        Thread stderrReader = Thread.ofPlatform().name("mysqldump-stderr").start(() ->
+        {
+            try (InputStream errorStream = process.getErrorStream())
+            {
+                errorStream.transferTo(stderr);
+            }
+            catch (IOException ex)
+            {
+                // The process is gone; whatever it wrote up to now is all we'll get
+            }
+        });
+
+        String errors;
+        try (MysqldumpOutput dump = new MysqldumpOutput(process, stderrReader, stderr))
+        {
+            obfuscatorService.obfuscate(dump, outputFileLocation);
+            errors = dump.awaitExit();
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            process.destroyForcibly();
+            throw ex;
+        }
+
+        if (!errors.isEmpty())
+        {
+            LOGGER.warn("mysqldump reported: {}", errors);
+        }
+    }
+
+    /**
+     * mysqldump's stdout, which only reaches its end once mysqldump has exited successfully. If mysqldump fails, its
+     * output ends with an {@link IOException} instead, so whatever reads it fails just as it would on a broken stream.
+     */
+    private static class MysqldumpOutput extends FilterInputStream
+    {
+        private final Process process;
+
+        private final Thread stderrReader;
+
+        private final ByteArrayOutputStream stderr;
+
+        /**
+         * What mysqldump wrote to stderr, once it's exited successfully
+         */
+        private String errors;
+
+        private MysqldumpOutput(Process process, Thread stderrReader, ByteArrayOutputStream stderr)
+        {
+            super(process.getInputStream());
+            this.process = process;
+            this.stderrReader = stderrReader;
+            this.stderr = stderr;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = super.read();
+            if (b < 0)
+            {
+                awaitExit();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException
+        {
+            int count = super.read(buffer, offset, length);
+            if (count < 0)
+            {
+                awaitExit();
+            }
+            return count;
+        }
+
+        /**
+         * @return what mysqldump wrote to stderr
+         * @throws IOException if mysqldump exited with an error
+         */
+        private String awaitExit() throws IOException
+        {
+            if (errors != null)
+            {
+                return errors;
+            }
+
+            int exitCode;
+            try
+            {
+                exitCode = process.waitFor();
+                stderrReader.join();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for mysqldump to exit");
+            }
+
+            String output = stderr.toString(Charset.defaultCharset()).strip();
+            if (exitCode != 0)
+            {
+                throw new IOException("mysqldump exited with code " + exitCode + ": " + output);
+            }
+            errors = output;
+            return errors;
+        }
     }
-}
\ No newline at end of file
+}
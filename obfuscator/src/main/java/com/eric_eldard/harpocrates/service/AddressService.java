@@ -1,75 +1,83 @@
 package com.eric_eldard.harpocrates.service;
 
-import lombok.SneakyThrows;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Scanner;
-import java.util.concurrent.ThreadLocalRandom;
-
+import com.eric_eldard.harpocrates.model.Dataset;
 import com.eric_eldard.harpocrates.util.ResourceUtils;
 
 public class AddressService
 {
     public static final AddressService INSTANCE = new AddressService();
 
-    private final List<String> STREET_ADDRESSES;
+    private static final int STREET_ADDRESS = 0;
+
+    private static final int CITY = 1;
 
-    private final List<String> CITIES;
+    private static final int STATE = 2;
 
-    private final List<String> STATES;
+    private static final int ZIP = 3;
 
-    private final List<String> ZIPS;
+    /**
+     * Street address, city, state and zip of each post office
+     */
+    private final Dataset POST_OFFICES;
 
-    @SneakyThrows
     private AddressService()
     {
-        Scanner scanner = ResourceUtils.makeFileScanner("data/us_post_offices.txt");
-        List<String> readInAddressList = new ArrayList<>();
-        List<String> readInCityList = new ArrayList<>();
-        List<String> readInStateList = new ArrayList<>();
-        List<String> readInZipList = new ArrayList<>();
-        while (scanner.hasNextLine())
-        {
-            String[] split = scanner.nextLine().split(",");
-            readInAddressList.add(split[0]);
-            readInCityList.add(split[1]);
-            readInStateList.add(split[2]);
-            readInZipList.add(split[3]);
-        }
-        STREET_ADDRESSES = List.copyOf(readInAddressList);
-        CITIES = List.copyOf(readInCityList);
-        STATES = List.copyOf(readInStateList);
-        ZIPS = List.copyOf(readInZipList);
+        POST_OFFICES = ResourceUtils.loadDataset("data/us_post_offices.txt", 4);
     }
 
     public String makeStreetAddress()
     {
-        return STREET_ADDRESSES.get(ThreadLocalRandom.current().nextInt(STREET_ADDRESSES.size()));
+        return POST_OFFICES.getField(POST_OFFICES.randomRecord(), STREET_ADDRESS);
+    }
+
+    public void appendStreetAddress(StringBuilder out)
+    {
+        POST_OFFICES.appendField(out, POST_OFFICES.randomRecord(), STREET_ADDRESS);
     }
 
     public String makeCity()
     {
-        return CITIES.get(ThreadLocalRandom.current().nextInt(CITIES.size()));
+        return POST_OFFICES.getField(POST_OFFICES.randomRecord(), CITY);
+    }
+
+    public void appendCity(StringBuilder out)
+    {
+        POST_OFFICES.appendField(out, POST_OFFICES.randomRecord(), CITY);
     }
 
     public String makeState()
     {
-        return STATES.get(ThreadLocalRandom.current().nextInt(STATES.size()));
+        return POST_OFFICES.getField(POST_OFFICES.randomRecord(), STATE);
+    }
+
+    public void appendState(StringBuilder out)
+    {
+        POST_OFFICES.appendField(out, POST_OFFICES.randomRecord(), STATE);
     }
 
     public String makeZip()
     {
-        return ZIPS.get(ThreadLocalRandom.current().nextInt(ZIPS.size()));
+        return POST_OFFICES.getField(POST_OFFICES.randomRecord(), ZIP);
+    }
+
+    public void appendZip(StringBuilder out)
+    {
+        POST_OFFICES.appendField(out, POST_OFFICES.randomRecord(), ZIP);
     }
 
     public String makeAddress()
     {
-        int i = ThreadLocalRandom.current().nextInt(STREET_ADDRESSES.size());
-        return
-            STREET_ADDRESSES.get(i) + ", " +
-            CITIES.get(i) + ", " +
-            STATES.get(i) + ", " +
-            ZIPS.get(i);
+        StringBuilder address = new StringBuilder();
+        appendAddress(address);
+        return address.toString();
+    }
+
+    public void appendAddress(StringBuilder out)
+    {
+        int i = POST_OFFICES.randomRecord();
+        POST_OFFICES.appendField(out, i, STREET_ADDRESS);
+        POST_OFFICES.appendField(out.append(", "), i, CITY);
+        POST_OFFICES.appendField(out.append(", "), i, STATE);
+        POST_OFFICES.appendField(out.append(", "), i, ZIP);
     }
 }
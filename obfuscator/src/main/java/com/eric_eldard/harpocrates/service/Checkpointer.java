@@ -0,0 +1,72 @@
+package com.eric_eldard.harpocrates.service;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.eric_eldard.harpocrates.io.Checkpoint;
+import com.eric_eldard.harpocrates.io.DumpWriter;
+import com.eric_eldard.harpocrates.io.ResumableDumpWriter;
+import com.eric_eldard.harpocrates.model.TableState;
+
+/**
+ * Saves a {@link Checkpoint} whenever another {@code interval} bytes of the dump have been obfuscated and written since
+ * the last one. Only used from the thread writing the output. Output which can't be resumed into (anything but a
+ * {@link ResumableDumpWriter}) is never checkpointed.
+ */
+class Checkpointer
+{
+    /**
+     * Never saves a checkpoint; for dumps which can't be resumed, or when checkpoints are turned off
+     */
+    static final Checkpointer DISABLED = new Checkpointer(null, Checkpoint.start(0, 0), Long.MAX_VALUE);
+
+    private final File checkpointFile;
+
+    private final long dumpSize;
+
+    private final long dumpLastModified;
+
+    private final long interval;
+
+    private long lastInputOffset;
+
+    /**
+     * @param from the checkpoint this run started from
+     */
+    Checkpointer(File checkpointFile, Checkpoint from, long interval)
+    {
+        this.checkpointFile = checkpointFile;
+        this.dumpSize = from.getDumpSize();
+        this.dumpLastModified = from.getDumpLastModified();
+        this.interval = interval;
+        this.lastInputOffset = from.getInputOffset();
+    }
+
+    /**
+     * @param inputOffset the offset in the dump up to which everything's been written to {@code out}
+     * @param state       the table state at that offset
+     */
+    void reached(long inputOffset, TableState state, DumpWriter out) throws IOException
+    {
+        if (checkpointFile == null ||
+            !(out instanceof ResumableDumpWriter resumable) ||
+            inputOffset - lastInputOffset < interval)
+        {
+            return;
+        }
+
+        Checkpoint.of(dumpSize, dumpLastModified, inputOffset, resumable.sync(), state).save(checkpointFile);
+        lastInputOffset = inputOffset;
+    }
+
+    /**
+     * The run is complete; there's nothing left to resume
+     */
+    void finished()
+    {
+        if (checkpointFile != null)
+        {
+            checkpointFile.delete();
+        }
+    }
+}
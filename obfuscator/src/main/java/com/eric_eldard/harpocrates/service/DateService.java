@@ -1,26 +1,46 @@
 package com.eric_eldard.harpocrates.service;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
 import java.util.concurrent.ThreadLocalRandom;
 
 public class DateService
 {
     private static final Long MILLISECONDS_FOR_JAN_1_1900 = -2208970800000L;
 
+    /**
+     * Equivalent to {@code SimpleDateFormat("yyyy-MM-dd HH:mm:ss.S")} in the default time zone; note the millis aren't
+     * zero-padded. Unlike SimpleDateFormat, it's immutable and thread safe, so it can be shared.
+     */
+    private static final DateTimeFormatter FORMATTER = new DateTimeFormatterBuilder()
+        .appendPattern("yyyy-MM-dd HH:mm:ss.")
+        .appendValue(ChronoField.MILLI_OF_SECOND)
+        .toFormatter()
+        .withZone(ZoneId.systemDefault());
+
     public static final DateService INSTANCE = new DateService();
 
     public String makeRandomDateString()
+    {
+        StringBuilder date = new StringBuilder(23);
+        appendRandomDate(date);
+        return date.toString();
+    }
+
+    public void appendRandomDate(StringBuilder out)
     {
         long randomMillis = ThreadLocalRandom.current().nextLong(
             MILLISECONDS_FOR_JAN_1_1900,
             System.currentTimeMillis()
         );
-        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.S").format(new Date(randomMillis));
+        FORMATTER.formatTo(Instant.ofEpochMilli(randomMillis), out);
     }
 
     private DateService()
     {
         // singleton ctor
     }
-}
\ No newline at end of file
+}
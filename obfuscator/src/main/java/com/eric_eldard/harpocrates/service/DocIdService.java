@@ -8,24 +8,29 @@ public class DocIdService
 
     public String makeDocId(String mask)
     {
-        char[] docId = new char[mask.length()];
+        StringBuilder docId = new StringBuilder(mask.length());
+        appendDocId(mask, docId);
+        return docId.toString();
+    }
+
+    public void appendDocId(CharSequence mask, StringBuilder out)
+    {
         for (int i = 0; i < mask.length(); i++)
         {
             char maskChar = mask.charAt(i);
             if (Character.isDigit(maskChar))
             {
-                docId[i] = (char) (ThreadLocalRandom.current().nextInt(9) + '0');
+                out.append((char) (ThreadLocalRandom.current().nextInt(9) + '0'));
             }
             else
             {
-                docId[i] = (char) (ThreadLocalRandom.current().nextInt(26) + 'A');
+                out.append((char) (ThreadLocalRandom.current().nextInt(26) + 'A'));
             }
         }
-        return new String(docId);
     }
 
     private DocIdService()
     {
         // singleton ctor
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,299 @@
+package com.eric_eldard.harpocrates.service;
+
+import com.google.common.base.Preconditions;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.eric_eldard.harpocrates.enumeration.Action;
+import com.eric_eldard.harpocrates.model.ReplacementTemplate;
+import com.eric_eldard.harpocrates.model.TablePlan;
+import com.eric_eldard.harpocrates.model.TableState;
+import com.eric_eldard.harpocrates.util.JdbcUtils;
+
+/**
+ * Copies a database into another one, obfuscated, with no dump in between. The result is the same as obfuscating a
+ * dump of the source and restoring it into the target: data definitions are read from the source's column comments,
+ * classified columns are never selected, and their values are generated in place of the real ones.
+ * <br><br>
+ * Tables are copied concurrently, each on its own pair of connections, streaming rows from the source into batches of
+ * prepared INSERTs on the target. When both databases are MySQL, each table is dropped and created again on the
+ * target from the source's definition, and its rows are loaded with keys disabled and with foreign key and unique
+ * checks off. Otherwise, the target's tables must already exist, and rows are added to them.
+ */
+public class JdbcCopyService
+{
+    /**
+     * Rows sent to the target per batch
+     */
+    public static final int DEFAULT_BATCH_ROWS = 1_000;
+
+    private final String sourceUrl;
+
+    private final String sourceUsername;
+
+    private final String sourcePassword;
+
+    private final String targetUrl;
+
+    private final String targetUsername;
+
+    private final String targetPassword;
+
+    private final int threads;
+
+    private final int batchRows;
+
+    /**
+     * @param threads   The number of tables copied at a time
+     * @param batchRows The number of rows sent to the target per batch, and committed together
+     */
+    public JdbcCopyService(String sourceUrl,
+                           String sourceUsername,
+                           String sourcePassword,
+                           String targetUrl,
+                           String targetUsername,
+                           String targetPassword,
+                           int threads,
+                           int batchRows
+    )
+    {
+        Preconditions.checkArgument(threads > 0, "threads must be positive");
+        Preconditions.checkArgument(batchRows > 0, "batchRows must be positive");
+        this.sourceUrl = sourceUrl;
+        this.sourceUsername = sourceUsername;
+        this.sourcePassword = sourcePassword;
+        this.targetUrl = targetUrl;
+        this.targetUsername = targetUsername;
+        this.targetPassword = targetPassword;
+        this.threads = threads;
+        this.batchRows = batchRows;
+    }
+
+    public void copy() throws SQLException
+    {
+        List<TableState> tables;
+        boolean sourceMySql;
+        boolean targetMySql;
+        try (Connection source = connectSource();
+             Connection target = connectTarget())
+        {
+            tables = JdbcUtils.readTables(source);
+            sourceMySql = JdbcUtils.isMySql(source.getMetaData());
+            targetMySql = JdbcUtils.isMySql(target.getMetaData());
+        }
+
+        ExecutorService copiers = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<Void>> copies = new ArrayList<>(tables.size());
+            for (TableState table : tables)
+            {
+                copies.add(copiers.submit(() ->
+                {
+                    copyTable(table, sourceMySql, targetMySql);
+                    return null;
+                }));
+            }
+            for (Future<Void> copy : copies)
+            {
+                copy.get();
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while copying database", ex);
+        }
+        catch (ExecutionException ex)
+        {
+            if (ex.getCause() instanceof SQLException sqlEx)
+            {
+                throw sqlEx;
+            }
+            if (ex.getCause() instanceof RuntimeException runtimeEx)
+            {
+                throw runtimeEx;
+            }
+            throw new RuntimeException("Error copying database", ex.getCause());
+        }
+        finally
+        {
+            // Don't leave the other tables copying after one has failed
+            copiers.shutdownNow();
+            copiers.close();
+        }
+    }
+
+    private void copyTable(TableState table, boolean sourceMySql, boolean targetMySql) throws SQLException
+    {
+        try (Connection source = connectSource();
+             Connection target = connectTarget();
+             Statement targetStatement = target.createStatement())
+        {
+            source.setReadOnly(true);
+            source.setAutoCommit(false); // some drivers only use a cursor for fetches within a transaction
+
+            String tableName = JdbcUtils.requoteIdentifier(
+                table.getTableName(), target.getMetaData().getIdentifierQuoteString());
+
+            if (targetMySql)
+            {
+                // Session settings, as a dump sets them before loading
+                targetStatement.execute("SET FOREIGN_KEY_CHECKS=0");
+                targetStatement.execute("SET UNIQUE_CHECKS=0");
+            }
+            if (sourceMySql && targetMySql)
+            {
+                targetStatement.execute("DROP TABLE IF EXISTS " + tableName);
+                targetStatement.execute(showCreateTable(source, table.getTableName()));
+            }
+            if (targetMySql)
+            {
+                targetStatement.execute("ALTER TABLE " + tableName + " DISABLE KEYS");
+            }
+
+            if (table.getPlan().getColumnCount() > 0)
+            {
+                target.setAutoCommit(false);
+                copyRows(source, target, table, sourceMySql);
+                target.setAutoCommit(true);
+            }
+
+            if (targetMySql)
+            {
+                targetStatement.execute("ALTER TABLE " + tableName + " ENABLE KEYS");
+            }
+
+            source.commit();
+        }
+    }
+
+    /**
+     * Streams a table's rows from the source into batched INSERTs on the target, generating values for the columns
+     * being obfuscated
+     */
+    private void copyRows(Connection source, Connection target, TableState table, boolean sourceMySql)
+        throws SQLException
+    {
+        TablePlan plan = table.getPlan();
+        int[] planIndexes = JdbcUtils.planIndexes(plan, plan.getColumnCount());
+        String select =
+            JdbcUtils.selectUnobfuscated(table, planIndexes, source.getMetaData().getIdentifierQuoteString());
+        String insert = insertStatement(table, target.getMetaData().getIdentifierQuoteString());
+
+        RowReplacements replacements = new RowReplacements();
+        ReplacementTemplate[] templates = plan.getTemplates();
+        Action[] actions = plan.getActions();
+        StringBuilder replacement = new StringBuilder();
+
+        try (Statement statement = JdbcUtils.createStreamingStatement(source, sourceMySql);
+             ResultSet rs = statement.executeQuery(select);
+             PreparedStatement insertStatement = target.prepareStatement(insert))
+        {
+            ResultSetMetaData metaData = rs.getMetaData();
+            int[] types = new int[planIndexes.length];
+            for (int i = 0; i < types.length; i++)
+            {
+                types[i] = metaData.getColumnType(i + 1);
+            }
+
+            int batchedRows = 0;
+            while (rs.next())
+            {
+                replacements.reset();
+                for (int i = 0; i < types.length; i++)
+                {
+                    int k = planIndexes[i];
+                    Object value;
+                    if (k < 0)
+                    {
+                        value = rs.getObject(i + 1);
+                    }
+                    else if (actions[k] == Action.REPLACE)
+                    {
+                        replacement.setLength(0);
+                        templates[k].appendTo(replacement, replacements);
+                        value = replacement.toString();
+                    }
+                    else
+                    {
+                        value = null;
+                    }
+
+                    if (value == null)
+                    {
+                        insertStatement.setNull(i + 1, types[i]);
+                    }
+                    else
+                    {
+                        insertStatement.setObject(i + 1, value);
+                    }
+                }
+                insertStatement.addBatch();
+
+                if (++batchedRows == batchRows)
+                {
+                    insertStatement.executeBatch();
+                    target.commit();
+                    batchedRows = 0;
+                }
+            }
+
+            if (batchedRows > 0)
+            {
+                insertStatement.executeBatch();
+                target.commit();
+            }
+        }
+    }
+
+    private static String showCreateTable(Connection source, String tableName) throws SQLException
+    {
+        try (Statement statement = source.createStatement();
+             ResultSet createRs = statement.executeQuery("SHOW CREATE TABLE " + tableName))
+        {
+            createRs.next();
+            return createRs.getString(2);
+        }
+    }
+
+    private static String insertStatement(TableState table, String quote)
+    {
+        StringBuilder insert = new StringBuilder("INSERT INTO ")
+            .append(JdbcUtils.requoteIdentifier(table.getTableName(), quote))
+            .append(" (");
+        List<String> columnNames = table.getColumnNames();
+        for (int i = 0; i < columnNames.size(); i++)
+        {
+            insert.append(i > 0 ? ", " : "").append(JdbcUtils.requoteIdentifier(columnNames.get(i), quote));
+        }
+        insert.append(") VALUES (");
+        for (int i = 0; i < columnNames.size(); i++)
+        {
+            insert.append(i > 0 ? ", ?" : "?");
+        }
+        return insert.append(')').toString();
+    }
+
+    private Connection connectSource() throws SQLException
+    {
+        return DriverManager.getConnection(sourceUrl, sourceUsername, sourcePassword);
+    }
+
+    private Connection connectTarget() throws SQLException
+    {
+        return JdbcUtils.connectForBatches(targetUrl, targetUsername, targetPassword);
+    }
+}
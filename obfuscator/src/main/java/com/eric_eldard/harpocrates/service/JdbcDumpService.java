@@ -0,0 +1,423 @@
+package com.eric_eldard.harpocrates.service;
+
+import com.google.common.base.Preconditions;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+
+import com.eric_eldard.harpocrates.enumeration.Action;
+import com.eric_eldard.harpocrates.io.ByteBuilder;
+import com.eric_eldard.harpocrates.io.DumpWriter;
+import com.eric_eldard.harpocrates.io.SegmentStitcher;
+import com.eric_eldard.harpocrates.model.ReplacementTemplate;
+import com.eric_eldard.harpocrates.model.TablePlan;
+import com.eric_eldard.harpocrates.model.TableState;
+import com.eric_eldard.harpocrates.util.JdbcUtils;
+
+/**
+ * Makes an obfuscated dump straight from a database over JDBC, without mysqldump and without any dump text to parse.
+ * Each table's data definitions are read from its column comments, and its classified columns are never even selected;
+ * their values are generated in place of the real ones.
+ * <br><br>
+ * Tables are read concurrently, each on its own connection with a streaming result set, into its own temporary segment
+ * file beside the output. Segments are stitched into the output in table order as they complete. Since each table is
+ * read in its own transaction, the dump isn't a consistent snapshot across tables (unlike mysqldump
+ * --single-transaction).
+ * <br><br>
+ * The output is in mysqldump's format, with complete, extended INSERTs. Table structure is only included when the
+ * source is MySQL, since it comes from SHOW CREATE TABLE.
+ */
+public class JdbcDumpService
+{
+    /**
+     * An INSERT is ended once it's this long, as mysqldump does with its default net_buffer_length
+     */
+    private static final int MAX_INSERT_BYTES = 1024 * 1024;
+
+    /**
+     * A table's segment buffer is written to its file once it holds this many bytes
+     */
+    private static final int SEGMENT_FLUSH_BYTES = 8 * 1024 * 1024;
+
+    private static final byte[] NULL = {'N', 'U', 'L', 'L'};
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private static final String HEADER = """
+        /*!40101 SET @OLD_CHARACTER_SET_CLIENT=@@CHARACTER_SET_CLIENT */;
+        /*!40101 SET @OLD_CHARACTER_SET_RESULTS=@@CHARACTER_SET_RESULTS */;
+        /*!40101 SET @OLD_COLLATION_CONNECTION=@@COLLATION_CONNECTION */;
+        /*!50503 SET NAMES utf8mb4 */;
+        /*!40014 SET @OLD_UNIQUE_CHECKS=@@UNIQUE_CHECKS, UNIQUE_CHECKS=0 */;
+        /*!40014 SET @OLD_FOREIGN_KEY_CHECKS=@@FOREIGN_KEY_CHECKS, FOREIGN_KEY_CHECKS=0 */;
+        /*!40101 SET @OLD_SQL_MODE=@@SQL_MODE, SQL_MODE='NO_AUTO_VALUE_ON_ZERO' */;
+        """;
+
+    private static final String FOOTER = """
+
+        /*!40101 SET SQL_MODE=@OLD_SQL_MODE */;
+        /*!40014 SET FOREIGN_KEY_CHECKS=@OLD_FOREIGN_KEY_CHECKS */;
+        /*!40014 SET UNIQUE_CHECKS=@OLD_UNIQUE_CHECKS */;
+        /*!40101 SET CHARACTER_SET_CLIENT=@OLD_CHARACTER_SET_CLIENT */;
+        /*!40101 SET CHARACTER_SET_RESULTS=@OLD_CHARACTER_SET_RESULTS */;
+        /*!40101 SET COLLATION_CONNECTION=@OLD_COLLATION_CONNECTION */;
+
+        -- Dump completed
+        """;
+
+    private final String url;
+
+    private final String username;
+
+    private final String password;
+
+    private final int threads;
+
+    /**
+     * @param threads The number of tables read at a time, each on its own connection
+     */
+    public JdbcDumpService(String url, String username, String password, int threads)
+    {
+        Preconditions.checkArgument(threads > 0, "threads must be positive");
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.threads = threads;
+    }
+
+    /**
+     * @param outputFileLocation gzipped if its name ends in {@code .gz}
+     */
+    public void dump(String outputFileLocation) throws IOException, SQLException
+    {
+        File outputFile = new File(outputFileLocation).getAbsoluteFile();
+        Path segmentDir = outputFile.getParentFile().toPath();
+
+        List<TableState> tables;
+        boolean mySql;
+        ByteBuilder header = new ByteBuilder(HEADER.length() * 2);
+        try (Connection connection = connect())
+        {
+            DatabaseMetaData metaData = connection.getMetaData();
+            mySql = JdbcUtils.isMySql(metaData);
+            tables = JdbcUtils.readTables(connection);
+
+            header.appendUtf8("-- Harpocrates obfuscated dump\n--\n-- Source: ")
+                .appendUtf8(metaData.getDatabaseProductName())
+                .append(' ')
+                .appendUtf8(metaData.getDatabaseProductVersion())
+                .appendUtf8("    Database: ")
+                .appendUtf8(String.valueOf(connection.getCatalog()))
+                .appendUtf8("\n-- ------------------------------------------------------\n\n")
+                .appendUtf8(HEADER);
+        }
+
+        boolean completed = false;
+        try (DumpWriter out = DumpWriter.open(outputFile, threads))
+        {
+            out.write(List.of(header.toByteBuffer(0, header.length())));
+            SegmentStitcher.stitch(
+                tables,
+                (table, segment) -> dumpTable(table, mySql, segment),
+                threads,
+                segmentDir,
+                out
+            );
+
+            ByteBuilder footer = new ByteBuilder(FOOTER.length());
+            footer.appendUtf8(FOOTER);
+            out.write(List.of(footer.toByteBuffer(0, footer.length())));
+            completed = true;
+        }
+        finally
+        {
+            // The dump is incomplete; don't leave it around to be mistaken for a good one
+            if (!completed)
+            {
+                Files.deleteIfExists(outputFile.toPath());
+            }
+        }
+    }
+
+    /**
+     * Writes one table's structure and obfuscated data to its segment
+     */
+    private void dumpTable(TableState table, boolean mySql, DumpWriter out) throws IOException, SQLException
+    {
+        try (Connection connection = connect())
+        {
+            connection.setReadOnly(true);
+            connection.setAutoCommit(false); // some drivers only use a cursor for fetches within a transaction
+
+            ByteBuilder buffer = new ByteBuilder(SEGMENT_FLUSH_BYTES + MAX_INSERT_BYTES);
+            String tableName = table.getTableName();
+
+            buffer.appendUtf8("\n--\n-- Table structure for table ").appendUtf8(tableName).appendUtf8("\n--\n\n");
+            if (mySql)
+            {
+                try (Statement statement = connection.createStatement();
+                     ResultSet createRs = statement.executeQuery("SHOW CREATE TABLE " + tableName))
+                {
+                    createRs.next();
+                    buffer.appendUtf8("DROP TABLE IF EXISTS ").appendUtf8(tableName).appendUtf8(";\n")
+                        .appendUtf8(createRs.getString(2)).appendUtf8(";\n");
+                }
+            }
+            else
+            {
+                buffer.appendUtf8("-- (not available from this database)\n");
+            }
+
+            buffer.appendUtf8("\n--\n-- Dumping data for table ").appendUtf8(tableName).appendUtf8("\n--\n\n")
+                .appendUtf8("LOCK TABLES ").appendUtf8(tableName).appendUtf8(" WRITE;\n")
+                .appendUtf8("/*!40000 ALTER TABLE ").appendUtf8(tableName).appendUtf8(" DISABLE KEYS */;\n");
+
+            if (table.getPlan().getColumnCount() > 0)
+            {
+                dumpRows(connection, table, mySql, buffer, out);
+            }
+
+            buffer.appendUtf8("/*!40000 ALTER TABLE ").appendUtf8(tableName).appendUtf8(" ENABLE KEYS */;\n")
+                .appendUtf8("UNLOCK TABLES;\n");
+            flush(buffer, out);
+
+            connection.commit();
+        }
+    }
+
+    /**
+     * Streams a table's rows into extended INSERT statements. Classified columns are selected as NULL, so their real
+     * values never leave the database, and are written with values generated from their templates.
+     */
+    private void dumpRows(Connection connection,
+                          TableState table,
+                          boolean mySql,
+                          ByteBuilder buffer,
+                          DumpWriter out
+    ) throws IOException, SQLException
+    {
+        TablePlan plan = table.getPlan();
+        int[] planIndexes = JdbcUtils.planIndexes(plan, plan.getColumnCount());
+        String select =
+            JdbcUtils.selectUnobfuscated(table, planIndexes, connection.getMetaData().getIdentifierQuoteString());
+
+        String insertPrefix = "INSERT INTO " + table.getTableName() + " (" + plan.getColumnList() + ") VALUES ";
+        RowReplacements replacements = new RowReplacements();
+        ReplacementTemplate[] templates = plan.getTemplates();
+        Action[] actions = plan.getActions();
+
+        try (Statement statement = JdbcUtils.createStreamingStatement(connection, mySql))
+        {
+            try (ResultSet rs = statement.executeQuery(select))
+            {
+                ResultSetMetaData metaData = rs.getMetaData();
+                int[] types = new int[planIndexes.length];
+                for (int i = 0; i < types.length; i++)
+                {
+                    types[i] = metaData.getColumnType(i + 1);
+                }
+
+                int statementStart = -1;
+                while (rs.next())
+                {
+                    if (statementStart < 0)
+                    {
+                        statementStart = buffer.length();
+                        buffer.appendUtf8(insertPrefix);
+                    }
+                    else
+                    {
+                        buffer.append(',');
+                    }
+
+                    replacements.reset();
+                    buffer.append('(');
+                    for (int i = 0; i < types.length; i++)
+                    {
+                        if (i > 0)
+                        {
+                            buffer.append(',');
+                        }
+
+                        int k = planIndexes[i];
+                        if (k < 0)
+                        {
+                            appendValue(rs, i + 1, types[i], buffer);
+                        }
+                        else if (actions[k] == Action.REPLACE)
+                        {
+                            templates[k].appendTo(buffer, replacements);
+                        }
+                        else
+                        {
+                            buffer.append(NULL);
+                        }
+                    }
+                    buffer.append(')');
+
+                    if (buffer.length() - statementStart >= MAX_INSERT_BYTES)
+                    {
+                        buffer.appendUtf8(";\n");
+                        statementStart = -1;
+                        if (buffer.length() >= SEGMENT_FLUSH_BYTES)
+                        {
+                            flush(buffer, out);
+                        }
+                    }
+                }
+
+                if (statementStart >= 0)
+                {
+                    buffer.appendUtf8(";\n");
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a column value as a MySQL literal, as mysqldump would: numbers bare, binary data in hex and everything
+     * else as a backslash-escaped string
+     */
+    private void appendValue(ResultSet rs, int column, int type, ByteBuilder buffer) throws SQLException
+    {
+        switch (type)
+        {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT,
+                 Types.REAL, Types.FLOAT, Types.DOUBLE, Types.NUMERIC, Types.DECIMAL ->
+            {
+                String value = rs.getString(column);
+                if (value == null)
+                {
+                    buffer.append(NULL);
+                }
+                else
+                {
+                    buffer.appendUtf8(value);
+                }
+            }
+            case Types.BOOLEAN, Types.BIT ->
+            {
+                // BIT(1) and BOOLEAN come back as Boolean, wider BITs as byte[]
+                Object value = rs.getObject(column);
+                if (value == null)
+                {
+                    buffer.append(NULL);
+                }
+                else if (value instanceof Boolean bool)
+                {
+                    buffer.append(bool ? '1' : '0');
+                }
+                else if (value instanceof byte[] bytes)
+                {
+                    appendHex(bytes, buffer);
+                }
+                else
+                {
+                    buffer.appendUtf8(value.toString());
+                }
+            }
+            case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB ->
+            {
+                byte[] value = rs.getBytes(column);
+                if (value == null)
+                {
+                    buffer.append(NULL);
+                }
+                else
+                {
+                    appendHex(value, buffer);
+                }
+            }
+            default ->
+            {
+                String value = rs.getString(column);
+                if (value == null)
+                {
+                    buffer.append(NULL);
+                }
+                else
+                {
+                    appendString(value, buffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Quotes and escapes a string the way mysqldump does
+     */
+    private static void appendString(String value, ByteBuilder buffer)
+    {
+        buffer.append('\'');
+        int i = 0;
+        while (i < value.length())
+        {
+            char ch = value.charAt(i);
+            switch (ch)
+            {
+                case 0 -> buffer.append('\\').append('0');
+                case '\n' -> buffer.append('\\').append('n');
+                case '\r' -> buffer.append('\\').append('r');
+                case 0x1A -> buffer.append('\\').append('Z');
+                case '\\', '\'', '"' -> buffer.append('\\').append(ch);
+                default ->
+                {
+                    if (ch < 0x80)
+                    {
+                        buffer.append(ch);
+                    }
+                    else
+                    {
+                        // Encode the whole run of non-ASCII chars at once; none of them need escaping
+                        int runEnd = i + 1;
+                        while (runEnd < value.length() && value.charAt(runEnd) >= 0x80)
+                        {
+                            runEnd++;
+                        }
+                        buffer.appendUtf8Escaped(value.subSequence(i, runEnd), '\'');
+                        i = runEnd;
+                        continue;
+                    }
+                }
+            }
+            i++;
+        }
+        buffer.append('\'');
+    }
+
+    private static void appendHex(byte[] value, ByteBuilder buffer)
+    {
+        if (value.length == 0)
+        {
+            buffer.append('\'').append('\'');
+            return;
+        }
+        buffer.append('0').append('x');
+        for (byte b : value)
+        {
+            buffer.append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+        }
+    }
+
+    private static void flush(ByteBuilder buffer, DumpWriter out) throws IOException
+    {
+        out.write(List.of(buffer.toByteBuffer(0, buffer.length())));
+        buffer.setLength(0);
+    }
+
+    private Connection connect() throws SQLException
+    {
+        return DriverManager.getConnection(url, username, password);
+    }
+}
@@ -0,0 +1,452 @@
+package com.eric_eldard.harpocrates.service;
+
+import com.google.common.base.Preconditions;
+import lombok.AllArgsConstructor;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.eric_eldard.harpocrates.enumeration.Action;
+import com.eric_eldard.harpocrates.io.ScrubProgress;
+import com.eric_eldard.harpocrates.io.ScrubProgress.KeyValue;
+import com.eric_eldard.harpocrates.model.ReplacementTemplate;
+import com.eric_eldard.harpocrates.model.TablePlan;
+import com.eric_eldard.harpocrates.model.TableState;
+import com.eric_eldard.harpocrates.util.JdbcUtils;
+
+/**
+ * Obfuscates a database in place, such as a clone restored from a snapshot, which is far cheaper than dumping it and
+ * loading it again. Data definitions are read from the column comments written by the classifier, and only the
+ * classified columns of each row are updated; the rest of the row is never read or written.
+ * <br><br>
+ * Each table is read in primary key order, and its rows are cut into chunks of consecutive keys. Chunks are updated
+ * concurrently on a pool of connections, each in a batch of single-row UPDATEs committed on its own. Progress is saved
+ * per table, as the key up to which every chunk is committed, so a failed run can be picked up where it left off with
+ * {@link #resume(File)}. Every table with classified columns must have a primary key, and none of its key columns may
+ * be classified.
+ */
+public class JdbcScrubService
+{
+    /**
+     * Rows updated and committed together
+     */
+    public static final int DEFAULT_CHUNK_ROWS = 1_000;
+
+    private final String url;
+
+    private final String username;
+
+    private final String password;
+
+    private final int threads;
+
+    private final int chunkRows;
+
+    /**
+     * @param threads   The number of chunks updated at a time, each on its own connection
+     * @param chunkRows The number of rows updated and committed together
+     */
+    public JdbcScrubService(String url, String username, String password, int threads, int chunkRows)
+    {
+        Preconditions.checkArgument(threads > 0, "threads must be positive");
+        Preconditions.checkArgument(chunkRows > 0, "chunkRows must be positive");
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.threads = threads;
+        this.chunkRows = chunkRows;
+    }
+
+    /**
+     * Scrubs every table from the start, saving progress to {@code progressFile} as it goes. The file is deleted once
+     * the whole database is done.
+     */
+    public void scrub(File progressFile) throws IOException, SQLException
+    {
+        progressFile.delete(); // from some earlier run
+        scrub(progressFile, ScrubProgress.start(url));
+    }
+
+    /**
+     * Picks up a failed {@link #scrub(File)} run from its saved progress: finished tables are skipped, and the rest are
+     * scrubbed from the first row after the last committed chunk. If there's no progress file, the database is
+     * scrubbed from the start.
+     * @throws IllegalArgumentException if the progress was saved scrubbing a different database
+     */
+    public void resume(File progressFile) throws IOException, SQLException
+    {
+        ScrubProgress progress = ScrubProgress.load(progressFile);
+        if (progress == null)
+        {
+            scrub(progressFile);
+            return;
+        }
+
+        if (!url.equals(progress.getUrl()))
+        {
+            throw new IllegalArgumentException("The progress in [" + progressFile + "] was saved scrubbing [" +
+                progress.getUrl() + "], not [" + url + "]");
+        }
+        scrub(progressFile, progress);
+    }
+
+    private void scrub(File progressFile, ScrubProgress progress) throws IOException, SQLException
+    {
+        BlockingQueue<Connection> connections = new ArrayBlockingQueue<>(threads);
+        ExecutorService scrubbers = Executors.newFixedThreadPool(threads);
+        Deque<PendingChunk> pendingChunks = new ArrayDeque<>();
+        try (Connection reader = JdbcUtils.connectForBatches(url, username, password))
+        {
+            reader.setReadOnly(true);
+            reader.setAutoCommit(false); // some drivers only use a cursor for fetches within a transaction
+            boolean mySql = JdbcUtils.isMySql(reader.getMetaData());
+            String quote = reader.getMetaData().getIdentifierQuoteString();
+
+            // Check every table before changing any of them
+            List<ScrubTable> tables = planTables(reader, quote);
+
+            for (int i = 0; i < threads; i++)
+            {
+                Connection connection = JdbcUtils.connectForBatches(url, username, password);
+                connections.add(connection);
+                connection.setAutoCommit(false);
+            }
+
+            for (ScrubTable table : tables)
+            {
+                if (!progress.isFinished(table.tableName))
+                {
+                    readChunks(reader, mySql, table, progress.getLastKey(table.tableName), connections, scrubbers,
+                        pendingChunks, progress, progressFile);
+                    pendingChunks.add(new PendingChunk(table.tableName, null, CompletableFuture.completedFuture(null)));
+                }
+            }
+            while (!pendingChunks.isEmpty())
+            {
+                finishNextChunk(pendingChunks, progress, progressFile);
+            }
+            reader.commit();
+
+            progressFile.delete();
+        }
+        finally
+        {
+            // Don't leave other chunks updating after one has failed
+            scrubbers.shutdownNow();
+            scrubbers.close();
+            for (Connection connection : connections)
+            {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * @return the tables with anything to obfuscate
+     * @throws IllegalArgumentException if any of them can't be scrubbed in chunks
+     */
+    private static List<ScrubTable> planTables(Connection connection, String quote) throws SQLException
+    {
+        List<ScrubTable> tables = new ArrayList<>();
+        List<String> unkeyedTables = new ArrayList<>();
+        for (TableState table : JdbcUtils.readTables(connection))
+        {
+            TablePlan plan = table.getPlan();
+            if (plan.getSensitiveOrdinals().length == 0)
+            {
+                continue;
+            }
+
+            List<String> keyColumns = JdbcUtils.readPrimaryKey(connection, table.getTableName());
+            int[] planIndexes = JdbcUtils.planIndexes(plan, plan.getColumnCount());
+            boolean keyClassified = keyColumns.stream()
+                .map(keyColumn -> table.getColumnNames().indexOf(keyColumn))
+                .anyMatch(i -> i >= 0 && planIndexes[i] >= 0);
+            if (keyColumns.isEmpty() || keyClassified)
+            {
+                unkeyedTables.add(table.getTableName());
+                continue;
+            }
+
+            tables.add(new ScrubTable(
+                table.getTableName(),
+                keyColumns.size(),
+                selectKeys(table.getTableName(), keyColumns, quote, false),
+                selectKeys(table.getTableName(), keyColumns, quote, true),
+                updateStatement(table, keyColumns, quote),
+                plan
+            ));
+        }
+
+        if (!unkeyedTables.isEmpty())
+        {
+            throw new IllegalArgumentException("Tables " + unkeyedTables + " can't be scrubbed in place; each needs " +
+                "a primary key, none of whose columns are classified");
+        }
+        return tables;
+    }
+
+    /**
+     * Streams a table's keys in order, from just after {@code lastKey}, and submits a chunk to be updated each time
+     * {@link #chunkRows} have been read
+     */
+    private void readChunks(Connection reader,
+                            boolean mySql,
+                            ScrubTable table,
+                            List<KeyValue> lastKey,
+                            BlockingQueue<Connection> connections,
+                            ExecutorService scrubbers,
+                            Deque<PendingChunk> pendingChunks,
+                            ScrubProgress progress,
+                            File progressFile
+    ) throws IOException, SQLException
+    {
+        String select = lastKey == null ? table.selectKeys : table.selectKeysAfter;
+        try (PreparedStatement statement = JdbcUtils.prepareStreamingStatement(reader, select, mySql))
+        {
+            for (int k = 0; lastKey != null && k < lastKey.size(); k++)
+            {
+                statement.setObject(k + 1, lastKey.get(k).getValue(), lastKey.get(k).getSqlType());
+            }
+
+            try (ResultSet rs = statement.executeQuery())
+            {
+                int[] keyTypes = new int[table.keyColumnCount];
+                for (int k = 0; k < keyTypes.length; k++)
+                {
+                    keyTypes[k] = rs.getMetaData().getColumnType(k + 1);
+                }
+
+                List<Object[]> keys = new ArrayList<>(chunkRows);
+                KeyValue[] lastKeyRead = new KeyValue[table.keyColumnCount];
+                while (rs.next())
+                {
+                    Object[] key = new Object[table.keyColumnCount];
+                    for (int k = 0; k < key.length; k++)
+                    {
+                        if (KeyValue.isBinary(keyTypes[k]))
+                        {
+                            byte[] bytes = rs.getBytes(k + 1);
+                            key[k] = bytes;
+                            lastKeyRead[k] = KeyValue.of(keyTypes[k], bytes);
+                        }
+                        else
+                        {
+                            key[k] = rs.getObject(k + 1);
+                            lastKeyRead[k] = KeyValue.of(keyTypes[k], rs.getString(k + 1));
+                        }
+                    }
+                    keys.add(key);
+
+                    if (keys.size() == chunkRows)
+                    {
+                        submitChunk(table, keys, List.of(lastKeyRead), connections, scrubbers, pendingChunks);
+                        keys = new ArrayList<>(chunkRows);
+                        while (pendingChunks.size() > threads * 2)
+                        {
+                            finishNextChunk(pendingChunks, progress, progressFile);
+                        }
+                    }
+                }
+                if (!keys.isEmpty())
+                {
+                    submitChunk(table, keys, List.of(lastKeyRead), connections, scrubbers, pendingChunks);
+                }
+            }
+        }
+    }
+
+    private void submitChunk(ScrubTable table,
+                             List<Object[]> keys,
+                             List<KeyValue> lastKey,
+                             BlockingQueue<Connection> connections,
+                             ExecutorService scrubbers,
+                             Deque<PendingChunk> pendingChunks)
+    {
+        pendingChunks.add(new PendingChunk(table.tableName, lastKey, scrubbers.submit(() ->
+        {
+            Connection connection = connections.take();
+            try
+            {
+                scrubChunk(connection, table, keys);
+            }
+            finally
+            {
+                connections.add(connection);
+            }
+            return null;
+        })));
+    }
+
+    /**
+     * Waits for the oldest chunk to be committed, and saves the progress it makes
+     */
+    private static void finishNextChunk(Deque<PendingChunk> pendingChunks, ScrubProgress progress, File progressFile)
+        throws IOException, SQLException
+    {
+        PendingChunk chunk = pendingChunks.remove();
+        try
+        {
+            chunk.scrubbed.get();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while scrubbing database", ex);
+        }
+        catch (ExecutionException ex)
+        {
+            if (ex.getCause() instanceof SQLException sqlEx)
+            {
+                throw sqlEx;
+            }
+            if (ex.getCause() instanceof RuntimeException runtimeEx)
+            {
+                throw runtimeEx;
+            }
+            throw new RuntimeException("Error scrubbing table " + chunk.tableName, ex.getCause());
+        }
+
+        if (chunk.lastKey == null)
+        {
+            progress.finished(chunk.tableName);
+        }
+        else
+        {
+            progress.reached(chunk.tableName, chunk.lastKey);
+        }
+        progress.save(progressFile);
+    }
+
+    /**
+     * Generates new values for the classified columns of each row in the chunk, and commits them together
+     */
+    private static void scrubChunk(Connection connection, ScrubTable table, List<Object[]> keys) throws SQLException
+    {
+        RowReplacements replacements = new RowReplacements();
+        StringBuilder value = new StringBuilder();
+        Action[] actions = table.plan.getActions();
+        ReplacementTemplate[] templates = table.plan.getTemplates();
+
+        try (PreparedStatement update = connection.prepareStatement(table.update))
+        {
+            for (Object[] key : keys)
+            {
+                replacements.reset();
+                int parameter = 1;
+                for (int k = 0; k < actions.length; k++)
+                {
+                    if (actions[k] == Action.REPLACE)
+                    {
+                        value.setLength(0);
+                        templates[k].appendTo(value, replacements);
+                        update.setString(parameter++, value.toString());
+                    }
+                }
+                for (Object keyValue : key)
+                {
+                    update.setObject(parameter++, keyValue);
+                }
+                update.addBatch();
+            }
+            update.executeBatch();
+            connection.commit();
+        }
+        catch (SQLException ex)
+        {
+            connection.rollback();
+            throw ex;
+        }
+    }
+
+    /**
+     * @param after whether to select only the keys after a given one
+     */
+    private static String selectKeys(String tableName, List<String> keyColumns, String quote, boolean after)
+    {
+        String keyList = String.join(", ", keyColumns.stream()
+            .map(keyColumn -> JdbcUtils.requoteIdentifier(keyColumn, quote))
+            .toList());
+        StringBuilder select = new StringBuilder("SELECT ").append(keyList)
+            .append(" FROM ").append(JdbcUtils.requoteIdentifier(tableName, quote));
+        if (after)
+        {
+            String[] parameters = new String[keyColumns.size()];
+            Arrays.fill(parameters, "?");
+            select.append(" WHERE (").append(keyList).append(") > (").append(String.join(", ", parameters)).append(')');
+        }
+        return select.append(" ORDER BY ").append(keyList).toString();
+    }
+
+    /**
+     * Removed columns are set to NULL in the statement itself; replaced columns, then the key columns, are parameters
+     */
+    private static String updateStatement(TableState table, List<String> keyColumns, String quote)
+    {
+        TablePlan plan = table.getPlan();
+        StringBuilder update = new StringBuilder("UPDATE ")
+            .append(JdbcUtils.requoteIdentifier(table.getTableName(), quote))
+            .append(" SET ");
+        for (int k = 0; k < plan.getSensitiveOrdinals().length; k++)
+        {
+            update.append(k > 0 ? ", " : "")
+                .append(JdbcUtils.requoteIdentifier(table.getColumnNames().get(plan.getSensitiveOrdinals()[k]), quote))
+                .append(plan.getActions()[k] == Action.REPLACE ? " = ?" : " = NULL");
+        }
+        update.append(" WHERE ");
+        for (int i = 0; i < keyColumns.size(); i++)
+        {
+            update.append(i > 0 ? " AND " : "").append(JdbcUtils.requoteIdentifier(keyColumns.get(i), quote))
+                .append(" = ?");
+        }
+        return update.toString();
+    }
+
+    /**
+     * A table to scrub, with its statements worked out
+     */
+    @AllArgsConstructor
+    private static class ScrubTable
+    {
+        private final String tableName;
+
+        private final int keyColumnCount;
+
+        private final String selectKeys;
+
+        private final String selectKeysAfter;
+
+        private final String update;
+
+        private final TablePlan plan;
+    }
+
+    /**
+     * A chunk being updated, and the key of its last row; or, with no key, the end of a table
+     */
+    @AllArgsConstructor
+    private static class PendingChunk
+    {
+        private final String tableName;
+
+        private final List<KeyValue> lastKey;
+
+        private final Future<?> scrubbed;
+    }
+}
@@ -1,49 +1,44 @@
 package com.eric_eldard.harpocrates.service;
 
-import lombok.SneakyThrows;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Scanner;
-import java.util.concurrent.ThreadLocalRandom;
-
+import com.eric_eldard.harpocrates.model.Dataset;
 import com.eric_eldard.harpocrates.util.ResourceUtils;
 
 public class NameService
 {
     public static final NameService INSTANCE = new NameService();
 
-    private final List<String> GIVEN_NAMES;
-
-    private final List<String> SURNAMES;
-
-    @SneakyThrows
     private NameService()
     {
-        Scanner gnScanner = ResourceUtils.makeFileScanner("data/given_names.txt");
-        List<String> readInGnList = new ArrayList<>();
-        while (gnScanner.hasNextLine())
-        {
-            readInGnList.add(gnScanner.nextLine());
-        }
-        GIVEN_NAMES = List.copyOf(readInGnList);
-
-        Scanner snScanner = ResourceUtils.makeFileScanner("data/surnames.txt");
-        List<String> readInSnList = new ArrayList<>();
-        while (snScanner.hasNextLine())
-        {
-            readInSnList.add(snScanner.nextLine());
-        }
-        SURNAMES = List.copyOf(readInSnList);
+        // Each list is only loaded once a name is needed from it
     }
 
     public String makeGivenName()
     {
-        return GIVEN_NAMES.get(ThreadLocalRandom.current().nextInt(GIVEN_NAMES.size()));
+        return GivenNames.DATASET.getField(GivenNames.DATASET.randomRecord(), 0);
+    }
+
+    public void appendGivenName(StringBuilder out)
+    {
+        GivenNames.DATASET.appendField(out, GivenNames.DATASET.randomRecord(), 0);
     }
 
     public String makeSurname()
     {
-        return SURNAMES.get(ThreadLocalRandom.current().nextInt(SURNAMES.size()));
+        return Surnames.DATASET.getField(Surnames.DATASET.randomRecord(), 0);
+    }
+
+    public void appendSurname(StringBuilder out)
+    {
+        Surnames.DATASET.appendField(out, Surnames.DATASET.randomRecord(), 0);
+    }
+
+    private static class GivenNames
+    {
+        private static final Dataset DATASET = ResourceUtils.loadDataset("data/given_names.txt", 1);
+    }
+
+    private static class Surnames
+    {
+        private static final Dataset DATASET = ResourceUtils.loadDataset("data/surnames.txt", 1);
     }
 }
@@ -1,325 +1,1314 @@
 package com.eric_eldard.harpocrates.service;
 
-import jakarta.annotation.Nonnull;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import lombok.AllArgsConstructor;
+
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.net.URLDecoder;
-import java.nio.charset.Charset;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 import com.eric_eldard.harpocrates.enumeration.Action;
-import com.eric_eldard.harpocrates.enumeration.DataType;
 import com.eric_eldard.harpocrates.exception.BadMatchException;
-import com.eric_eldard.harpocrates.model.DataDefinition;
+import com.eric_eldard.harpocrates.io.ByteBuilder;
+import com.eric_eldard.harpocrates.io.ByteLine;
+import com.eric_eldard.harpocrates.io.Checkpoint;
+import com.eric_eldard.harpocrates.io.DumpIndex;
+import com.eric_eldard.harpocrates.io.DumpReader;
+import com.eric_eldard.harpocrates.io.DumpWriter;
+import com.eric_eldard.harpocrates.io.InsertJoiningChannel;
+import com.eric_eldard.harpocrates.io.MappedDumpReader;
+import com.eric_eldard.harpocrates.io.MydumperDirectory;
+import com.eric_eldard.harpocrates.io.RebatchingDumpWriter;
+import com.eric_eldard.harpocrates.io.ResumableDumpWriter;
+import com.eric_eldard.harpocrates.io.SegmentStitcher;
+import com.eric_eldard.harpocrates.io.StreamDumpReader;
+import com.eric_eldard.harpocrates.io.TabDumpWriter;
+import com.eric_eldard.harpocrates.metrics.ObfuscationMetrics;
+import com.eric_eldard.harpocrates.model.DumpSection;
+import com.eric_eldard.harpocrates.model.DumpStatement;
+import com.eric_eldard.harpocrates.model.LineBatch;
+import com.eric_eldard.harpocrates.model.ReplacementTemplate;
+import com.eric_eldard.harpocrates.model.TablePlan;
+import com.eric_eldard.harpocrates.model.TableState;
+import com.eric_eldard.harpocrates.util.ClassificationUtils;
+import com.eric_eldard.harpocrates.util.StatementScanner;
 
 public class ObfuscatorService
 {
-    private static final Pattern CREATE_TABLE_PATTERN =
-        Pattern.compile("CREATE TABLE (`.*?`) \\(");
+    public enum OutputFormat
+    {
+        /**
+         * A dump, like the one read
+         */
+        SQL,
+
+        /**
+         * A directory of schema and tab-separated data files for each table, and a script to load them with (see
+         * {@link TabDumpWriter})
+         */
+        TAB
+    }
+
+    /**
+     * Number of lines handed to a worker at a time in pipelined mode
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1_000;
+
+    /**
+     * A batch is also closed once it holds this many bytes, since extended INSERT lines can each run to megabytes
+     */
+    private static final int MAX_BATCH_BYTES = 8 * 1024 * 1024;
+
+    private static final byte[] NULL = {'N', 'U', 'L', 'L'};
+
+    private static final byte[] GZIP_MAGIC = {0x1f, (byte) 0x8b};
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Neighbouring tables are merged into sections of at least this size, so the cost of each section's segment file is
+     * spread over plenty of data
+     */
+    private static final long MIN_SECTION_BYTES = 64 * 1024 * 1024;
+
+    /**
+     * A checkpoint is saved each time this many more bytes of the dump have been obfuscated
+     */
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 1024L * 1024 * 1024;
+
+    /**
+     * Progress is logged this often
+     */
+    public static final Duration DEFAULT_REPORT_INTERVAL = Duration.ofSeconds(30);
+
+    /**
+     * Marks the end of the batch queue for the writer thread
+     */
+    private static final PendingBatch END_OF_BATCHES =
+        new PendingBatch(null, CompletableFuture.completedFuture(List.of()));
+
+    private final int threads;
+
+    private final int batchSize;
+
+    private final long checkpointInterval;
 
-    private static final Pattern DATA_CLASSIFICATION_COL_DEF_PATTERN =
-        Pattern.compile("\s*(`.+?`) .+ COMMENT 'dataClassification=(.+?)',?");
+    private final OutputFormat outputFormat;
 
-    private static final Pattern DOC_ID_PATTERN =
-        Pattern.compile("#\\{([0A]+?)}");
+    private final int maxInsertBytes;
 
-    private static final Pattern ENABLE_KEYS_PATTERN =
-        Pattern.compile(".*ALTER TABLE (`.+?`) ENABLE KEYS.*");
+    private final Duration reportInterval;
 
-    private static final Pattern INSERT_PATTERN =
-        Pattern.compile("INSERT INTO (`.+?`) \\((.+?)\\) VALUES \\((.+?)\\);");
+    private final long minSectionBytes;
 
+    /**
+     * Obfuscates single-threaded
+     */
+    public ObfuscatorService()
+    {
+        this(1, DEFAULT_BATCH_SIZE);
+    }
+
+    public ObfuscatorService(int threads, int batchSize)
+    {
+        this(threads, batchSize, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * @param threads   The number of worker threads obfuscating INSERT statements. If greater than 1, a dump is
+     *                  processed as a pipeline: the calling thread reads and tracks table state, a pool of workers
+     *                  obfuscates batches of lines, and a writer thread writes the batches back out in their original
+     *                  order.
+     *                  <br>
+     * @param batchSize          The maximum number of lines handed to a worker at a time
+     * @param checkpointInterval The number of bytes of a dump file obfuscated between checkpoints (see
+     *                           {@link #resume(File, String)}), or 0 for none
+     */
+    public ObfuscatorService(int threads, int batchSize, long checkpointInterval)
+    {
+        this(threads, batchSize, checkpointInterval, OutputFormat.SQL, 0);
+    }
+
+    /**
+     * @param outputFormat   With {@link OutputFormat#TAB}, the output location is a directory, and checkpoints aren't
+     *                       saved
+     * @param maxInsertBytes For {@link OutputFormat#SQL}, the size up to which consecutive INSERTs into a table are
+     *                       merged into one (see {@link RebatchingDumpWriter}), or 0 to leave them as they are
+     */
+    public ObfuscatorService(int threads,
+                             int batchSize,
+                             long checkpointInterval,
+                             OutputFormat outputFormat,
+                             int maxInsertBytes
+    )
+    {
+        this(threads, batchSize, checkpointInterval, outputFormat, maxInsertBytes, DEFAULT_REPORT_INTERVAL);
+    }
+
+    /**
+     * @param reportInterval The time between progress reports (see {@link ObfuscationMetrics}), or zero for none. A
+     *                       summary is logged at the end of every run regardless.
+     */
+    public ObfuscatorService(int threads,
+                             int batchSize,
+                             long checkpointInterval,
+                             OutputFormat outputFormat,
+                             int maxInsertBytes,
+                             Duration reportInterval
+    )
+    {
+        this(threads, batchSize, checkpointInterval, outputFormat, maxInsertBytes, reportInterval, MIN_SECTION_BYTES);
+    }
+
+    /**
+     * @param minSectionBytes The size below which neighbouring tables are merged into one section (see
+     *                        {@link #MIN_SECTION_BYTES}), so a small dump can be split too
+     */
+    @VisibleForTesting
+    ObfuscatorService(int threads,
+                      int batchSize,
+                      long checkpointInterval,
+                      OutputFormat outputFormat,
+                      int maxInsertBytes,
+                      Duration reportInterval,
+                      long minSectionBytes
+    )
+    {
+        Preconditions.checkArgument(threads > 0, "threads must be positive");
+        Preconditions.checkArgument(batchSize > 0, "batchSize must be positive");
+        Preconditions.checkArgument(checkpointInterval >= 0, "checkpointInterval must not be negative");
+        Preconditions.checkArgument(maxInsertBytes >= 0, "maxInsertBytes must not be negative");
+        Preconditions.checkArgument(!reportInterval.isNegative(), "reportInterval must not be negative");
+        this.threads = threads;
+        this.batchSize = batchSize;
+        this.checkpointInterval = checkpointInterval;
+        this.outputFormat = outputFormat;
+        this.maxInsertBytes = maxInsertBytes;
+        this.reportInterval = reportInterval;
+        this.minSectionBytes = minSectionBytes;
+    }
 
+    /**
+     * Reads the dump as memory-mapped UTF-8 and writes the obfuscated dump without ever decoding it as a whole. Lines
+     * that don't need obfuscating, and the values within INSERT statements that don't, are copied across as raw bytes.
+     * <br><br>
+     * A gzipped dump is recognized by its magic number and decompressed as it's read. If the output file name ends in
+     * {@code .gz}, the obfuscated dump is gzipped as it's written.
+     * <br><br>
+     * With more than one thread, an uncompressed dump is indexed by table (see {@link DumpIndex}), and its tables are
+     * obfuscated in parallel sections when that will spread the work better than batching lines would.
+     * <br><br>
+     * Checkpoints are saved beside the output as it's written, so if the run fails, it can be picked up where it left
+     * off with {@link #resume(File, String)}.
+     */
     public void obfuscate(File dumpFile, String outputFileLocation) throws IOException
     {
-        File outputFile = new File(outputFileLocation);
-        if (outputFile.exists())
+        File outputFile = newOutputFile(outputFileLocation);
+        obfuscate(dumpFile, outputFile, Checkpoint.start(dumpFile.length(), dumpFile.lastModified()));
+    }
+
+    /**
+     * Picks up a failed {@link #obfuscate(File, String)} run from its last checkpoint: the output is truncated to
+     * where the checkpoint was saved, and obfuscation continues from the corresponding point in the dump, in the same
+     * table state. If there's no checkpoint, the dump is obfuscated from the start.
+     * @throws IllegalArgumentException if the checkpoint was made from a different dump, or the dump has changed since
+     */
+    public void resume(File dumpFile, String outputFileLocation) throws IOException
+    {
+        Preconditions.checkArgument(outputFormat == OutputFormat.SQL, "Only SQL output can be resumed");
+        File outputFile = new File(outputFileLocation).getAbsoluteFile();
+        Checkpoint checkpoint = Checkpoint.load(Checkpoint.fileFor(outputFile));
+        if (checkpoint == null)
         {
-            outputFile.delete();
+            obfuscate(dumpFile, outputFileLocation);
+            return;
         }
-        outputFile.createNewFile();
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(dumpFile));
-             BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile, true)))
+        if (checkpoint.getDumpSize() != dumpFile.length() ||
+            checkpoint.getDumpLastModified() != dumpFile.lastModified())
         {
-            String currentTable = null;
-            Map<String, DataDefinition> currentDataDefs = null;
+            throw new IllegalArgumentException("The checkpoint for [" + outputFile + "] wasn't made from [" + dumpFile +
+                "] as it is now; it's a different dump, or it's changed since");
+        }
+        obfuscate(dumpFile, outputFile, checkpoint);
+    }
 
-            String readLine = reader.readLine();
-            while (readLine != null)
-            {
-                String writeLine = readLine;
+    private void obfuscate(File dumpFile, File outputFile, Checkpoint from) throws IOException
+    {
+        Checkpointer checkpointer = checkpointInterval > 0 ?
+            new Checkpointer(Checkpoint.fileFor(outputFile), from, checkpointInterval) :
+            Checkpointer.DISABLED;
 
-                // Nasty if-else chain avoids unnecessary matching, since each line can only match one of these patterns
-                // (ordered by likelihood of a MySQL dump line being a match)
-                //<editor-fold desc="Match INSERT statements">
-                Matcher insertMatcher = INSERT_PATTERN.matcher(writeLine);
-                if (insertMatcher.find())
+        boolean gzipped;
+        try (InputStream in = new FileInputStream(dumpFile))
+        {
+            gzipped = startsWithGzipMagic(in);
+        }
+
+        if (gzipped)
+        {
+            // Progress through a gzipped dump is measured in compressed bytes, as its size is
+            try (ObfuscationMetrics metrics = ObfuscationMetrics.start(dumpFile.length(), 0, reportInterval);
+                 InputStream in = new GZIPInputStream(
+                     metrics.counting(new FileInputStream(dumpFile)), STREAM_BUFFER_SIZE))
+            {
+                // There's no seeking in a gzip stream; decompressing up to the checkpoint is the best we can do
+                in.skipNBytes(from.getInputOffset());
+                obfuscate(new StreamDumpReader(Channels.newChannel(in)), outputFile, from, checkpointer, metrics);
+            }
+        }
+        else
+        {
+            try (ObfuscationMetrics metrics =
+                     ObfuscationMetrics.start(dumpFile.length(), from.getInputOffset(), reportInterval);
+                 FileChannel in = FileChannel.open(dumpFile.toPath(), StandardOpenOption.READ))
+            {
+                List<DumpSection> sections =
+                    threads > 1 ? DumpIndex.forDump(dumpFile, in).sections(minSectionBytes) : List.of();
+                if (isWorthSplitting(sections, in.size()))
                 {
-                    writeLine = obfuscateInsertStmt(insertMatcher, currentTable, currentDataDefs);
+                    obfuscateSections(in, sections, outputFile, from, checkpointer, metrics);
                 }
-                //</editor-fold>
                 else
                 {
-                    //<editor-fold desc="Match column def statements with data classifications">
-                    Matcher dataClassificationMatcher = DATA_CLASSIFICATION_COL_DEF_PATTERN.matcher(writeLine);
-                    if (dataClassificationMatcher.find())
+                    DumpReader reader = new MappedDumpReader(in, from.getInputOffset(), in.size());
+                    obfuscate(reader, outputFile, from, checkpointer, metrics);
+                }
+            }
+        }
+
+        checkpointer.finished();
+    }
+
+    /**
+     * Reads the dump from a stream as it's written, such as the stdout of a mysqldump process, so the dump never needs
+     * to be stored unobfuscated. The stream isn't closed. As with {@link #obfuscate(File, String)}, it may be gzipped,
+     * and the output is gzipped if its name ends in {@code .gz}.
+     * <br><br>
+     * A stream can't be resumed, so if reading or obfuscating it fails, the incomplete output is deleted rather than
+     * left to be mistaken for a good dump. Only the files this run wrote are deleted; anything else already in a
+     * {@link OutputFormat#TAB} output directory is left alone.
+     */
+    public void obfuscate(InputStream dump, String outputFileLocation) throws IOException
+    {
+        boolean outputExisted = new File(outputFileLocation).exists();
+        File outputFile = newOutputFile(outputFileLocation);
+
+        // A stream has no size or modification time, but it can't be resumed anyway
+        try (ObfuscationMetrics metrics = ObfuscationMetrics.start(0, 0, reportInterval))
+        {
+            DumpReader reader = new StreamDumpReader(Channels.newChannel(decompressed(dump)));
+            DumpWriter out = openOutput(outputFile, 0);
+            try
+            {
+                try (out)
+                {
+                    obfuscate(reader, out, Checkpoint.start(0, 0), Checkpointer.DISABLED, metrics);
+                }
+            }
+            catch (IOException | RuntimeException ex)
+            {
+                deleteOutput(outputFile, out, outputExisted, ex);
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Deletes the output of a failed run: the output file, or, for {@link OutputFormat#TAB}, the files the writer
+     * wrote, and the directory too if this run made it
+     * @param failure what went wrong, to which any failure to delete the output is added
+     */
+    private static void deleteOutput(File outputFile, DumpWriter out, boolean outputExisted, Exception failure)
+    {
+        try
+        {
+            if (out instanceof TabDumpWriter tabOut)
+            {
+                tabOut.deleteFiles();
+                if (!outputExisted)
+                {
+                    Files.deleteIfExists(outputFile.toPath());
+                }
+            }
+            else
+            {
+                Files.deleteIfExists(outputFile.toPath());
+            }
+        }
+        catch (IOException ex)
+        {
+            failure.addSuppressed(ex);
+        }
+    }
+
+    /**
+     * Obfuscates a dump made by mydumper (see {@link MydumperDirectory}) into a directory of the same files, which
+     * myloader can restore just as it would the original. Each table's classifications are read from its schema file,
+     * then its data files are obfuscated concurrently, each on a single thread, with those of every other table. Data
+     * files are written with one INSERT per line, and gzipped if they were. Other files are copied as they are.
+     * <br><br>
+     * There are no checkpoints; a failed run is simply run again.
+     */
+    public void obfuscateDirectory(File dumpDir, String outputDirLocation) throws IOException
+    {
+        Preconditions.checkArgument(outputFormat == OutputFormat.SQL, "A mydumper dump can only be written as SQL");
+        File outputDir = new File(outputDirLocation).getAbsoluteFile();
+        Preconditions.checkArgument(!outputDir.equals(dumpDir.getAbsoluteFile()),
+            "The output directory must not be the dump's own directory");
+
+        MydumperDirectory dump = MydumperDirectory.scan(dumpDir);
+        Files.createDirectories(outputDir.toPath());
+        for (File file : dump.getOtherFiles())
+        {
+            Path copy = new File(outputDir, file.getName()).toPath();
+            Files.copy(file.toPath(), copy, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        List<DataFile> dataFiles = new ArrayList<>();
+        for (MydumperDirectory.Table table : dump.getTables())
+        {
+            TableState state = readSchemaFile(table.getSchemaFile());
+            table.getDataFiles().forEach(file -> dataFiles.add(new DataFile(file, state)));
+        }
+        // Biggest first, so no big file is left to run on its own at the end
+        dataFiles.sort(Comparator.comparingLong((DataFile dataFile) -> dataFile.file.length()).reversed());
+
+        long dataSize = dataFiles.stream().mapToLong(dataFile -> dataFile.file.length()).sum();
+        try (ObfuscationMetrics metrics = ObfuscationMetrics.start(dataSize, 0, reportInterval);
+             ExecutorService workers = Executors.newFixedThreadPool(threads))
+        {
+            List<Future<Void>> results = new ArrayList<>();
+            for (DataFile dataFile : dataFiles)
+            {
+                results.add(workers.submit(() ->
+                {
+                    obfuscateDataFile(dataFile, new File(outputDir, dataFile.file.getName()), metrics);
+                    return null;
+                }));
+            }
+
+            boolean completed = false;
+            try
+            {
+                for (Future<Void> result : results)
+                {
+                    result.get();
+                }
+                completed = true;
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while obfuscating dump", ex);
+            }
+            catch (ExecutionException ex)
+            {
+                throw unwrap(ex);
+            }
+            finally
+            {
+                if (!completed)
+                {
+                    workers.shutdownNow();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the state of the table defined in a mydumper schema file, as it would be after its definition in a dump
+     */
+    private TableState readSchemaFile(File schemaFile) throws IOException
+    {
+        TableState state = TableState.NONE;
+        try (BufferedReader in = new BufferedReader(
+            new InputStreamReader(decompressed(new FileInputStream(schemaFile)), StandardCharsets.UTF_8)))
+        {
+            for (String line = in.readLine(); line != null; line = in.readLine())
+            {
+                state = nextTableState(StatementScanner.scan(line), state);
+            }
+        }
+        if (state.getPlan() == null)
+        {
+            throw new BadMatchException("No complete table definition found in schema file [" + schemaFile + ']');
+        }
+        return state;
+    }
+
+    /**
+     * Obfuscates a mydumper data file single-threaded, starting inside its table, as if it had been cut out of the
+     * middle of that table's data section
+     */
+    private void obfuscateDataFile(DataFile dataFile, File outputFile, ObfuscationMetrics metrics) throws IOException
+    {
+        int chunkSize = Math.clamp(dataFile.file.length(), STREAM_BUFFER_SIZE, MAX_BATCH_BYTES);
+        try (InputStream in = decompressed(metrics.counting(new FileInputStream(dataFile.file)));
+             DumpWriter out = openOutput(outputFile, 0, 1))
+        {
+            DumpReader reader = new StreamDumpReader(new InsertJoiningChannel(Channels.newChannel(in)), chunkSize);
+            readBatches(reader, 0, dataFile.tableState, metrics,
+                batch -> write(out, batch, obfuscateBatch(batch, metrics), metrics));
+        }
+    }
+
+    private void obfuscate(DumpReader reader,
+                           File outputFile,
+                           Checkpoint from,
+                           Checkpointer checkpointer,
+                           ObfuscationMetrics metrics
+    ) throws IOException
+    {
+        try (DumpWriter out = openOutput(outputFile, from.getOutputOffset()))
+        {
+            obfuscate(reader, out, from, checkpointer, metrics);
+        }
+    }
+
+    private void obfuscate(DumpReader reader,
+                           DumpWriter out,
+                           Checkpoint from,
+                           Checkpointer checkpointer,
+                           ObfuscationMetrics metrics
+    ) throws IOException
+    {
+        if (threads == 1)
+        {
+            readBatches(reader, from.getInputOffset(), from.getTableState(), metrics, batch ->
+            {
+                write(out, batch, obfuscateBatch(batch, metrics), metrics);
+                checkpointer.reached(batch.inputEnd(), batch.getTableState(), out);
+            });
+        }
+        else
+        {
+            obfuscatePipelined(reader, from, out, checkpointer, metrics);
+        }
+    }
+
+    /**
+     * Each section starts outside of any table, so it's read and obfuscated single-threaded, just as a whole dump
+     * would be, into its own segment. Sections are processed concurrently and their segments stitched together in
+     * order. Checkpoints are only made between sections.
+     */
+    private void obfuscateSections(FileChannel in,
+                                   List<DumpSection> sections,
+                                   File outputFile,
+                                   Checkpoint from,
+                                   Checkpointer checkpointer,
+                                   ObfuscationMetrics metrics
+    ) throws IOException
+    {
+        // Skip what's already done. If the checkpoint is partway through a section, the rest of that section starts in
+        // the checkpoint's table state.
+        long resumeAt = from.getInputOffset();
+        List<DumpSection> remaining = sections.stream()
+            .filter(section -> section.getEnd() > resumeAt)
+            .map(section -> section.getStart() < resumeAt ? DumpSection.of(resumeAt, section.getEnd()) : section)
+            .toList();
+
+        try (DumpWriter out = openOutput(outputFile, from.getOutputOffset()))
+        {
+            SegmentStitcher.stitch(
+                remaining,
+                (section, segment) -> readBatches(
+                    new MappedDumpReader(in, section.getStart(), section.getEnd()),
+                    section.getStart(),
+                    section.getStart() == resumeAt ? from.getTableState() : TableState.NONE,
+                    metrics,
+                    batch -> write(segment, batch, obfuscateBatch(batch, metrics), metrics)
+                ),
+                threads,
+                outputFile.getParentFile().toPath(),
+                out,
+                section -> checkpointer.reached(section.getEnd(), TableState.NONE, out)
+            );
+        }
+    }
+
+    /**
+     * Splitting by table only pays when there are several sections and no one of them dominates the dump. Otherwise,
+     * the largest section would be obfuscated on one thread while the rest sat idle, when the batch pipeline would
+     * have spread it across all of them.
+     */
+    private static boolean isWorthSplitting(List<DumpSection> sections, long dumpSize)
+    {
+        return sections.size() > 1 &&
+            sections.stream().mapToLong(DumpSection::length).max().orElse(0) <= dumpSize / 2;
+    }
+
+    private DumpWriter openOutput(File outputFile, long resumeAt) throws IOException
+    {
+        return openOutput(outputFile, resumeAt, threads);
+    }
+
+    /**
+     * @param compressionThreads the number of threads to gzip the output on, if it's gzipped
+     */
+    private DumpWriter openOutput(File outputFile, long resumeAt, int compressionThreads) throws IOException
+    {
+        if (outputFormat == OutputFormat.TAB)
+        {
+            return new TabDumpWriter(outputFile);
+        }
+        ResumableDumpWriter out = DumpWriter.open(outputFile, resumeAt, compressionThreads);
+        return maxInsertBytes > 0 ? new RebatchingDumpWriter(out, maxInsertBytes) : out;
+    }
+
+    /**
+     * Replaces any existing output file, along with its checkpoint, with an empty one. For {@link OutputFormat#TAB},
+     * makes sure the output directory exists instead.
+     */
+    private File newOutputFile(String outputFileLocation) throws IOException
+    {
+        File outputFile = new File(outputFileLocation).getAbsoluteFile();
+        if (outputFormat == OutputFormat.TAB)
+        {
+            Files.createDirectories(outputFile.toPath());
+            return outputFile;
+        }
+        if (outputFile.exists())
+        {
+            outputFile.delete();
+        }
+        Checkpoint.fileFor(outputFile).delete();
+        outputFile.createNewFile();
+        return outputFile;
+    }
+
+    /**
+     * Reads the dump, tracking which table we're in and what its data definitions are, and groups lines into
+     * {@link LineBatch}es. A batch is closed whenever it's full or the table state changes after an INSERT, so every
+     * INSERT in a batch can be obfuscated with the batch's state alone. (Other lines don't need the state at all.)
+     * <br><br>
+     * When a table's definition ends without any columns to obfuscate, there's nothing in its data section to change,
+     * so the whole section is passed through as a single batch without reading it line by line.
+     * @param inputOffset  the offset in the dump at which the reader starts
+     * @param initialState the table state at that offset
+     */
+    private void readBatches(DumpReader reader,
+                             long inputOffset,
+                             TableState initialState,
+                             ObfuscationMetrics metrics,
+                             BatchConsumer untimedConsumer
+    ) throws IOException
+    {
+        ReadTimer consumer = new ReadTimer(untimedConsumer, metrics);
+        TableState currentState = initialState;
+        boolean passingThrough = isPassthrough(initialState);
+
+        long chunkOffset = inputOffset;
+        ByteBuffer chunk = reader.nextChunk();
+        while (chunk != null)
+        {
+            int batchStart = 0;
+            int batchLines = 0;
+            boolean batchHasInserts = false;
+            int lineStart = 0;
+            while (lineStart < chunk.limit())
+            {
+                if (passingThrough)
+                {
+                    int passthroughEnd = findEndOfPassthrough(chunk, lineStart);
+                    if (passthroughEnd > lineStart)
                     {
-                        if (currentTable == null)
-                        {
-                            throw new BadMatchException(
-                                "Column def found without table: [" + dataClassificationMatcher.group() + ']');
-                        }
-                        String colName = dataClassificationMatcher.group(1);
-                        String encodedDataDef = dataClassificationMatcher.group(2);
-                        currentDataDefs.put(colName, decodeDataDef(encodedDataDef));
+                        consumer.accept(batchOf(chunk, chunkOffset, lineStart, passthroughEnd, currentState));
                     }
-                    //</editor-fold>
-                    else
+                    passingThrough = passthroughEnd == chunk.limit();
+                    batchStart = lineStart = passthroughEnd;
+                    continue;
+                }
+
+                int lineEnd = lineEnd(chunk, lineStart);
+                int nextLineStart = Math.min(lineEnd + 1, chunk.limit());
+                ByteLine line = new ByteLine(chunk, lineStart, lineEnd - lineStart);
+
+                DumpStatement stmt = StatementScanner.isInsert(line) ? null : StatementScanner.scan(line);
+                TableState nextState = stmt == null ? currentState : nextTableState(stmt, currentState);
+
+                if (nextState != currentState && batchHasInserts)
+                {
+                    consumer.accept(batchOf(chunk, chunkOffset, batchStart, lineStart, currentState));
+                    batchStart = lineStart;
+                    batchLines = 0;
+                    batchHasInserts = false;
+                }
+                currentState = nextState;
+
+                batchLines++;
+                batchHasInserts |= stmt == null;
+                if (batchLines == batchSize || nextLineStart - batchStart >= MAX_BATCH_BYTES)
+                {
+                    consumer.accept(batchOf(chunk, chunkOffset, batchStart, nextLineStart, currentState));
+                    batchStart = nextLineStart;
+                    batchLines = 0;
+                    batchHasInserts = false;
+                }
+
+                lineStart = nextLineStart;
+
+                if (stmt != null &&
+                    stmt.getType() == DumpStatement.Type.CREATE_TABLE_END &&
+                    isPassthrough(currentState))
+                {
+                    if (lineStart > batchStart)
                     {
-                        //<editor-fold desc="Match CREATE TABLE statements">
-                        Matcher createTableMatcher = CREATE_TABLE_PATTERN.matcher(writeLine);
-                        if (createTableMatcher.find())
-                        {
-                            if (currentTable != null)
-                            {
-                                throw new BadMatchException("Table def found [" + createTableMatcher.group() +
-                                    "], but we're currently examining a different table: [" + currentTable + ']');
-                            }
-                            currentTable = createTableMatcher.group(1);
-                            currentDataDefs = new HashMap<>();
-                        }
-                        //</editor-fold>
-                        else
-                        {
-                            //<editor-fold desc="Match ENABLE KEYS statements (signals the end of inserts to a table)">
-                            Matcher enableKeyMatcher = ENABLE_KEYS_PATTERN.matcher(writeLine);
-                            if (enableKeyMatcher.find())
-                            {
-                                if (!enableKeyMatcher.group(1).equals(currentTable))
-                                {
-                                    throw new BadMatchException(
-                                        "End of table encountered [" + enableKeyMatcher.group() +
-                                            "], but it doesn't match the current table [" + currentTable + ']');
-                                }
-                                currentTable = null;
-                                currentDataDefs = null;
-                            }
-                            //</editor-fold>
-                        }
+                        consumer.accept(batchOf(chunk, chunkOffset, batchStart, lineStart, currentState));
+                        batchStart = lineStart;
+                        batchLines = 0;
+                        batchHasInserts = false;
                     }
+                    passingThrough = true;
                 }
+            }
 
-                writer.write(writeLine);
-                writer.newLine();
-
-                readLine = reader.readLine();
+            if (batchStart < chunk.limit())
+            {
+                consumer.accept(batchOf(chunk, chunkOffset, batchStart, chunk.limit(), currentState));
             }
+
+            chunkOffset += chunk.limit();
+            chunk = reader.nextChunk();
         }
+        consumer.finish();
     }
 
-    private DataDefinition decodeDataDef(String encodedJson)
+    /**
+     * @return a batch of the chunk's lines in {@code [start, end)}
+     */
+    private static LineBatch batchOf(ByteBuffer chunk, long chunkOffset, int start, int end, TableState state)
     {
-        return DataDefinition.from(
-            URLDecoder.decode(
-                encodedJson,
-                Charset.defaultCharset()
-            ));
+        return LineBatch.of(chunk.slice(start, end - start), chunkOffset + start, state);
+    }
+
+    /**
+     * @return {@code true} if we're in a table with no columns to obfuscate, whose lines can be written out untouched
+     */
+    private static boolean isPassthrough(TableState state)
+    {
+        return state.getPlan() != null && state.getPlan().isPassthrough();
     }
 
-    private String obfuscateInsertStmt(Matcher insertMatcher, String tableName, Map<String, DataDefinition> dataDefs)
+    /**
+     * Skips through a table's data section, checking only the first byte of each line, to find where the section ends:
+     * the next ENABLE KEYS statement. We'll also stop at a CREATE TABLE, in case this table's ENABLE KEYS is missing;
+     * we'd rather fail on that in the usual way than pass through another table's data.
+     * @param from the start of a line
+     * @return the start of the line ending the passthrough, or the chunk's limit if it doesn't end in this chunk
+     */
+    private static int findEndOfPassthrough(ByteBuffer chunk, int from)
     {
-        if (!insertMatcher.group(1).equals(tableName))
+        int lineStart = from;
+        while (lineStart < chunk.limit())
         {
-            throw new BadMatchException(
-                "Table name [" + tableName + "] not matched in insert statement [" + insertMatcher.group() + ']');
+            byte firstByte = chunk.get(lineStart);
+            int lineEnd = lineEnd(chunk, lineStart);
+            if (firstByte == '/' || firstByte == 'A' || firstByte == 'C')
+            {
+                DumpStatement.Type type =
+                    StatementScanner.scan(new ByteLine(chunk, lineStart, lineEnd - lineStart)).getType();
+                if (type == DumpStatement.Type.ENABLE_KEYS || type == DumpStatement.Type.CREATE_TABLE)
+                {
+                    return lineStart;
+                }
+            }
+            lineStart = Math.min(lineEnd + 1, chunk.limit());
         }
+        return chunk.limit();
+    }
 
-        // Get one set of randomized replacements for this row, giving consistency if the same placeholder is used twice
-        Map<DataType, String> replacements = makeReplacementsMap();
-
-        List<String> colNames = Arrays.asList(insertMatcher.group(2).split(", "));
-        List<String> data = splitValues(insertMatcher.group(3), colNames.size());
+    /**
+     * Batches are obfuscated on a pool of workers. Their futures are queued in read order, and a single writer thread
+     * waits on each in turn, so the output keeps the same sequence as the input. The queue is bounded, so the reader
+     * can't get too far ahead of the writer.
+     */
+    private void obfuscatePipelined(DumpReader reader,
+                                    Checkpoint from,
+                                    DumpWriter out,
+                                    Checkpointer checkpointer,
+                                    ObfuscationMetrics metrics
+    ) throws IOException
+    {
+        BlockingQueue<PendingBatch> queue = new ArrayBlockingQueue<>(threads * 4);
 
-        for (String datum : data)
+        try (ExecutorService workers = Executors.newFixedThreadPool(threads);
+             ExecutorService writerExecutor = Executors.newSingleThreadExecutor())
         {
-            int index = data.indexOf(datum);
-            String colName = colNames.get(index);
-            if (dataDefs.containsKey(colName))
+            Future<Void> writerDone = writerExecutor.submit(() ->
             {
-                DataDefinition dataDef = dataDefs.get(colName);
-                if (dataDef.getType() == DataType.NOT_SENSITIVE || dataDef.getAction() == Action.IGNORE)
+                PendingBatch next = queue.take();
+                while (next != END_OF_BATCHES)
                 {
-                    continue;
+                    write(out, next.batch, next.segments.get(), metrics);
+                    checkpointer.reached(next.batch.inputEnd(), next.batch.getTableState(), out);
+                    next = queue.take();
                 }
-                if (dataDef.getAction() == Action.REMOVE)
+                return null;
+            });
+            boolean completed = false;
+            try
+            {
+                readBatches(reader, from.getInputOffset(), from.getTableState(), metrics, batch -> enqueue(
+                    queue, new PendingBatch(batch, workers.submit(() -> obfuscateBatch(batch, metrics))), writerDone));
+                enqueue(queue, END_OF_BATCHES, writerDone);
+                writerDone.get();
+                completed = true;
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while obfuscating dump", ex);
+            }
+            catch (ExecutionException ex)
+            {
+                throw unwrap(ex);
+            }
+            finally
+            {
+                if (!completed)
                 {
-                    data.set(index, null);
+                    // Don't leave the writer waiting on batches that won't come, or workers on batches no one writes
+                    writerDone.cancel(true);
+                    workers.shutdownNow();
                 }
-                else if (dataDef.getAction() == Action.REPLACE)
+            }
+        }
+    }
+
+    /**
+     * Blocks until there's room for this batch in the queue, unless the writer has already died, in which case its
+     * failure is rethrown here
+     */
+    private void enqueue(BlockingQueue<PendingBatch> queue,
+                         PendingBatch batch,
+                         Future<Void> writerDone
+    ) throws IOException
+    {
+        try
+        {
+            while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS))
+            {
+                if (writerDone.isDone())
                 {
-                    data.set(index, obfuscateDatum(dataDef, replacements));
+                    writerDone.get();
                 }
             }
         }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while obfuscating dump", ex);
+        }
+        catch (ExecutionException ex)
+        {
+            throw unwrap(ex);
+        }
+    }
 
-        String obfuscatedStmt = insertMatcher.group().replaceAll(
-            "VALUES \\(.+\\)",
-            String.format("VALUES (%s)", String.join(",", data))
-        );
+    /**
+     * Rethrows unchecked failures from the workers or writer as-is (ex: {@link BadMatchException}), so pipelined mode
+     * fails the same way as single-threaded mode
+     */
+    private IOException unwrap(ExecutionException ex)
+    {
+        Throwable cause = ex.getCause();
+        if (cause instanceof ExecutionException nested)
+        {
+            cause = nested.getCause();
+        }
+        if (cause instanceof RuntimeException runtimeEx)
+        {
+            throw runtimeEx;
+        }
+        if (cause instanceof IOException ioEx)
+        {
+            return ioEx;
+        }
+        return new IOException("Error obfuscating dump", cause);
+    }
 
-        return obfuscatedStmt;
+    private static void write(DumpWriter out, LineBatch batch, List<ByteBuffer> segments, ObfuscationMetrics metrics)
+        throws IOException
+    {
+        ObfuscationMetrics.Write write =
+            metrics.startWrite(batch, segments.stream().mapToLong(ByteBuffer::remaining).sum());
+        out.write(segments);
+        write.end();
     }
 
-    private String obfuscateDatum(DataDefinition dataDef, Map<DataType, String> replacements)
+    /**
+     * @return the batch's bytes, as a sequence of buffers to write. Runs of lines which are unchanged are slices of the
+     * batch itself; lines which are changed are rewritten into a new buffer.
+     */
+    private List<ByteBuffer> obfuscateBatch(LineBatch batch, ObfuscationMetrics metrics)
     {
-        String pattern = dataDef.getPattern() == null ?
-            dataDef.getType().getPattern() :
-            dataDef.getPattern();
+        ObfuscationMetrics.Batch tally = metrics.startBatch(batch);
+        List<ByteBuffer> segments = obfuscateBatch(batch, tally);
+        tally.end();
+        return segments;
+    }
 
-        if (pattern == null)
+    private List<ByteBuffer> obfuscateBatch(LineBatch batch, ObfuscationMetrics.Batch tally)
+    {
+        TableState state = batch.getTableState();
+        ByteBuffer bytes = batch.getBytes();
+        if (isPassthrough(state))
         {
-            // DataType#OTHER selected, but no replacement pattern provided; treat instead as Action#REMOVE
-            return null;
+            return List.of(bytes);
         }
 
-        for (DataType dataType : replacements.keySet())
+        List<ByteBuffer> segments = new ArrayList<>();
+
+        TablePlan plan = state.getPlan();
+        RowReplacements replacements = new RowReplacements();
+        ByteBuilder changedLines = null;
+        int changedRunStart = 0; // start of the current run of changed lines in changedLines
+        int unchangedRunStart = 0; // start of the current run of unchanged lines in the batch
+
+        int lineStart = 0;
+        while (lineStart < bytes.limit())
         {
-            pattern = pattern.replace(dataType.getPattern(), replacements.get(dataType));
+            int lineEnd = lineEnd(bytes, lineStart);
+            int nextLineStart = Math.min(lineEnd + 1, bytes.limit());
+            ByteLine line = new ByteLine(bytes, lineStart, lineEnd - lineStart);
+
+            DumpStatement stmt = StatementScanner.isInsert(line) ? StatementScanner.scan(line) : DumpStatement.OTHER;
+            if (stmt.getType() == DumpStatement.Type.INSERT)
+            {
+                if (!stmt.nameEquals(state.getTableName()))
+                {
+                    throw new BadMatchException(
+                        "Table name [" + state.getTableName() + "] not matched in insert statement [" + line + ']');
+                }
+                plan = planFor(stmt, state, plan);
+            }
+
+            if (stmt.getType() == DumpStatement.Type.INSERT && !plan.isPassthrough())
+            {
+                if (changedLines == null)
+                {
+                    changedLines = new ByteBuilder(bytes.limit() + bytes.limit() / 8);
+                }
+                int mark = changedLines.length();
+
+                tally.addRows(obfuscateInsertStmt(line, stmt, plan, replacements, changedLines), plan);
+                changedLines.append(bytes, lineEnd, nextLineStart); // line terminator
+                if (unchangedRunStart < lineStart)
+                {
+                    // Close out the changed run before this line, then the unchanged run since it
+                    if (changedRunStart < mark)
+                    {
+                        segments.add(changedLines.toByteBuffer(changedRunStart, mark));
+                    }
+                    segments.add(bytes.slice(unchangedRunStart, lineStart - unchangedRunStart));
+                    changedRunStart = mark;
+                }
+                unchangedRunStart = nextLineStart;
+            }
+
+            lineStart = nextLineStart;
         }
 
-        pattern = obfuscateDocIds(pattern);
+        if (changedLines != null && changedRunStart < changedLines.length())
+        {
+            segments.add(changedLines.toByteBuffer(changedRunStart, changedLines.length()));
+        }
+        if (unchangedRunStart < bytes.limit())
+        {
+            segments.add(bytes.slice(unchangedRunStart, bytes.limit() - unchangedRunStart));
+        }
+        return segments;
+    }
 
-        return quoteStmt(escapeQuotes(pattern));
+    /**
+     * @param lastPlan the plan used for the previous INSERT in the batch, if any
+     * @return the plan for this INSERT's column list. That's almost always the table's own plan, but an INSERT may not
+     * list every column in the table definition (ex: generated columns are left out), in which case a plan is compiled
+     * for its columns instead.
+     * @throws BadMatchException if the INSERT names a column which isn't in the table definition
+     */
+    private static TablePlan planFor(DumpStatement insertStmt, TableState state, TablePlan lastPlan)
+    {
+        if (!insertStmt.hasColumns())
+        {
+            if (state.getPlan() == null)
+            {
+                throw new BadMatchException(
+                    "Insert statement without a column list found before the end of table definition for " +
+                        state.getTableName() + ": [" + insertStmt.getLine() + ']');
+            }
+            return state.getPlan();
+        }
+        if (lastPlan != null && insertStmt.columnsEqual(lastPlan.getColumnList()))
+        {
+            return lastPlan;
+        }
+        if (state.getPlan() != null && insertStmt.columnsEqual(state.getPlan().getColumnList()))
+        {
+            return state.getPlan();
+        }
+
+        String columnList = insertStmt.getColumns();
+        List<String> columnNames = StatementScanner.splitColumns(columnList);
+        if (columnNames == null)
+        {
+            throw new BadMatchException("Unreadable column list in insert statement [" + insertStmt.getLine() + ']');
+        }
+        for (String columnName : columnNames)
+        {
+            // Obfuscating by the wrong columns, or none at all, would let real values through
+            if (!state.getColumnNames().contains(columnName))
+            {
+                throw new BadMatchException("Column " + columnName + " is not in the table definition for " +
+                    state.getTableName() + ": [" + insertStmt.getLine() + ']');
+            }
+        }
+        return TablePlan.compile(columnList, columnNames, state.getDataDefs());
+    }
+
+    /**
+     * @return the stream, buffered, and decompressed if it's gzipped
+     */
+    private static InputStream decompressed(InputStream dump) throws IOException
+    {
+        InputStream in = new BufferedInputStream(dump, STREAM_BUFFER_SIZE);
+        in.mark(GZIP_MAGIC.length);
+        boolean gzipped = startsWithGzipMagic(in);
+        in.reset();
+        return gzipped ? new GZIPInputStream(in, STREAM_BUFFER_SIZE) : in;
     }
 
-    private String obfuscateDocIds(String pattern)
+    private static boolean startsWithGzipMagic(InputStream in) throws IOException
+    {
+        return Arrays.equals(in.readNBytes(GZIP_MAGIC.length), GZIP_MAGIC);
+    }
+
+    /**
+     * @return the index of the line terminator of the line starting at {@code lineStart}, or the buffer's limit if it's
+     * the last line and has no terminator
+     */
+    private static int lineEnd(ByteBuffer bytes, int lineStart)
     {
-        Matcher matcher = DOC_ID_PATTERN.matcher(pattern);
-        while (matcher.find())
+        for (int i = lineStart; i < bytes.limit(); i++)
         {
-            String mask = matcher.group(1);
-            pattern = pattern.replaceFirst(
-                "#\\{" + mask + "}",
-                DocIdService.INSTANCE.makeDocId(mask)
-            );
+            if (bytes.get(i) == '\n')
+            {
+                return i;
+            }
         }
-        return pattern;
+        return bytes.limit();
     }
 
     /**
-     * Extracts a list of values from a comma separate string of values by examining the string character by character.
-     * This can't be achieved accurately with String.split(), since individual values may contain commas, and is nigh
-     * impossible with a regex, since values may or may not be surrounded with single quotes (that is, some are strings
-     * and some aren't) and those that are may contain single quotes (escaped as '' or \').
+     * @return the table state following this (non-INSERT) statement; the same instance if the statement doesn't change
+     * it
      */
-    private List<String> splitValues(String values, int numValues)
+    private TableState nextTableState(DumpStatement stmt, TableState currentState)
     {
-        List<String> valList = new ArrayList<>(numValues);
-        StringBuilder currentWord = new StringBuilder();
-        boolean insideString = false;
+        CharSequence line = stmt.getLine();
+        switch (stmt.getType())
+        {
+            case COLUMN_DEF ->
+            {
+                return currentState.isDefining() ? currentState.withColumn(stmt.getName(), null) : currentState;
+            }
+            case CLASSIFIED_COLUMN_DEF ->
+            {
+                if (currentState.getTableName() == null)
+                {
+                    throw new BadMatchException("Column def found without table: [" + line + ']');
+                }
+                return currentState.isDefining() ?
+                    currentState.withColumn(stmt.getName(), ClassificationUtils.decode(stmt.getEncodedDataDef())) :
+                    currentState;
+            }
+            case CREATE_TABLE ->
+            {
+                if (currentState.getTableName() != null)
+                {
+                    throw new BadMatchException("Table def found [" + line +
+                        "], but we're currently examining a different table: [" + currentState.getTableName() + ']');
+                }
+                return TableState.of(stmt.getName());
+            }
+            case CREATE_TABLE_END ->
+            {
+                return currentState.isDefining() ? currentState.withPlan() : currentState;
+            }
+            case ENABLE_KEYS ->
+            {
+                if (!stmt.nameEquals(currentState.getTableName()))
+                {
+                    throw new BadMatchException("End of table encountered [" + line +
+                        "], but it doesn't match the current table [" + currentState.getTableName() + ']');
+                }
+                return TableState.NONE;
+            }
+            default ->
+            {
+                return currentState;
+            }
+        }
+    }
 
-        for (int i = 0; i < values.length(); i++)
+    /**
+     * Obfuscates an INSERT statement tuple by tuple, so extended (multi-row) INSERTs are supported. Only the values
+     * the plan marks as sensitive are replaced; everything between them is copied to {@code out} from the original
+     * line as raw bytes.
+     * @return the number of rows in the statement
+     */
+    private int obfuscateInsertStmt(ByteLine line,
+                                    DumpStatement insertStmt,
+                                    TablePlan plan,
+                                    RowReplacements replacements,
+                                    ByteBuilder out
+    )
+    {
+        // Values past the last sensitive one are scanned over, but their positions aren't needed
+        int[] valueBounds = new int[(plan.getLastSensitiveOrdinal() + 1) * 2];
+
+        int copiedTo = 0;
+        int rows = 0;
+        int i = insertStmt.getValuesStart();
+        while (true)
         {
-            char currentChar = values.charAt(i);
-            boolean lastChar = i == values.length() - 1;
+            i = splitValues(line, i, plan.getColumnCount(), valueBounds);
+            copiedTo = obfuscateRow(line, plan, valueBounds, copiedTo, replacements, out);
+            rows++;
 
-            if (currentChar == ',' && !insideString)
+            char next = i < line.length() ? line.charAt(i) : 0;
+            if (next == ',' && i + 1 < line.length() && line.charAt(i + 1) == '(')
+            {
+                i++;
+            }
+            else if (next == ';')
             {
-                valList.add(currentWord.toString());
-                currentWord.setLength(0);
+                out.append(line, copiedTo, line.length());
+                return rows;
             }
             else
             {
-                // Track whether we're currently inside a string value, so we can know to ignore commas. If we encounter
-                // escaped single quote chars inside the string, we'll write those off together (escape char + quote
-                // char) and then skip to the next char.
-                // Ignore all of this if this is the last char; we'll just write it off w/o caring about tracking
-                // whether we're in a string.
-                if (!lastChar)
+                throw new BadMatchException(
+                    "Expected another tuple or the end of insert statement at position " + i + ": [" + line + ']');
+            }
+        }
+    }
+
+    /**
+     * Splices replacements for one tuple's sensitive values into {@code out}, along with the original bytes leading up
+     * to each
+     * @param copiedTo the index in {@code line} up to which it's already been copied to {@code out}
+     * @return the new {@code copiedTo}: the end of the tuple's last sensitive value
+     */
+    private int obfuscateRow(ByteLine line,
+                             TablePlan plan,
+                             int[] valueBounds,
+                             int copiedTo,
+                             RowReplacements replacements,
+                             ByteBuilder out
+    )
+    {
+        // Values are generated as the row's templates ask for them, and reused if asked for again in the same row
+        replacements.reset();
+
+        int[] ordinals = plan.getSensitiveOrdinals();
+        ReplacementTemplate[] templates = plan.getTemplates();
+        for (int k = 0; k < ordinals.length; k++)
+        {
+            out.append(line, copiedTo, valueBounds[ordinals[k] * 2]);
+
+            if (plan.getActions()[k] == Action.REPLACE)
+            {
+                templates[k].appendTo(out, replacements);
+            }
+            else
+            {
+                out.append(NULL);
+            }
+
+            copiedTo = valueBounds[ordinals[k] * 2 + 1];
+        }
+        return copiedTo;
+    }
+
+    /**
+     * Finds the values in one parenthesized tuple of comma separated values by examining the statement character by
+     * character. This can't be achieved accurately with String.split(), since individual values may contain commas,
+     * and is nigh impossible with a regex, since values may or may not be surrounded with single quotes (that is, some
+     * are strings and some aren't) and those that are may contain single quotes (escaped as '' or \') or parens.
+     * <br><br>
+     * Values are located, not extracted; each is left in place, escapes included.
+     * @param stmt        the full statement
+     * @param start       the index of the tuple's opening paren
+     * @param numValues   the number of values expected in the tuple
+     * @param valueBounds filled with the start and end (exclusive) index of each value, in pairs, for as many values as
+     *                    it has room for
+     * @return the index just past the tuple's closing paren
+     */
+    private int splitValues(CharSequence stmt, int start, int numValues, int[] valueBounds)
+    {
+        int valueCount = 0;
+        int valueStart = start + 1;
+        boolean insideString = false;
+
+        int i = valueStart;
+        for (; i < stmt.length(); i++)
+        {
+            char currentChar = stmt.charAt(i);
+
+            if (insideString)
+            {
+                // Track whether we're currently inside a string value, so we can know to ignore commas and parens. If
+                // we encounter an escaped char inside the string, we'll skip over it together with its escape char.
+                // This allows escaped single quotes to be tackled in pairs, which avoids issues when a string ends in
+                // an escaped quote (ex: 'We''re obfuscatin''' or 'We\'re obfuscatin\'')
+                if (currentChar == '\\')
                 {
-                    // Detect next character is an escaped single quote (\' or '') inside of a string
-                    char nextChar = values.charAt(i + 1);
-                    if (insideString && (currentChar == '\'' || currentChar == '\\') && nextChar == '\'')
+                    i++;
+                }
+                else if (currentChar == '\'')
+                {
+                    if (i + 1 < stmt.length() && stmt.charAt(i + 1) == '\'')
                     {
-                        // Write escape char and single quote to our current string, then skip the next char (the single
-                        // quote we peaked ahead at), since we already wrote it. This allows escaped single quotes to be
-                        // tackled in pairs, which avoids issues when a string ends in an escaped quote
-                        // (ex: 'We're obfuscatin''')
-                        if (currentChar == '\\')
-                        {
-                            currentWord.append('\\'); // if escape char is \, it also needs to be escaped in our string
-                        }
-                        currentWord.append(currentChar).append('\'');
                         i++;
-                        continue;
                     }
-                    else if (currentChar == '\'')
+                    else
                     {
-                        // This is single quote that wasn't escaped, so it's either the beginning or end of a string
-                        insideString = !insideString;
+                        // This is a single quote that wasn't escaped, so it's the end of the string
+                        insideString = false;
                     }
                 }
+            }
+            else if (currentChar == '\'')
+            {
+                insideString = true;
+            }
+            else if (currentChar == ',' || currentChar == ')')
+            {
+                // Keep counting past the values we need, so we can report how many we actually found
+                if (valueCount * 2 < valueBounds.length)
+                {
+                    valueBounds[valueCount * 2] = valueStart;
+                    valueBounds[valueCount * 2 + 1] = i;
+                }
+                valueCount++;
+                valueStart = i + 1;
 
-                currentWord.append(currentChar);
-
-                if (lastChar)
+                if (currentChar == ')')
                 {
-                    // This char won't be a comma (our previous word-boundary delimiter) if this SQL is well-formed,
-                    // but we still want to capture this final value
-                    valList.add(currentWord.toString());
+                    // The end of the tuple
+                    break;
                 }
             }
         }
 
+        if (i >= stmt.length())
+        {
+            throw new BadMatchException(
+                "Reached the end of the statement before the end of the tuple starting at position " + start +
+                    "\n\tsource: [" + stmt.subSequence(start, stmt.length()) + ']'
+            );
+        }
+
         // Sanity check that the number of values we found matches the number of columns for this table
-        if (valList.size() != numValues)
+        if (valueCount != numValues)
         {
             throw new BadMatchException(String.format(
-                "Expected to find %d values in statement, but only found %d\n\tsource: [%s]\n\tvalues: [%s]",
-                numValues, valList.size(), values, String.join("|", valList)
+                "Expected to find %d values in statement, but found %d\n\tsource: [%s]",
+                numValues, valueCount, stmt.subSequence(start, i + 1)
             ));
         }
 
-        return valList;
+        return i + 1;
     }
-    
-    private Map<DataType, String> makeReplacementsMap()
+
+    /**
+     * A batch queued for the writer, along with its obfuscated bytes to come
+     */
+    @AllArgsConstructor
+    private static class PendingBatch
     {
-        HashMap<DataType, String> replacements = new HashMap<>();
+        private final LineBatch batch;
+
+        private final Future<List<ByteBuffer>> segments;
+    }
 
-        replacements.put(DataType.CITY,           AddressService.INSTANCE.makeCity());
-        replacements.put(DataType.DATE ,          DateService.INSTANCE.makeRandomDateString());
-        replacements.put(DataType.FULL_ADDRESS,   AddressService.INSTANCE.makeAddress());
-        replacements.put(DataType.GIVEN_NAME,     NameService.INSTANCE.makeGivenName());
-        replacements.put(DataType.ORGANIZATION,   OrganizationService.INSTANCE.makeOrganization());
-        replacements.put(DataType.PHONE_NUMBER,   PhoneNumberService.INSTANCE.makePhoneNumber());
-        replacements.put(DataType.SSN,            SsnService.INSTANCE.makeSsn());
-        replacements.put(DataType.STATE,          AddressService.INSTANCE.makeState());
-        replacements.put(DataType.STREET_ADDRESS, AddressService.INSTANCE.makeStreetAddress());
-        replacements.put(DataType.SURNAME,        NameService.INSTANCE.makeSurname());
-        replacements.put(DataType.ZIP_CODE,       AddressService.INSTANCE.makeZip());
+    /**
+     * A mydumper data file, along with the state of the table its rows belong to
+     */
+    @AllArgsConstructor
+    private static class DataFile
+    {
+        private final File file;
 
-        return replacements;
+        private final TableState tableState;
     }
 
-    private String escapeQuotes(@Nonnull String stmt)
+    @FunctionalInterface
+    private interface BatchConsumer
     {
-        return stmt.replace("'", "''");
+        void accept(LineBatch batch) throws IOException;
     }
 
-    private String quoteStmt(@Nonnull String stmt)
+    /**
+     * Hands batches on to a consumer, counting the time between them, when the dump is being read, as reading time
+     */
+    private static class ReadTimer implements BatchConsumer
     {
-        return "'" + stmt + "'";
+        private final BatchConsumer consumer;
+
+        private final ObfuscationMetrics metrics;
+
+        private long readingSince = System.nanoTime();
+
+        private ReadTimer(BatchConsumer consumer, ObfuscationMetrics metrics)
+        {
+            this.consumer = consumer;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void accept(LineBatch batch) throws IOException
+        {
+            metrics.addReadTime(System.nanoTime() - readingSince);
+            consumer.accept(batch);
+            readingSince = System.nanoTime();
+        }
+
+        /**
+         * Counts the time since the last batch, once the dump's been read
+         */
+        private void finish()
+        {
+            metrics.addReadTime(System.nanoTime() - readingSince);
+        }
     }
-}
\ No newline at end of file
+}
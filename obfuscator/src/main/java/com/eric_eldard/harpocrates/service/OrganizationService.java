@@ -1,34 +1,26 @@
 package com.eric_eldard.harpocrates.service;
 
-import lombok.SneakyThrows;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Scanner;
-import java.util.concurrent.ThreadLocalRandom;
-
+import com.eric_eldard.harpocrates.model.Dataset;
 import com.eric_eldard.harpocrates.util.ResourceUtils;
 
 public class OrganizationService
 {
     public static final OrganizationService INSTANCE = new OrganizationService();
 
-    private final List<String> ORGANIZATIONS;
+    private final Dataset ORGANIZATIONS;
 
-    @SneakyThrows
     private OrganizationService()
     {
-        Scanner scanner = ResourceUtils.makeFileScanner("data/organizations.txt");
-        List<String> readInOrgList = new ArrayList<>();
-        while (scanner.hasNextLine())
-        {
-            readInOrgList.add(scanner.nextLine());
-        }
-        ORGANIZATIONS = List.copyOf(readInOrgList);
+        ORGANIZATIONS = ResourceUtils.loadDataset("data/organizations.txt", 1);
     }
 
     public String makeOrganization()
     {
-        return ORGANIZATIONS.get(ThreadLocalRandom.current().nextInt(ORGANIZATIONS.size()));
+        return ORGANIZATIONS.getField(ORGANIZATIONS.randomRecord(), 0);
+    }
+
+    public void appendOrganization(StringBuilder out)
+    {
+        ORGANIZATIONS.appendField(out, ORGANIZATIONS.randomRecord(), 0);
     }
-}
\ No newline at end of file
+}
@@ -1,41 +1,33 @@
 package com.eric_eldard.harpocrates.service;
 
-import lombok.SneakyThrows;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Scanner;
 import java.util.concurrent.ThreadLocalRandom;
 
+import com.eric_eldard.harpocrates.model.Dataset;
+import com.eric_eldard.harpocrates.util.DigitUtils;
 import com.eric_eldard.harpocrates.util.ResourceUtils;
 
 public class PhoneNumberService
 {
     public static final PhoneNumberService INSTANCE = new PhoneNumberService();
 
-    private final List<String> AREA_CODES;
+    private final Dataset AREA_CODES;
 
-    @SneakyThrows
     private PhoneNumberService()
     {
-        Scanner scanner = ResourceUtils.makeFileScanner("data/us_area_codes.txt");
-
-        List<String> readInList = new ArrayList<>();
-        while (scanner.hasNextLine())
-        {
-            readInList.add(scanner.nextLine());
-        }
-
-        AREA_CODES = List.copyOf(readInList);
+        AREA_CODES = ResourceUtils.loadDataset("data/us_area_codes.txt", 1);
     }
 
     public String makePhoneNumber()
     {
-        String areaCode = AREA_CODES.get(ThreadLocalRandom.current().nextInt(AREA_CODES.size()));
-        return areaCode + "555" +
-            ThreadLocalRandom.current().nextInt(10) +
-            ThreadLocalRandom.current().nextInt(10) +
-            ThreadLocalRandom.current().nextInt(10) +
-            ThreadLocalRandom.current().nextInt(10);
+        StringBuilder phoneNumber = new StringBuilder(10);
+        appendPhoneNumber(phoneNumber);
+        return phoneNumber.toString();
+    }
+
+    public void appendPhoneNumber(StringBuilder out)
+    {
+        AREA_CODES.appendField(out, AREA_CODES.randomRecord(), 0);
+        out.append("555");
+        DigitUtils.appendPadded(out, ThreadLocalRandom.current().nextInt(10_000), 4);
     }
 }
\ No newline at end of file
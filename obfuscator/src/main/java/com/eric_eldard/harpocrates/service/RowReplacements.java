@@ -0,0 +1,89 @@
+package com.eric_eldard.harpocrates.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.eric_eldard.harpocrates.enumeration.DataType;
+
+/**
+ * The randomized replacement values for a single row. Each value is only generated the first time the row asks for
+ * it, and the same value is returned if it's asked for again, giving consistency if the same placeholder is used twice
+ * in a row (ex: {@code {SURNAME}} in both a name and an email address).
+ * <br><br>
+ * Values are generated into buffers which are reused from row to row, so a returned value is only good until the next
+ * {@link #reset()}. Not thread safe; each worker uses its own.
+ */
+public class RowReplacements
+{
+    private static final Map<DataType, ValueGenerator> GENERATORS = new EnumMap<>(DataType.class);
+
+    // Lambdas rather than method refs, so each service (and its data file) is only loaded once a value is needed from it
+    static
+    {
+        GENERATORS.put(DataType.CITY,           out -> AddressService.INSTANCE.appendCity(out));
+        GENERATORS.put(DataType.DATE,           out -> DateService.INSTANCE.appendRandomDate(out));
+        GENERATORS.put(DataType.FULL_ADDRESS,   out -> AddressService.INSTANCE.appendAddress(out));
+        GENERATORS.put(DataType.GIVEN_NAME,     out -> NameService.INSTANCE.appendGivenName(out));
+        GENERATORS.put(DataType.ORGANIZATION,   out -> OrganizationService.INSTANCE.appendOrganization(out));
+        GENERATORS.put(DataType.PHONE_NUMBER,   out -> PhoneNumberService.INSTANCE.appendPhoneNumber(out));
+        GENERATORS.put(DataType.SSN,            out -> SsnService.INSTANCE.appendSsn(out));
+        GENERATORS.put(DataType.STATE,          out -> AddressService.INSTANCE.appendState(out));
+        GENERATORS.put(DataType.STREET_ADDRESS, out -> AddressService.INSTANCE.appendStreetAddress(out));
+        GENERATORS.put(DataType.SURNAME,        out -> NameService.INSTANCE.appendSurname(out));
+        GENERATORS.put(DataType.ZIP_CODE,       out -> AddressService.INSTANCE.appendZip(out));
+    }
+
+    /**
+     * The types with a generated value, which may be referenced in a pattern by their own pattern (ex: {@code {CITY}})
+     */
+    public static final Set<DataType> GENERATED_TYPES = Collections.unmodifiableSet(GENERATORS.keySet());
+
+    private final StringBuilder[] values = new StringBuilder[DataType.values().length];
+
+    private final boolean[] generated = new boolean[DataType.values().length];
+
+    private final StringBuilder docId = new StringBuilder();
+
+    /**
+     * Forgets this row's values, ready for the next row
+     */
+    public void reset()
+    {
+        Arrays.fill(generated, false);
+    }
+
+    public CharSequence get(DataType dataType)
+    {
+        int i = dataType.ordinal();
+        if (!generated[i])
+        {
+            ValueGenerator generator = GENERATORS.get(dataType);
+            if (generator == null)
+            {
+                throw new IllegalArgumentException("No value is generated for DataType " + dataType);
+            }
+            if (values[i] == null)
+            {
+                values[i] = new StringBuilder();
+            }
+            values[i].setLength(0);
+            generator.appendTo(values[i]);
+            generated[i] = true;
+        }
+        return values[i];
+    }
+
+    /**
+     * Document IDs aren't shared within a row; each mask gets a new one
+     * @see DocIdService#appendDocId(CharSequence, StringBuilder)
+     */
+    public CharSequence makeDocId(String mask)
+    {
+        docId.setLength(0);
+        DocIdService.INSTANCE.appendDocId(mask, docId);
+        return docId;
+    }
+}
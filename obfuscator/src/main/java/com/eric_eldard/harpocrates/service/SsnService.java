@@ -2,13 +2,25 @@ package com.eric_eldard.harpocrates.service;
 
 import java.util.concurrent.ThreadLocalRandom;
 
+import com.eric_eldard.harpocrates.util.DigitUtils;
+
 public class SsnService
 {
     public static final SsnService INSTANCE = new SsnService();
 
     public String makeSsn()
     {
-        return String.format("%s-%02d-0000", randArea(), randGroup()); // no valid SSNs end in 0000
+        StringBuilder ssn = new StringBuilder(11);
+        appendSsn(ssn);
+        return ssn.toString();
+    }
+
+    public void appendSsn(StringBuilder out)
+    {
+        DigitUtils.appendPadded(out, randArea(), 3);
+        out.append('-');
+        DigitUtils.appendPadded(out, randGroup(), 2);
+        out.append("-0000"); // no valid SSNs end in 0000
     }
 
     /**
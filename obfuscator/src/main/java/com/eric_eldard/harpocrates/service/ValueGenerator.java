@@ -0,0 +1,13 @@
+package com.eric_eldard.harpocrates.service;
+
+/**
+ * Generates a random replacement value straight into the caller's buffer, so generating a value needn't allocate
+ */
+@FunctionalInterface
+public interface ValueGenerator
+{
+    /**
+     * Appends a newly generated value to {@code out}
+     */
+    void appendTo(StringBuilder out);
+}
@@ -0,0 +1,53 @@
+package com.eric_eldard.harpocrates.util;
+
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+
+import com.eric_eldard.harpocrates.model.DataDefinition;
+
+/**
+ * Reads the data classifications DataClassifierImpl writes into column comments, which are comma-separated
+ * {@code key=value} pairs, one of which is {@code dataClassification=<url-encoded json>}
+ */
+public final class ClassificationUtils
+{
+    private static final String DATA_CLASSIFICATION_KEY = "dataClassification=";
+
+    /**
+     * @param comment a column comment, as read from the database (that is, without quotes or escapes)
+     * @return the comment's data definition, or {@code null} if the comment has none
+     */
+    public static DataDefinition fromComment(String comment)
+    {
+        if (comment == null)
+        {
+            return null;
+        }
+
+        int start = comment.startsWith(DATA_CLASSIFICATION_KEY) ? 0 : comment.indexOf(',' + DATA_CLASSIFICATION_KEY);
+        if (start < 0)
+        {
+            return null;
+        }
+        start = comment.indexOf('=', start) + 1;
+
+        // Encoded values never contain commas
+        int end = comment.indexOf(',', start);
+        String encodedJson = end < 0 ? comment.substring(start) : comment.substring(start, end);
+        return encodedJson.isEmpty() ? null : decode(encodedJson);
+    }
+
+    public static DataDefinition decode(String encodedJson)
+    {
+        return DataDefinition.from(
+            URLDecoder.decode(
+                encodedJson,
+                Charset.defaultCharset()
+            ));
+    }
+
+    private ClassificationUtils()
+    {
+        // util ctor
+    }
+}
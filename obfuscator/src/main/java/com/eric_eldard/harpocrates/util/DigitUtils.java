@@ -0,0 +1,48 @@
+package com.eric_eldard.harpocrates.util;
+
+/**
+ * Formats small non-negative ints without going through {@link String#format} or {@link Integer#toString}
+ */
+public final class DigitUtils
+{
+    /**
+     * "00", "01", ... "99", back to back, so any two-digit number is a pair of lookups
+     */
+    private static final char[] DIGIT_PAIRS = new char[200];
+
+    static
+    {
+        for (int i = 0; i < 100; i++)
+        {
+            DIGIT_PAIRS[i * 2] = (char) ('0' + i / 10);
+            DIGIT_PAIRS[i * 2 + 1] = (char) ('0' + i % 10);
+        }
+    }
+
+    /**
+     * Appends {@code value} zero-padded to exactly {@code width} digits
+     * @param value non-negative and no wider than {@code width}
+     */
+    public static void appendPadded(StringBuilder out, int value, int width)
+    {
+        int start = out.length();
+        out.setLength(start + width);
+        int i = start + width;
+        while (i - start >= 2)
+        {
+            int pair = value % 100;
+            value /= 100;
+            out.setCharAt(--i, DIGIT_PAIRS[pair * 2 + 1]);
+            out.setCharAt(--i, DIGIT_PAIRS[pair * 2]);
+        }
+        if (i > start)
+        {
+            out.setCharAt(--i, (char) ('0' + value % 10));
+        }
+    }
+
+    private DigitUtils()
+    {
+        // util ctor
+    }
+}
@@ -0,0 +1,223 @@
+package com.eric_eldard.harpocrates.util;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.eric_eldard.harpocrates.model.TablePlan;
+import com.eric_eldard.harpocrates.model.TableState;
+
+/**
+ * Reads table definitions and rows from a live database, for the modes which obfuscate straight from one rather than
+ * from a dump
+ */
+public final class JdbcUtils
+{
+    /**
+     * Rows fetched per round trip from databases other than MySQL, whose driver streams rows one at a time instead
+     */
+    public static final int DEFAULT_FETCH_SIZE = 1_000;
+
+    /**
+     * @return every base table in the connection's database, with its backtick-quoted column names and data
+     * definitions (read from column comments), and its plan compiled
+     */
+    public static List<TableState> readTables(Connection connection) throws SQLException
+    {
+        DatabaseMetaData metaData = connection.getMetaData();
+        String catalog = connection.getCatalog();
+        String schema = connection.getSchema();
+
+        List<String> tableNames = new ArrayList<>();
+        try (ResultSet tableRs = metaData.getTables(catalog, schema, "%", new String[] {"TABLE"}))
+        {
+            while (tableRs.next())
+            {
+                tableNames.add(tableRs.getString("TABLE_NAME"));
+            }
+        }
+
+        List<TableState> tables = new ArrayList<>(tableNames.size());
+        for (String tableName : tableNames)
+        {
+            TableState table = TableState.of(quoteIdentifier(tableName));
+
+            String tableNamePattern = escapeSearchString(tableName, metaData.getSearchStringEscape());
+            try (ResultSet columnRs = metaData.getColumns(catalog, schema, tableNamePattern, "%"))
+            {
+                while (columnRs.next())
+                {
+                    // The pattern's escaped, but some drivers ignore escapes; make sure this is really our table
+                    // Generated columns are left out, as mysqldump does, since they can't be inserted
+                    if (tableName.equals(columnRs.getString("TABLE_NAME")) &&
+                        !"YES".equals(columnRs.getString("IS_GENERATEDCOLUMN")))
+                    {
+                        table = table.withColumn(
+                            quoteIdentifier(columnRs.getString("COLUMN_NAME")),
+                            ClassificationUtils.fromComment(columnRs.getString("REMARKS"))
+                        );
+                    }
+                }
+            }
+
+            tables.add(table.withPlan());
+        }
+        return tables;
+    }
+
+    /**
+     * @param quotedTableName a backtick-quoted table name
+     * @return the backtick-quoted names of the table's primary key columns, in key order; empty if it has none
+     */
+    public static List<String> readPrimaryKey(Connection connection, String quotedTableName) throws SQLException
+    {
+        SortedMap<Short, String> keyColumns = new TreeMap<>();
+        try (ResultSet keyRs = connection.getMetaData().getPrimaryKeys(
+            connection.getCatalog(), connection.getSchema(), unquoteIdentifier(quotedTableName)))
+        {
+            while (keyRs.next())
+            {
+                keyColumns.put(keyRs.getShort("KEY_SEQ"), quoteIdentifier(keyRs.getString("COLUMN_NAME")));
+            }
+        }
+        return new ArrayList<>(keyColumns.values());
+    }
+
+    /**
+     * Connects for sending batches of statements
+     * @param username may be {@code null}
+     * @param password may be {@code null}
+     */
+    public static Connection connectForBatches(String url, String username, String password) throws SQLException
+    {
+        Properties props = new Properties();
+        if (username != null)
+        {
+            props.setProperty("user", username);
+        }
+        if (password != null)
+        {
+            props.setProperty("password", password);
+        }
+        if (url.startsWith("jdbc:mysql:"))
+        {
+            // Connector/J sends a batch of statements one by one, unless it's told to rewrite them into fewer
+            props.setProperty("rewriteBatchedStatements", "true");
+        }
+        return DriverManager.getConnection(url, props);
+    }
+
+    public static boolean isMySql(DatabaseMetaData metaData) throws SQLException
+    {
+        String product = metaData.getDatabaseProductName();
+        return product.contains("MySQL") || product.contains("MariaDB");
+    }
+
+    /**
+     * @return for each of the table's columns, the index of its action and template in {@code plan}, or -1 if it's not
+     * being obfuscated
+     */
+    public static int[] planIndexes(TablePlan plan, int columnCount)
+    {
+        int[] planIndexes = new int[columnCount];
+        Arrays.fill(planIndexes, -1);
+        for (int k = 0; k < plan.getSensitiveOrdinals().length; k++)
+        {
+            planIndexes[plan.getSensitiveOrdinals()[k]] = k;
+        }
+        return planIndexes;
+    }
+
+    /**
+     * @return a query for all the table's rows, in which the columns being obfuscated are selected as NULL, so their
+     * real values never leave the database
+     */
+    public static String selectUnobfuscated(TableState table, int[] planIndexes, String quote)
+    {
+        List<String> columnNames = table.getColumnNames();
+        StringBuilder select = new StringBuilder("SELECT ");
+        for (int i = 0; i < columnNames.size(); i++)
+        {
+            select.append(i > 0 ? ", " : "")
+                .append(planIndexes[i] < 0 ? requoteIdentifier(columnNames.get(i), quote) : "NULL");
+        }
+        return select.append(" FROM ").append(requoteIdentifier(table.getTableName(), quote)).toString();
+    }
+
+    /**
+     * @return a statement whose result sets are streamed, rather than read into memory whole
+     */
+    public static Statement createStreamingStatement(Connection connection, boolean mySql) throws SQLException
+    {
+        Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+        // Connector/J only streams a result set given this fetch size
+        statement.setFetchSize(mySql ? Integer.MIN_VALUE : DEFAULT_FETCH_SIZE);
+        return statement;
+    }
+
+    /**
+     * @return a prepared statement whose result sets are streamed, rather than read into memory whole
+     */
+    public static PreparedStatement prepareStreamingStatement(Connection connection, String sql, boolean mySql)
+        throws SQLException
+    {
+        PreparedStatement statement =
+            connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(mySql ? Integer.MIN_VALUE : DEFAULT_FETCH_SIZE);
+        return statement;
+    }
+
+    /**
+     * Names are kept in MySQL's quotes, as they'd appear in a dump, but queries must use the database's own
+     * @param quotedName a backtick-quoted name
+     * @param quote      the database's identifier quote string
+     */
+    public static String requoteIdentifier(String quotedName, String quote)
+    {
+        if ("`".equals(quote))
+        {
+            return quotedName;
+        }
+        return quote + unquoteIdentifier(quotedName).replace(quote, quote + quote) + quote;
+    }
+
+    private static String unquoteIdentifier(String quotedName)
+    {
+        return quotedName.substring(1, quotedName.length() - 1).replace("``", "`");
+    }
+
+    private static String quoteIdentifier(String name)
+    {
+        return '`' + name.replace("`", "``") + '`';
+    }
+
+    /**
+     * Escapes the wildcards in a name for use as a {@link DatabaseMetaData} search pattern
+     */
+    private static String escapeSearchString(String name, String escape)
+    {
+        if (escape == null || escape.isEmpty())
+        {
+            return name;
+        }
+        return name.replace(escape, escape + escape)
+            .replace("%", escape + "%")
+            .replace("_", escape + "_");
+    }
+
+    private JdbcUtils()
+    {
+        // util ctor
+    }
+}
@@ -1,21 +1,34 @@
 package com.eric_eldard.harpocrates.util;
 
-import lombok.SneakyThrows;
-
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 
 import org.springframework.core.io.ClassPathResource;
 
+import com.eric_eldard.harpocrates.model.Dataset;
+
 public final class ResourceUtils
 {
-    @SneakyThrows
-    public static Scanner makeFileScanner(String classpathLocation)
+    /**
+     * Reads a comma-separated data file into a compact {@link Dataset}
+     * @see Dataset#parse(String, int)
+     */
+    public static Dataset loadDataset(String classpathLocation, int fieldCount)
     {
-        return new Scanner(new ClassPathResource(classpathLocation).getInputStream());
+        try (InputStream in = new ClassPathResource(classpathLocation).getInputStream())
+        {
+            return Dataset.parse(new String(in.readAllBytes(), StandardCharsets.UTF_8), fieldCount);
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException("Cannot read data file [" + classpathLocation + ']', ex);
+        }
     }
 
     private ResourceUtils()
     {
         // util ctor
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,319 @@
+package com.eric_eldard.harpocrates.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.eric_eldard.harpocrates.model.DumpStatement;
+
+/**
+ * Classifies MySQL dump lines for the obfuscator in a single pass. A line's first char decides which kind of statement
+ * it could be, and only that kind is scanned for, from left to right, without backtracking. Anything that isn't quite
+ * the expected shape is {@link DumpStatement#OTHER}, just as if a regex hadn't matched it.
+ */
+public final class StatementScanner
+{
+    private static final String INSERT_PREFIX = "INSERT INTO ";
+
+    private static final String CREATE_TABLE_PREFIX = "CREATE TABLE ";
+
+    private static final String ALTER_TABLE_PREFIX = "ALTER TABLE ";
+
+    private static final String VERSIONED_COMMENT_PREFIX = "/*!";
+
+    private static final String ENABLE_KEYS = " ENABLE KEYS";
+
+    private static final String VALUES = " VALUES";
+
+    private static final String COMMENT = " COMMENT '";
+
+    private static final String DATA_CLASSIFICATION_KEY = "dataClassification=";
+
+    public static DumpStatement scan(CharSequence line)
+    {
+        if (line.isEmpty())
+        {
+            return DumpStatement.OTHER;
+        }
+
+        // Cases ordered by likelihood of a MySQL dump line being a match
+        return switch (line.charAt(0))
+        {
+            case 'I' -> scanInsert(line);
+            case ' ', '\t', '`' -> scanColumnDef(line);
+            case 'C' -> scanCreateTable(line);
+            case ')' -> DumpStatement.createTableEnd(line);
+            case '/', 'A' -> scanEnableKeys(line);
+            default -> DumpStatement.OTHER;
+        };
+    }
+
+    /**
+     * A cheap check of only the first few chars of a line. Lines which pass may still turn out to be
+     * {@link DumpStatement#OTHER} once {@link #scan(CharSequence) scanned}.
+     */
+    public static boolean isInsert(CharSequence line)
+    {
+        return startsWith(line, 0, INSERT_PREFIX);
+    }
+
+    private static DumpStatement scanInsert(CharSequence line)
+    {
+        if (!isInsert(line))
+        {
+            return DumpStatement.OTHER;
+        }
+
+        int nameStart = INSERT_PREFIX.length();
+        int nameEnd = skipIdentifier(line, nameStart);
+        if (nameEnd < 0)
+        {
+            return DumpStatement.OTHER;
+        }
+        int valuesStart = findValues(line, nameEnd);
+        if (valuesStart >= 0)
+        {
+            // mysqldump --complete-insert=FALSE
+            return DumpStatement.insert(line, nameStart, nameEnd, -1, -1, valuesStart);
+        }
+        if (!startsWith(line, nameEnd, " ("))
+        {
+            return DumpStatement.OTHER;
+        }
+
+        // The column list ends at the first ") VALUES (" that isn't inside a quoted column name
+        int columnsStart = nameEnd + 2;
+        int i = columnsStart;
+        while (i < line.length())
+        {
+            char ch = line.charAt(i);
+            if (ch == '`')
+            {
+                i = skipIdentifier(line, i);
+                if (i < 0)
+                {
+                    return DumpStatement.OTHER;
+                }
+            }
+            else if (ch == ')' && i > columnsStart && (valuesStart = findValues(line, i + 1)) >= 0)
+            {
+                return DumpStatement.insert(line, nameStart, nameEnd, columnsStart, i, valuesStart);
+            }
+            else
+            {
+                i++;
+            }
+        }
+        return DumpStatement.OTHER;
+    }
+
+    /**
+     * Splits an INSERT's column list (see {@link DumpStatement#getColumns()}) into its backtick-quoted names. Commas
+     * may or may not be followed by a space (mysqldump writes one, mydumper doesn't), and may appear within a name.
+     * @return the names, without surrounding whitespace, or {@code null} if the list isn't only comma-separated,
+     * backtick-quoted identifiers
+     */
+    public static List<String> splitColumns(CharSequence columns)
+    {
+        List<String> names = new ArrayList<>();
+        int i = skipWhitespace(columns, 0);
+        while (true)
+        {
+            int nameEnd = skipIdentifier(columns, i);
+            if (nameEnd < 0)
+            {
+                return null;
+            }
+            names.add(columns.subSequence(i, nameEnd).toString());
+
+            i = skipWhitespace(columns, nameEnd);
+            if (i == columns.length())
+            {
+                return names;
+            }
+            if (columns.charAt(i) != ',')
+            {
+                return null;
+            }
+            i = skipWhitespace(columns, i + 1);
+        }
+    }
+
+    /**
+     * Matches {@code VALUES (} at {@code start}. mydumper leaves out the space before the paren, so that's optional.
+     * @return the index of the paren, or -1 if there's no match
+     */
+    private static int findValues(CharSequence line, int start)
+    {
+        if (!startsWith(line, start, VALUES))
+        {
+            return -1;
+        }
+        int paren = start + VALUES.length();
+        if (paren < line.length() && line.charAt(paren) == ' ')
+        {
+            paren++;
+        }
+        return paren < line.length() && line.charAt(paren) == '(' ? paren : -1;
+    }
+
+    private static DumpStatement scanColumnDef(CharSequence line)
+    {
+        int nameStart = skipWhitespace(line, 0);
+        int nameEnd = skipIdentifier(line, nameStart);
+        if (nameEnd < 0 || !startsWith(line, nameEnd, " "))
+        {
+            return DumpStatement.OTHER;
+        }
+
+        // The last COMMENT in the line is the column's; an earlier one could only be inside a DEFAULT value
+        int commentStart = lastIndexOf(line, COMMENT, nameEnd);
+        if (commentStart < 0)
+        {
+            return DumpStatement.columnDef(line, nameStart, nameEnd);
+        }
+        commentStart += COMMENT.length();
+
+        // The comment is a comma-separated list of key=value pairs (see DataClassifierImpl). Encoded values never
+        // contain commas or quotes, so the classification ends at the next of either.
+        int i = commentStart;
+        while (i < line.length() && line.charAt(i) != '\'')
+        {
+            if ((i == commentStart || line.charAt(i - 1) == ',') && startsWith(line, i, DATA_CLASSIFICATION_KEY))
+            {
+                int dataDefStart = i + DATA_CLASSIFICATION_KEY.length();
+                int dataDefEnd = dataDefStart;
+                while (dataDefEnd < line.length() && line.charAt(dataDefEnd) != ',' && line.charAt(dataDefEnd) != '\'')
+                {
+                    dataDefEnd++;
+                }
+                if (dataDefEnd == dataDefStart || dataDefEnd == line.length())
+                {
+                    return DumpStatement.columnDef(line, nameStart, nameEnd);
+                }
+                return DumpStatement.classifiedColumnDef(line, nameStart, nameEnd, dataDefStart, dataDefEnd);
+            }
+            i++;
+        }
+        return DumpStatement.columnDef(line, nameStart, nameEnd);
+    }
+
+    private static DumpStatement scanCreateTable(CharSequence line)
+    {
+        if (!startsWith(line, 0, CREATE_TABLE_PREFIX))
+        {
+            return DumpStatement.OTHER;
+        }
+
+        int nameStart = CREATE_TABLE_PREFIX.length();
+        int nameEnd = skipIdentifier(line, nameStart);
+        if (nameEnd < 0 || !startsWith(line, nameEnd, " ("))
+        {
+            return DumpStatement.OTHER;
+        }
+        return DumpStatement.createTable(line, nameStart, nameEnd);
+    }
+
+    private static DumpStatement scanEnableKeys(CharSequence line)
+    {
+        int nameStart = 0;
+
+        // mysqldump wraps this statement in a versioned comment, like /*!40000 ALTER TABLE ... */
+        if (startsWith(line, 0, VERSIONED_COMMENT_PREFIX))
+        {
+            nameStart = VERSIONED_COMMENT_PREFIX.length();
+            while (nameStart < line.length() && Character.isDigit(line.charAt(nameStart)))
+            {
+                nameStart++;
+            }
+            if (!startsWith(line, nameStart, " "))
+            {
+                return DumpStatement.OTHER;
+            }
+            nameStart++;
+        }
+
+        if (!startsWith(line, nameStart, ALTER_TABLE_PREFIX))
+        {
+            return DumpStatement.OTHER;
+        }
+        nameStart += ALTER_TABLE_PREFIX.length();
+
+        int nameEnd = skipIdentifier(line, nameStart);
+        if (nameEnd < 0 || !startsWith(line, nameEnd, ENABLE_KEYS))
+        {
+            return DumpStatement.OTHER;
+        }
+        return DumpStatement.enableKeys(line, nameStart, nameEnd);
+    }
+
+    /**
+     * @param start the index of an identifier's opening backtick
+     * @return the index just past the identifier's closing backtick, or -1 if there's no non-empty, backtick-quoted
+     * identifier at {@code start}. Backticks inside an identifier are escaped by doubling them.
+     */
+    private static int skipIdentifier(CharSequence line, int start)
+    {
+        if (start >= line.length() || line.charAt(start) != '`')
+        {
+            return -1;
+        }
+        for (int i = start + 1; i < line.length(); i++)
+        {
+            if (line.charAt(i) == '`')
+            {
+                if (i + 1 < line.length() && line.charAt(i + 1) == '`')
+                {
+                    i++;
+                }
+                else
+                {
+                    return i == start + 1 ? -1 : i + 1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(CharSequence line, int start)
+    {
+        int i = start;
+        while (i < line.length() && Character.isWhitespace(line.charAt(i)))
+        {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean startsWith(CharSequence line, int offset, String prefix)
+    {
+        if (offset < 0 || line.length() - offset < prefix.length())
+        {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++)
+        {
+            if (line.charAt(offset + i) != prefix.charAt(i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int lastIndexOf(CharSequence line, String str, int fromIndex)
+    {
+        for (int i = line.length() - str.length(); i >= fromIndex; i--)
+        {
+            if (startsWith(line, i, str))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private StatementScanner()
+    {
+        // util ctor
+    }
+}
@@ -0,0 +1,254 @@
+package com.eric_eldard.harpocrates.util;
+
+import com.eric_eldard.harpocrates.exception.BadMatchException;
+import com.eric_eldard.harpocrates.io.ByteBuilder;
+
+/**
+ * Rewrites the tuples of an INSERT statement as rows of a tab-separated data file, in the format LOAD DATA reads by
+ * default (and SELECT ... INTO OUTFILE writes): fields are separated by tabs and rows end in newlines, NULL is written
+ * as {@code \N}, and a backslash, tab, newline, carriage return or NUL within a value is escaped with a backslash.
+ * <br><br>
+ * String literals are unescaped from SQL and escaped again for the data file in a single pass over their bytes, so
+ * values are never decoded; whatever character set the dump is in, the data file is too. Hex and bit literals are
+ * written as the bytes they stand for. Anything else (numbers, mostly) is copied across as-is.
+ */
+public final class TabEncoder
+{
+    private static final byte[] NULL = {'\\', 'N'};
+
+    /**
+     * Writes every tuple of an INSERT's values to {@code out}, one row per line
+     * @param stmt        the full statement
+     * @param valuesStart the index of the opening paren of the first tuple
+     */
+    public static void appendRows(CharSequence stmt, int valuesStart, ByteBuilder out)
+    {
+        int i = valuesStart;
+        while (true)
+        {
+            i = appendRow(stmt, i, out);
+
+            char next = i < stmt.length() ? stmt.charAt(i) : 0;
+            if (next == ',' && i + 1 < stmt.length() && stmt.charAt(i + 1) == '(')
+            {
+                i++;
+            }
+            else if (next == ';')
+            {
+                return;
+            }
+            else
+            {
+                throw new BadMatchException(
+                    "Expected another tuple or the end of insert statement at position " + i + ": [" + stmt + ']');
+            }
+        }
+    }
+
+    /**
+     * @param start the index of the tuple's opening paren
+     * @return the index just past the tuple's closing paren
+     */
+    private static int appendRow(CharSequence stmt, int start, ByteBuilder out)
+    {
+        int i = start + 1;
+        while (true)
+        {
+            i = appendValue(stmt, i, out);
+            char next = i < stmt.length() ? stmt.charAt(i) : 0;
+            if (next == ')')
+            {
+                out.append('\n');
+                return i + 1;
+            }
+            if (next != ',')
+            {
+                throw new BadMatchException("Expected another value or the end of the tuple starting at position " +
+                    start + ": [" + stmt + ']');
+            }
+            out.append('\t');
+            i++;
+        }
+    }
+
+    /**
+     * @param start the index of the value's first char
+     * @return the index just past the value
+     */
+    private static int appendValue(CharSequence stmt, int start, ByteBuilder out)
+    {
+        char ch = stmt.charAt(start);
+        if (ch == '\'')
+        {
+            return appendString(stmt, start + 1, out);
+        }
+        if (ch == '_')
+        {
+            // A character set introducer (ex: _binary 'abc'); the value's bytes are what they are either way
+            int i = start;
+            while (i < stmt.length() && stmt.charAt(i) != ' ' && stmt.charAt(i) != '\'')
+            {
+                i++;
+            }
+            while (i < stmt.length() && stmt.charAt(i) == ' ')
+            {
+                i++;
+            }
+            return appendValue(stmt, i, out);
+        }
+        if (ch == '0' && start + 1 < stmt.length() && (stmt.charAt(start + 1) == 'x' || stmt.charAt(start + 1) == 'X'))
+        {
+            return appendHex(stmt, start + 2, out);
+        }
+        if (ch == 'b' && start + 1 < stmt.length() && stmt.charAt(start + 1) == '\'')
+        {
+            return appendBits(stmt, start + 2, out);
+        }
+        if (regionIs(stmt, start, "NULL"))
+        {
+            out.append(NULL);
+            return start + 4;
+        }
+
+        int i = start;
+        while (i < stmt.length() && stmt.charAt(i) != ',' && stmt.charAt(i) != ')')
+        {
+            appendEscaped((byte) stmt.charAt(i++), out);
+        }
+        return i;
+    }
+
+    /**
+     * @param start the index just past the opening quote
+     * @return the index just past the closing quote
+     */
+    private static int appendString(CharSequence stmt, int start, ByteBuilder out)
+    {
+        for (int i = start; i < stmt.length(); i++)
+        {
+            char ch = stmt.charAt(i);
+            if (ch == '\\' && i + 1 < stmt.length())
+            {
+                char escaped = stmt.charAt(++i);
+                switch (escaped)
+                {
+                    case '0' -> appendEscaped((byte) 0, out);
+                    case 'b' -> appendEscaped((byte) '\b', out);
+                    case 'n' -> appendEscaped((byte) '\n', out);
+                    case 'r' -> appendEscaped((byte) '\r', out);
+                    case 't' -> appendEscaped((byte) '\t', out);
+                    case 'Z' -> appendEscaped((byte) 26, out);
+                    case '%', '_' ->
+                    {
+                        // MySQL keeps the backslash in these, for use in LIKE patterns
+                        appendEscaped((byte) '\\', out);
+                        appendEscaped((byte) escaped, out);
+                    }
+                    default -> appendEscaped((byte) escaped, out);
+                }
+            }
+            else if (ch == '\'')
+            {
+                if (i + 1 < stmt.length() && stmt.charAt(i + 1) == '\'')
+                {
+                    appendEscaped((byte) '\'', out);
+                    i++;
+                }
+                else
+                {
+                    return i + 1;
+                }
+            }
+            else
+            {
+                appendEscaped((byte) ch, out);
+            }
+        }
+        throw new BadMatchException(
+            "Reached the end of the statement before the end of the string starting at position " + start + ": [" +
+                stmt + ']');
+    }
+
+    /**
+     * @param start the index just past the {@code 0x}
+     * @return the index just past the last hex digit
+     */
+    private static int appendHex(CharSequence stmt, int start, ByteBuilder out)
+    {
+        int i = start;
+        while (i < stmt.length() && Character.digit(stmt.charAt(i), 16) >= 0)
+        {
+            i++;
+        }
+
+        // An odd number of digits is padded on the left, as MySQL does
+        int digit = start - (i - start) % 2;
+        for (; digit < i; digit += 2)
+        {
+            int high = digit < start ? 0 : Character.digit(stmt.charAt(digit), 16);
+            appendEscaped((byte) (high << 4 | Character.digit(stmt.charAt(digit + 1), 16)), out);
+        }
+        return i;
+    }
+
+    /**
+     * @param start the index just past {@code b'}
+     * @return the index just past the closing quote
+     */
+    private static int appendBits(CharSequence stmt, int start, ByteBuilder out)
+    {
+        int end = start;
+        while (end < stmt.length() && stmt.charAt(end) != '\'')
+        {
+            end++;
+        }
+
+        // Big-endian, in as few bytes as hold every bit
+        int byteCount = Math.max((end - start + 7) / 8, 1);
+        for (int b = byteCount - 1; b >= 0; b--)
+        {
+            int value = 0;
+            for (int bit = 7; bit >= 0; bit--)
+            {
+                int i = end - 1 - (b * 8 + bit);
+                value = value << 1 | (i >= start && stmt.charAt(i) == '1' ? 1 : 0);
+            }
+            appendEscaped((byte) value, out);
+        }
+        return end + 1;
+    }
+
+    private static void appendEscaped(byte b, ByteBuilder out)
+    {
+        switch (b)
+        {
+            case '\\' -> out.append('\\').append('\\');
+            case '\t' -> out.append('\\').append('t');
+            case '\n' -> out.append('\\').append('n');
+            case '\r' -> out.append('\\').append('r');
+            case 0 -> out.append('\\').append('0');
+            default -> out.append(b);
+        }
+    }
+
+    private static boolean regionIs(CharSequence stmt, int start, String str)
+    {
+        if (start + str.length() > stmt.length())
+        {
+            return false;
+        }
+        for (int i = 0; i < str.length(); i++)
+        {
+            if (stmt.charAt(start + i) != str.charAt(i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private TabEncoder()
+    {
+        // util ctor
+    }
+}
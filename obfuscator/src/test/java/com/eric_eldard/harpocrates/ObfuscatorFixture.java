@@ -0,0 +1,41 @@
+package com.eric_eldard.harpocrates;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.jupiter.api.io.TempDir;
+
+import com.eric_eldard.harpocrates.service.ObfuscatorService;
+import com.eric_eldard.harpocrates.service.ObfuscatorService.OutputFormat;
+
+/**
+ * What tests of the obfuscator share: a temporary directory to dump into, column comments as DataClassifierImpl writes
+ * them, and a quiet, single-threaded service
+ */
+public abstract class ObfuscatorFixture
+{
+    protected static final String REAL_SSN = "123-45-6789";
+
+    protected static final String SSN_COMMENT =
+        "dataClassification=%7B%22typ%22%3A%22SSN%22%2C%22act%22%3A%22REPLACE%22%7D";
+
+    protected static final String PHONE_COMMENT =
+        "dataClassification=%7B%22typ%22%3A%22PHONE_NUMBER%22%2C%22act%22%3A%22REMOVE%22%7D";
+
+    protected static final String IGNORE_COMMENT =
+        "dataClassification=%7B%22typ%22%3A%22OTHER%22%2C%22act%22%3A%22IGNORE%22%7D";
+
+    protected static final String NOT_SENSITIVE_COMMENT =
+        "dataClassification=%7B%22typ%22%3A%22NOT_SENSITIVE%22%2C%22act%22%3A%22REPLACE%22%7D";
+
+    @TempDir
+    protected Path dir;
+
+    /**
+     * @return a service which obfuscates on the calling thread, with no checkpoints or progress reports
+     */
+    protected static ObfuscatorService newService(OutputFormat format)
+    {
+        return new ObfuscatorService(1, ObfuscatorService.DEFAULT_BATCH_SIZE, 0, format, 0, Duration.ZERO);
+    }
+}
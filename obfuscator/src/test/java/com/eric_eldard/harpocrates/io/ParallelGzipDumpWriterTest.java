@@ -0,0 +1,118 @@
+package com.eric_eldard.harpocrates.io;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ParallelGzipDumpWriterTest
+{
+    private static final int BLOCK_SIZE = 4096;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void gunzipsToWhatWasWrittenOnCallingThread() throws IOException
+    {
+        assertGunzipsToWhatWasWritten(1);
+    }
+
+    @Test
+    void gunzipsToWhatWasWrittenOnThreadPool() throws IOException
+    {
+        assertGunzipsToWhatWasWritten(4);
+    }
+
+    @Test
+    void resumesIntoSyncedOutputOnCallingThread() throws IOException
+    {
+        assertResumesIntoSyncedOutput(1);
+    }
+
+    @Test
+    void resumesIntoSyncedOutputOnThreadPool() throws IOException
+    {
+        assertResumesIntoSyncedOutput(4);
+    }
+
+    private void assertGunzipsToWhatWasWritten(int threads) throws IOException
+    {
+        byte[] dump = sampleDump();
+        Path output = dir.resolve("dump.sql.gz");
+
+        try (ParallelGzipDumpWriter out = new ParallelGzipDumpWriter(open(output), threads, BLOCK_SIZE))
+        {
+            // Segments which don't line up with blocks, and a sync which ends one early
+            int third = dump.length / 3;
+            out.write(List.of(ByteBuffer.wrap(dump, 0, 100), ByteBuffer.wrap(dump, 100, third - 100)));
+            out.sync();
+            out.write(List.of(ByteBuffer.wrap(dump, third, dump.length - third)));
+        }
+
+        assertArrayEquals(dump, gunzip(output));
+    }
+
+    private void assertResumesIntoSyncedOutput(int threads) throws IOException
+    {
+        byte[] dump = sampleDump();
+        Path output = dir.resolve("dump.sql.gz");
+        int half = dump.length / 2;
+
+        long synced;
+        try (ParallelGzipDumpWriter out = new ParallelGzipDumpWriter(open(output), threads, BLOCK_SIZE))
+        {
+            out.write(List.of(ByteBuffer.wrap(dump, 0, half)));
+            synced = out.sync();
+
+            // Written after the sync, so lost when resuming from it
+            out.write(List.of(ByteBuffer.wrap("lost".getBytes(StandardCharsets.UTF_8))));
+        }
+
+        try (ResumableDumpWriter out = DumpWriter.open(output.toFile(), synced, threads))
+        {
+            assertEquals(synced, Files.size(output));
+            out.write(List.of(ByteBuffer.wrap(dump, half, dump.length - half)));
+        }
+
+        assertArrayEquals(dump, gunzip(output));
+    }
+
+    /**
+     * @return several blocks' worth of INSERTs, compressible as a real dump would be
+     */
+    private static byte[] sampleDump()
+    {
+        StringBuilder dump = new StringBuilder();
+        for (int id = 0; dump.length() < BLOCK_SIZE * 10; id++)
+        {
+            dump.append("INSERT INTO `Person` VALUES (").append(id).append(",'name ").append(id * 31).append("');\n");
+        }
+        return dump.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static FileChannel open(Path file) throws IOException
+    {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    private static byte[] gunzip(Path file) throws IOException
+    {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file)))
+        {
+            return in.readAllBytes();
+        }
+    }
+}
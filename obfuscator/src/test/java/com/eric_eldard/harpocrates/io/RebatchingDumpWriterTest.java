@@ -0,0 +1,174 @@
+package com.eric_eldard.harpocrates.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class RebatchingDumpWriterTest
+{
+    private static final String BEGIN_RUN = "SET @saved_unique_checks=@@UNIQUE_CHECKS, UNIQUE_CHECKS=0, " +
+        "@saved_foreign_key_checks=@@FOREIGN_KEY_CHECKS, FOREIGN_KEY_CHECKS=0, " +
+        "@saved_autocommit=@@AUTOCOMMIT, AUTOCOMMIT=0;\n";
+
+    private static final String END_RUN = "COMMIT;\n" +
+        "SET UNIQUE_CHECKS=@saved_unique_checks, FOREIGN_KEY_CHECKS=@saved_foreign_key_checks, " +
+        "AUTOCOMMIT=@saved_autocommit;\n";
+
+    /**
+     * {@code INSERT INTO `t` VALUES } and its {@code ;}
+     */
+    private static final int INSERT_OVERHEAD = 24;
+
+    @Test
+    void mergesConsecutiveSingleRowInsertsInATransaction() throws IOException
+    {
+        String rebatched = rebatch(1024, """
+            LOCK TABLES `t` WRITE;
+            INSERT INTO `t` VALUES (1,'a');
+            INSERT INTO `t` VALUES (2,'it''s, (b)');
+            INSERT INTO `t` VALUES (3,'c');
+            UNLOCK TABLES;
+            """);
+
+        assertEquals("LOCK TABLES `t` WRITE;\n" +
+            BEGIN_RUN +
+            "INSERT INTO `t` VALUES (1,'a'),(2,'it''s, (b)'),(3,'c');\n" +
+            END_RUN +
+            "UNLOCK TABLES;\n", rebatched);
+    }
+
+    /**
+     * Each tuple here is 7 bytes, plus a comma between them, so the limit fits exactly two
+     */
+    @Test
+    void splitsMergedInsertsAtTheLimit() throws IOException
+    {
+        String rebatched = rebatch(INSERT_OVERHEAD + 7 * 2 + 1, """
+            INSERT INTO `t` VALUES (1,'a');
+            INSERT INTO `t` VALUES (2,'b');
+            INSERT INTO `t` VALUES (3,'c');
+            INSERT INTO `t` VALUES (4,'d');
+            INSERT INTO `t` VALUES (5,'e');
+            """);
+
+        assertEquals(BEGIN_RUN +
+            "INSERT INTO `t` VALUES (1,'a'),(2,'b');\n" +
+            "INSERT INTO `t` VALUES (3,'c'),(4,'d');\n" +
+            "INSERT INTO `t` VALUES (5,'e');\n" +
+            END_RUN, rebatched);
+    }
+
+    @Test
+    void mergesExtendedInsertsAndLeavesOversizedOnesAlone() throws IOException
+    {
+        String rebatched = rebatch(INSERT_OVERHEAD + 7 * 3 + 2, """
+            INSERT INTO `t` VALUES (1,'a'),(2,'b');
+            INSERT INTO `t` VALUES (3,'c');
+            INSERT INTO `t` VALUES (4,'d'),(5,'e'),(6,'f'),(7,'g');
+            INSERT INTO `t` VALUES (8,'h');
+            """);
+
+        assertEquals(BEGIN_RUN +
+            "INSERT INTO `t` VALUES (1,'a'),(2,'b'),(3,'c');\n" +
+            "INSERT INTO `t` VALUES (4,'d'),(5,'e'),(6,'f'),(7,'g');\n" +
+            "INSERT INTO `t` VALUES (8,'h');\n" +
+            END_RUN, rebatched);
+    }
+
+    @Test
+    void onlyMergesInsertsIntoTheSameTableAndColumns() throws IOException
+    {
+        String rebatched = rebatch(1024, """
+            INSERT INTO `t` (`id`, `name`) VALUES (1,'a');
+            INSERT INTO `t` (`id`, `name`) VALUES (2,'b');
+            INSERT INTO `t` (`name`, `id`) VALUES ('c',3);
+            INSERT INTO `u` VALUES (4,'d');
+            """);
+
+        assertEquals(BEGIN_RUN +
+            "INSERT INTO `t` (`id`, `name`) VALUES (1,'a'),(2,'b');\n" +
+            "INSERT INTO `t` (`name`, `id`) VALUES ('c',3);\n" +
+            "INSERT INTO `u` VALUES (4,'d');\n" +
+            END_RUN, rebatched);
+    }
+
+    /**
+     * A run resumed from a sync starts a fresh INSERT and transaction, so the output must have ended both
+     */
+    @Test
+    void endsInsertAndTransactionOnSync() throws IOException
+    {
+        BufferWriter buffer = new BufferWriter();
+        long synced;
+        try (RebatchingDumpWriter out = new RebatchingDumpWriter(buffer, 1024))
+        {
+            out.write(bytes("INSERT INTO `t` VALUES (1,'a');\nINSERT INTO `t` VALUES (2,'b');\n"));
+            synced = out.sync();
+            out.write(bytes("INSERT INTO `t` VALUES (3,'c');\n"));
+        }
+
+        String firstRun = BEGIN_RUN + "INSERT INTO `t` VALUES (1,'a'),(2,'b');\n" + END_RUN;
+        assertEquals(firstRun.length(), synced);
+        assertEquals(firstRun + BEGIN_RUN + "INSERT INTO `t` VALUES (3,'c');\n" + END_RUN, buffer.toString());
+    }
+
+    private static String rebatch(int maxInsertBytes, String dump) throws IOException
+    {
+        BufferWriter buffer = new BufferWriter();
+        try (RebatchingDumpWriter out = new RebatchingDumpWriter(buffer, maxInsertBytes))
+        {
+            // Split mid-line, as the obfuscator's batches may be
+            byte[] bytes = dump.getBytes(StandardCharsets.UTF_8);
+            out.write(List.of(ByteBuffer.wrap(bytes, 0, 10), ByteBuffer.wrap(bytes, 10, bytes.length - 10)));
+        }
+        return buffer.toString();
+    }
+
+    private static List<ByteBuffer> bytes(String str)
+    {
+        return List.of(ByteBuffer.wrap(str.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Collects the output in memory
+     */
+    private static class BufferWriter implements ResumableDumpWriter
+    {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        @Override
+        public void write(List<ByteBuffer> segments)
+        {
+            for (ByteBuffer segment : segments)
+            {
+                byte[] copy = new byte[segment.remaining()];
+                segment.get(segment.position(), copy);
+                bytes.writeBytes(copy);
+            }
+        }
+
+        @Override
+        public long sync()
+        {
+            return bytes.size();
+        }
+
+        @Override
+        public void close()
+        {
+            // Nothing to release
+        }
+
+        @Override
+        public String toString()
+        {
+            return bytes.toString(StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.eric_eldard.harpocrates.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.eric_eldard.harpocrates.enumeration.Action;
+import com.eric_eldard.harpocrates.enumeration.DataType;
+import com.eric_eldard.harpocrates.util.StatementScanner;
+
+class TablePlanTest
+{
+    private static final List<String> COLUMN_NAMES = List.of("`id`", "`ssn`", "`phone`", "`note`", "`bio`");
+
+    private static final Map<String, DataDefinition> DATA_DEFS = Map.of(
+        "`ssn`", DataDefinition.of(DataType.SSN, Action.REPLACE, null, null),
+        "`phone`", DataDefinition.of(DataType.PHONE_NUMBER, Action.REMOVE, null, null),
+        "`note`", DataDefinition.of(DataType.OTHER, Action.IGNORE, null, null),
+        "`bio`", DataDefinition.of(DataType.NOT_SENSITIVE, Action.REPLACE, null, null)
+    );
+
+    /**
+     * For INSERTs without a column list, whose values are in table definition order
+     */
+    @Test
+    void plansImplicitColumnListInTableDefinitionOrder()
+    {
+        TablePlan plan = TablePlan.compile(COLUMN_NAMES, DATA_DEFS);
+
+        assertEquals("`id`, `ssn`, `phone`, `note`, `bio`", plan.getColumnList());
+        assertEquals(5, plan.getColumnCount());
+        assertArrayEquals(new int[] {1, 2}, plan.getSensitiveOrdinals());
+        assertArrayEquals(new Action[] {Action.REPLACE, Action.REMOVE}, plan.getActions());
+        assertNotNull(plan.getTemplates()[0]);
+        assertNull(plan.getTemplates()[1]);
+        assertEquals(1, plan.getReplacedCount());
+        assertEquals(1, plan.getRemovedCount());
+        assertEquals(1, plan.getIgnoredCount());
+        assertEquals(2, plan.getLastSensitiveOrdinal());
+    }
+
+    /**
+     * An INSERT may list only some columns, in any order; ordinals follow its list, not the table definition
+     */
+    @Test
+    void plansExplicitColumnListInItsOwnOrder()
+    {
+        String columnList = "`note`,`phone`,`id`,`ssn`";
+
+        TablePlan plan = TablePlan.compile(columnList, StatementScanner.splitColumns(columnList), DATA_DEFS);
+
+        assertEquals(columnList, plan.getColumnList());
+        assertEquals(4, plan.getColumnCount());
+        assertArrayEquals(new int[] {1, 3}, plan.getSensitiveOrdinals());
+        assertArrayEquals(new Action[] {Action.REMOVE, Action.REPLACE}, plan.getActions());
+        assertEquals(3, plan.getLastSensitiveOrdinal());
+    }
+
+    @Test
+    void plansNothingForUnclassifiedColumns()
+    {
+        TablePlan plan = TablePlan.compile(List.of("`id`", "`note`", "`bio`"), DATA_DEFS);
+
+        assertTrue(plan.isPassthrough());
+        assertEquals(-1, plan.getLastSensitiveOrdinal());
+        assertEquals(1, plan.getIgnoredCount());
+    }
+
+    /**
+     * {@link DataType#OTHER} has no pattern of its own, so without one there's nothing to replace it with
+     */
+    @Test
+    void removesReplacedValuesWithNoPattern()
+    {
+        Map<String, DataDefinition> dataDefs = Map.of(
+            "`note`", DataDefinition.of(DataType.OTHER, Action.REPLACE, null, null),
+            "`bio`", DataDefinition.of(DataType.OTHER, Action.REPLACE, "{GIVEN_NAME}", null)
+        );
+
+        TablePlan plan = TablePlan.compile(List.of("`note`", "`bio`"), dataDefs);
+
+        assertArrayEquals(new Action[] {Action.REMOVE, Action.REPLACE}, plan.getActions());
+        assertEquals(1, plan.getReplacedCount());
+    }
+}
@@ -0,0 +1,118 @@
+package com.eric_eldard.harpocrates.runner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import com.eric_eldard.harpocrates.ObfuscatorFixture;
+import com.eric_eldard.harpocrates.service.ObfuscatorService.OutputFormat;
+
+/**
+ * Runs CREATE_DUMP's mysqldump mode against a fake mysqldump: a shell script which writes a canned dump to stdout
+ */
+@DisabledOnOs(OS.WINDOWS)
+class ObfuscatorRunnerTest extends ObfuscatorFixture
+{
+    private static final String URL = "jdbc:mysql://db.example.com:3307/shop";
+
+    private static final String DUMP = """
+        CREATE TABLE `Person` (
+          `id` bigint NOT NULL AUTO_INCREMENT,
+          `ssn` varchar(11) DEFAULT NULL COMMENT '%s',
+          PRIMARY KEY (`id`)
+        ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+        /*!40000 ALTER TABLE `Person` DISABLE KEYS */;
+        INSERT INTO `Person` (`id`, `ssn`) VALUES (1,'123-45-6789'),(2,'123-45-6789');
+        /*!40000 ALTER TABLE `Person` ENABLE KEYS */;
+        """.formatted(SSN_COMMENT);
+
+    private static final String WARNING = "mysqldump: [Warning] Using a password on the command line can be insecure.";
+
+    @Test
+    void obfuscatesMysqldumpStdoutAndKeepsStderrOutOfDump() throws Exception
+    {
+        Path mysqldump = fakeMysqldump(WARNING, 0);
+        Path output = dir.resolve("obfuscated.sql");
+
+        ObfuscatorRunner.obfuscateNewDump(mysqldump.toString(), URL, "app", "secret", output.toString(),
+            newService(OutputFormat.SQL));
+
+        String obfuscated = Files.readString(output);
+        assertTrue(obfuscated.contains("INSERT INTO `Person` (`id`, `ssn`) VALUES (1,'"), obfuscated);
+        assertFalse(obfuscated.contains(REAL_SSN), obfuscated);
+        assertFalse(obfuscated.contains("[Warning]"), obfuscated);
+        assertEquals("--host=db.example.com --port=3307 --user=app --password=secret --complete-insert=TRUE shop",
+            Files.readString(dir.resolve("args")).strip());
+    }
+
+    @Test
+    void deletesDumpWhenMysqldumpFails() throws IOException
+    {
+        Path mysqldump = fakeMysqldump("mysqldump: Got error: 1045: Access denied", 2);
+        Path output = dir.resolve("obfuscated.sql");
+
+        IOException ex = assertThrows(IOException.class, () -> ObfuscatorRunner.obfuscateNewDump(
+            mysqldump.toString(), URL, "app", "secret", output.toString(), newService(OutputFormat.SQL)));
+
+        assertTrue(ex.getMessage().contains("code 2"), ex.getMessage());
+        assertTrue(ex.getMessage().contains("Access denied"), ex.getMessage());
+        assertFalse(Files.exists(output));
+    }
+
+    @Test
+    void deletesTabDumpDirectoryWhenMysqldumpFails() throws IOException
+    {
+        Path mysqldump = fakeMysqldump("mysqldump: Got error: 2013: Lost connection", 2);
+        Path output = dir.resolve("obfuscated");
+
+        assertThrows(IOException.class, () -> ObfuscatorRunner.obfuscateNewDump(
+            mysqldump.toString(), URL, "app", "secret", output.toString(), newService(OutputFormat.TAB)));
+
+        assertFalse(Files.exists(output));
+    }
+
+    @Test
+    void keepsOtherFilesInTabDumpDirectoryWhenMysqldumpFails() throws IOException
+    {
+        Path mysqldump = fakeMysqldump("mysqldump: Got error: 2013: Lost connection", 2);
+        Path output = Files.createDirectory(dir.resolve("obfuscated"));
+        Path notes = Files.writeString(output.resolve("notes.txt"), "not part of any dump");
+
+        assertThrows(IOException.class, () -> ObfuscatorRunner.obfuscateNewDump(
+            mysqldump.toString(), URL, "app", "secret", output.toString(), newService(OutputFormat.TAB)));
+
+        try (Stream<Path> files = Files.list(output))
+        {
+            assertEquals(List.of(notes), files.toList());
+        }
+        assertEquals("not part of any dump", Files.readString(notes));
+    }
+
+    /**
+     * @return a script which records its args, writes {@link #DUMP} to stdout and {@code stderr} to stderr, then
+     * exits with {@code exitCode}
+     */
+    private Path fakeMysqldump(String stderr, int exitCode) throws IOException
+    {
+        Path script = dir.resolve("mysqldump");
+        Files.writeString(script, "#!/bin/sh\n" +
+            "echo \"$@\" > '" + dir.resolve("args") + "'\n" +
+            "cat <<'DUMP'\n" + DUMP + "DUMP\n" +
+            "echo '" + stderr + "' >&2\n" +
+            "exit " + exitCode + '\n');
+        Files.setPosixFilePermissions(script, PosixFilePermissions.fromString("rwx------"));
+        return script;
+    }
+}
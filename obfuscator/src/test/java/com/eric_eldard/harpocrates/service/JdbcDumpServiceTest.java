@@ -0,0 +1,126 @@
+package com.eric_eldard.harpocrates.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import com.eric_eldard.harpocrates.ObfuscatorFixture;
+
+/**
+ * Dumps an H2 database in MySQL mode, then loads the dump's INSERTs into an empty copy of its table. H2 has no SHOW
+ * CREATE TABLE, so the dump has no table structure, and it doesn't read mysqldump's LOCK TABLES, so only the INSERTs
+ * are loaded.
+ */
+class JdbcDumpServiceTest extends ObfuscatorFixture
+{
+    private static final String CREATE_TABLE = """
+        CREATE TABLE person (
+          id INT PRIMARY KEY,
+          ssn VARCHAR(11),
+          phone VARCHAR(20),
+          note VARCHAR(100),
+          bio VARCHAR(100),
+          plain VARCHAR(100)
+        )""";
+
+    private static final int ROWS = 2_500;
+
+    @Test
+    void replacesClassifiedColumnsAndLoadsBack() throws Exception
+    {
+        String sourceUrl = "jdbc:h2:mem:source;MODE=MySQL;DB_CLOSE_DELAY=-1";
+        try (Connection source = DriverManager.getConnection(sourceUrl, "sa", ""))
+        {
+            createTable(source);
+            try (Statement statement = source.createStatement())
+            {
+                statement.execute("COMMENT ON COLUMN person.ssn IS '" + SSN_COMMENT + "'");
+                statement.execute("COMMENT ON COLUMN person.phone IS '" + PHONE_COMMENT + "'");
+                statement.execute("COMMENT ON COLUMN person.note IS '" + IGNORE_COMMENT + "'");
+                statement.execute("COMMENT ON COLUMN person.bio IS '" + NOT_SENSITIVE_COMMENT + "'");
+            }
+            try (PreparedStatement insert = source.prepareStatement("INSERT INTO person VALUES (?, ?, ?, ?, ?, ?)"))
+            {
+                for (int id = 0; id < ROWS; id++)
+                {
+                    insert.setInt(1, id);
+                    insert.setString(2, realSsn(id));
+                    insert.setString(3, "(555) 010-" + id);
+                    insert.setString(4, "note " + id);
+                    insert.setString(5, id % 10 == 0 ? null : "bio " + id);
+                    insert.setString(6, "plain, é " + id);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+
+            Path output = dir.resolve("dump.sql");
+            new JdbcDumpService(sourceUrl, "sa", "", 2).dump(output.toString());
+
+            List<String> dump = Files.readAllLines(output);
+            assertTrue(dump.stream().noneMatch(line -> line.contains(realSsn(1)) || line.contains("(555) 010-")));
+
+            try (Connection target = DriverManager.getConnection("jdbc:h2:mem:target;MODE=MySQL", "sa", "");
+                 Statement statement = target.createStatement())
+            {
+                createTable(target);
+                for (String line : dump)
+                {
+                    if (line.startsWith("INSERT INTO "))
+                    {
+                        statement.execute(line);
+                    }
+                }
+
+                int loaded = 0;
+                try (ResultSet rs = statement.executeQuery("SELECT * FROM person ORDER BY id"))
+                {
+                    while (rs.next())
+                    {
+                        int id = rs.getInt("id");
+                        assertEquals(loaded++, id);
+                        assertNotEquals(realSsn(id), rs.getString("ssn"));
+                        assertTrue(rs.getString("ssn").matches("\\d{3}-\\d{2}-\\d{4}"), rs.getString("ssn"));
+                        assertNull(rs.getString("phone"));
+                        assertEquals("note " + id, rs.getString("note"));
+                        assertEquals(id % 10 == 0 ? null : "bio " + id, rs.getString("bio"));
+                        assertEquals("plain, é " + id, rs.getString("plain"));
+                    }
+                }
+                assertEquals(ROWS, loaded);
+            }
+
+            try (Stream<Path> files = Files.list(dir))
+            {
+                assertEquals(List.of(output), files.toList(), "Segment files should be cleaned up");
+            }
+        }
+    }
+
+    private static void createTable(Connection connection) throws SQLException
+    {
+        try (Statement statement = connection.createStatement())
+        {
+            statement.execute(CREATE_TABLE);
+        }
+    }
+
+    private static String realSsn(int id)
+    {
+        return String.format("078-05-%04d", id);
+    }
+}
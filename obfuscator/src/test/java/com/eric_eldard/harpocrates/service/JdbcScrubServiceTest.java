@@ -0,0 +1,161 @@
+package com.eric_eldard.harpocrates.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import com.eric_eldard.harpocrates.ObfuscatorFixture;
+import com.eric_eldard.harpocrates.io.ScrubProgress;
+import com.eric_eldard.harpocrates.io.ScrubProgress.KeyValue;
+
+/**
+ * Scrubs an H2 database in MySQL mode whose table is keyed by a binary column and a BIGINT beyond 2^53, neither of
+ * which survives being saved and bound back as a string
+ */
+class JdbcScrubServiceTest extends ObfuscatorFixture
+{
+    private static final String URL = "jdbc:h2:mem:scrub;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    private static final byte[][] TENANTS = {{0x00, (byte) 0xFF}, {(byte) 0xFF, 0x00}};
+
+    private static final long FIRST_SEQ = (1L << 53) + 1;
+
+    private static final int ROWS_PER_TENANT = 150;
+
+    private static final int CHUNK_ROWS = 10;
+
+    /**
+     * The second tenant's 56th row can't lose its phone number until the constraint is dropped, so the first run fails
+     * in the chunk holding it
+     */
+    private static final long FAILING_SEQ = seq(1, 55);
+
+    @Test
+    void resumesFromBinaryAndBigintKey() throws Exception
+    {
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+             Statement statement = connection.createStatement())
+        {
+            statement.execute("""
+                CREATE TABLE doc (
+                  tenant VARBINARY(2),
+                  seq BIGINT,
+                  ssn VARCHAR(11),
+                  phone VARCHAR(20),
+                  plain VARCHAR(100),
+                  PRIMARY KEY (tenant, seq)
+                )""");
+            statement.execute("COMMENT ON COLUMN doc.ssn IS '" + SSN_COMMENT + "'");
+            statement.execute("COMMENT ON COLUMN doc.phone IS '" + PHONE_COMMENT + "'");
+            statement.execute("ALTER TABLE doc ADD CONSTRAINT phone_kept " +
+                "CHECK (phone IS NOT NULL OR seq <> " + FAILING_SEQ + ")");
+            insertRows(connection);
+
+            File progressFile = dir.resolve("scrub.progress").toFile();
+            JdbcScrubService service = new JdbcScrubService(URL, "sa", "", 1, CHUNK_ROWS);
+            assertThrows(SQLException.class, () -> service.scrub(progressFile));
+
+            // Every chunk before the failing one was committed
+            List<KeyValue> lastKey = ScrubProgress.load(progressFile).getLastKey("`DOC`");
+            assertEquals(2, lastKey.size());
+            assertEquals(Types.VARBINARY, lastKey.get(0).getSqlType());
+            assertArrayEquals(TENANTS[1], (byte[]) lastKey.get(0).getValue());
+            assertEquals(Types.BIGINT, lastKey.get(1).getSqlType());
+            assertEquals(String.valueOf(FAILING_SEQ - 6), lastKey.get(1).getValue());
+
+            Map<String, String> committedSsns = readSsnsUpTo(connection, lastKey);
+            assertEquals(ROWS_PER_TENANT + 50, committedSsns.size());
+
+            statement.execute("ALTER TABLE doc DROP CONSTRAINT phone_kept");
+            service.resume(progressFile);
+
+            assertFalse(progressFile.exists());
+            assertEquals(committedSsns, readSsnsUpTo(connection, lastKey), "Committed chunks should be skipped");
+            int rows = 0;
+            try (ResultSet rs = statement.executeQuery("SELECT * FROM doc"))
+            {
+                while (rs.next())
+                {
+                    rows++;
+                    assertNotEquals(realSsn(rs.getLong("seq")), rs.getString("ssn"));
+                    assertNull(rs.getString("phone"));
+                    assertEquals("plain " + rs.getLong("seq"), rs.getString("plain"));
+                }
+            }
+            assertEquals(TENANTS.length * ROWS_PER_TENANT, rows);
+        }
+    }
+
+    private static void insertRows(Connection connection) throws SQLException
+    {
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO doc VALUES (?, ?, ?, ?, ?)"))
+        {
+            for (int t = 0; t < TENANTS.length; t++)
+            {
+                for (int i = 0; i < ROWS_PER_TENANT; i++)
+                {
+                    long seq = seq(t, i);
+                    insert.setBytes(1, TENANTS[t]);
+                    insert.setLong(2, seq);
+                    insert.setString(3, realSsn(seq));
+                    insert.setString(4, "(555) 010-" + i);
+                    insert.setString(5, "plain " + seq);
+                    insert.addBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+    }
+
+    /**
+     * @return the SSNs of the rows up to and including {@code key}, by tenant and seq
+     */
+    private static Map<String, String> readSsnsUpTo(Connection connection, List<KeyValue> key) throws SQLException
+    {
+        Map<String, String> ssns = new TreeMap<>();
+        try (PreparedStatement select =
+                 connection.prepareStatement("SELECT tenant, seq, ssn FROM doc WHERE (tenant, seq) <= (?, ?)"))
+        {
+            for (int k = 0; k < key.size(); k++)
+            {
+                select.setObject(k + 1, key.get(k).getValue(), key.get(k).getSqlType());
+            }
+            try (ResultSet rs = select.executeQuery())
+            {
+                while (rs.next())
+                {
+                    ssns.put(HexFormat.of().formatHex(rs.getBytes(1)) + "/" + rs.getLong(2), rs.getString(3));
+                }
+            }
+        }
+        return ssns;
+    }
+
+    private static long seq(int tenant, int i)
+    {
+        return FIRST_SEQ + tenant * 1_000L + i;
+    }
+
+    private static String realSsn(long seq)
+    {
+        return String.format("123-45-%04d", seq % 10_000);
+    }
+}
@@ -0,0 +1,267 @@
+package com.eric_eldard.harpocrates.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import com.eric_eldard.harpocrates.ObfuscatorFixture;
+import com.eric_eldard.harpocrates.exception.BadMatchException;
+import com.eric_eldard.harpocrates.io.Checkpoint;
+import com.eric_eldard.harpocrates.io.DumpIndex;
+import com.eric_eldard.harpocrates.service.ObfuscatorService.OutputFormat;
+
+class ObfuscatorServiceTest extends ObfuscatorFixture
+{
+    private static final String SCHEMA = """
+        CREATE TABLE `Person` (
+          `id` bigint NOT NULL AUTO_INCREMENT,
+          `ssn` varchar(11) DEFAULT NULL COMMENT '%s',
+          `note` varchar(255) DEFAULT NULL COMMENT '%s',
+          PRIMARY KEY (`id`)
+        ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+        """.formatted(SSN_COMMENT, IGNORE_COMMENT);
+
+    /**
+     * mydumper's --complete-insert writes column lists with no space after each comma
+     */
+    @Test
+    void obfuscatesMydumperInsertsWithUnspacedColumnList() throws IOException
+    {
+        Path dumpDir = mydumperDump(
+            "INSERT INTO `Person` (`id`,`ssn`,`note`) VALUES(1,'" + REAL_SSN + "','kept, as is'),\n" +
+            "(2,'" + REAL_SSN + "',NULL);\n"
+        );
+
+        Path outputDir = dir.resolve("out");
+        newService(OutputFormat.SQL).obfuscateDirectory(dumpDir.toFile(), outputDir.toString());
+
+        String obfuscated = Files.readString(outputDir.resolve("db.Person.sql"));
+        assertFalse(obfuscated.contains(REAL_SSN), obfuscated);
+        assertTrue(obfuscated.contains("INSERT INTO `Person` (`id`,`ssn`,`note`) VALUES"), obfuscated);
+        assertTrue(obfuscated.contains("'kept, as is'"), obfuscated);
+    }
+
+    @Test
+    void rejectsInsertNamingColumnMissingFromTableDefinition() throws IOException
+    {
+        Path dumpDir = mydumperDump(
+            "INSERT INTO `Person` (`id`,`social`,`note`) VALUES(1,'" + REAL_SSN + "','kept, as is');\n"
+        );
+
+        Path outputDir = dir.resolve("out");
+        assertThrows(BadMatchException.class,
+            () -> newService(OutputFormat.SQL).obfuscateDirectory(dumpDir.toFile(), outputDir.toString()));
+    }
+
+    /**
+     * Values are split on the commas and parens between them, never on those inside strings, whichever way their
+     * quotes are escaped
+     */
+    @Test
+    void splitsValuesAroundQuotesCommasAndParensInStrings() throws IOException
+    {
+        String inserts =
+            "INSERT INTO `Person` VALUES (1,'" + REAL_SSN + "','it\\'s'),(2,'" + REAL_SSN + "','it''s, \\\\')," +
+                "(3,'" + REAL_SSN + "','a) ,(b'),(4,'" + REAL_SSN + "','\\\\\\''),(5,'" + REAL_SSN + "','');\n";
+
+        String obfuscated = obfuscateDump(inserts);
+
+        assertFalse(obfuscated.contains(REAL_SSN), obfuscated);
+        assertEquals(dump(inserts), withRealSsns(obfuscated));
+    }
+
+    /**
+     * An INSERT's own column list decides which of its values are obfuscated, however it's spaced or ordered
+     */
+    @Test
+    void obfuscatesByInsertColumnListUnspacedAndReordered() throws IOException
+    {
+        String inserts =
+            "INSERT INTO `Person` (`note`,`id`,`ssn`) VALUES ('a, b',1,'" + REAL_SSN + "'),('it''s',2,'" + REAL_SSN +
+                "');\n" +
+            "INSERT INTO `Person` (`ssn`, `id`) VALUES ('" + REAL_SSN + "',3);\n";
+
+        String obfuscated = obfuscateDump(inserts);
+
+        assertFalse(obfuscated.contains(REAL_SSN), obfuscated);
+        assertEquals(dump(inserts), withRealSsns(obfuscated));
+    }
+
+    /**
+     * A run which fails partway through a table leaves a checkpoint there. Once the dump is fixed, resuming finishes
+     * the output just as an uninterrupted run would have written it. (Values are only removed, never replaced with
+     * random ones, so two runs over the same dump write the same output.)
+     */
+    @Test
+    void resumedRunWritesSameOutputAsUninterruptedRun() throws IOException
+    {
+        Path dumpFile = dir.resolve("dump.sql");
+        String goodInsert = "INSERT INTO `Contact` (`id`,`tel`,`note`) VALUES (150,'(555) 010-0150','it''s, ok');";
+        String badInsert = goodInsert.replace("`tel`", "`fax`");
+        String dump = contactDump();
+        Files.writeString(dumpFile, dump.replace(goodInsert, badInsert));
+        FileTime lastModified = Files.getLastModifiedTime(dumpFile);
+
+        // One batch of a few lines at a time, with a checkpoint after every one
+        ObfuscatorService service = new ObfuscatorService(1, 5, 1, OutputFormat.SQL, 0, Duration.ZERO);
+        Path output = dir.resolve("obfuscated.sql");
+        assertThrows(BadMatchException.class, () -> service.obfuscate(dumpFile.toFile(), output.toString()));
+
+        File checkpointFile = Checkpoint.fileFor(output.toFile());
+        Checkpoint checkpoint = Checkpoint.load(checkpointFile);
+        assertEquals("`Contact`", checkpoint.getTableState().getTableName());
+        assertTrue(checkpoint.getInputOffset() > dump.indexOf("VALUES (100,"), "Last checkpoint is too early");
+
+        // As a killed run would leave it, with a write cut off after the last checkpoint
+        Files.writeString(output, "INSERT INTO `Contact` (`id`,`tel`", StandardOpenOption.APPEND);
+
+        // Fixed in place: the same size and modification time, so the checkpoint still matches it
+        Files.writeString(dumpFile, dump);
+        Files.setLastModifiedTime(dumpFile, lastModified);
+        service.resume(dumpFile.toFile(), output.toString());
+
+        Path uninterruptedOutput = dir.resolve("uninterrupted.sql");
+        service.obfuscate(dumpFile.toFile(), uninterruptedOutput.toString());
+
+        assertEquals(Files.readString(uninterruptedOutput), Files.readString(output));
+        assertFalse(checkpointFile.exists(), "Checkpoint should be deleted once the run is complete");
+    }
+
+    /**
+     * Obfuscated in sections of whole tables on several threads, then stitched back together, a dump comes out just as
+     * it does from a single thread
+     */
+    @Test
+    void sectionedRunWritesSameOutputAsSingleThreadedRun() throws IOException
+    {
+        Path dumpFile = Files.writeString(dir.resolve("dump.sql"), multiTableDump(8));
+        try (FileChannel in = FileChannel.open(dumpFile))
+        {
+            assertEquals(9, DumpIndex.forDump(dumpFile.toFile(), in).sections(1).size(),
+                "The header and each table should be sections of their own");
+        }
+
+        Path singleThreadedOutput = dir.resolve("single.sql");
+        newService(OutputFormat.SQL).obfuscate(dumpFile.toFile(), singleThreadedOutput.toString());
+
+        Path sectionedOutput = dir.resolve("sectioned.sql");
+        new ObfuscatorService(4, 10, 0, OutputFormat.SQL, 0, Duration.ZERO, 1)
+            .obfuscate(dumpFile.toFile(), sectionedOutput.toString());
+
+        assertEquals(Files.readString(singleThreadedOutput), Files.readString(sectionedOutput));
+        assertFalse(Files.readString(sectionedOutput).contains("(555) 010-"));
+    }
+
+    /**
+     * @return the output of obfuscating a mysqldump dump of {@link #SCHEMA} and {@code inserts}
+     */
+    private String obfuscateDump(String inserts) throws IOException
+    {
+        Path dumpFile = Files.writeString(dir.resolve("dump.sql"), dump(inserts));
+        Path output = dir.resolve("obfuscated.sql");
+        newService(OutputFormat.SQL).obfuscate(dumpFile.toFile(), output.toString());
+        return Files.readString(output);
+    }
+
+    private static String dump(String inserts)
+    {
+        return SCHEMA +
+            "/*!40000 ALTER TABLE `Person` DISABLE KEYS */;\n" +
+            inserts +
+            "/*!40000 ALTER TABLE `Person` ENABLE KEYS */;\n";
+    }
+
+    /**
+     * @return {@code dump} with every SSN, real or generated, replaced with the real one, so it can be compared to the
+     * unobfuscated dump
+     */
+    private static String withRealSsns(String dump)
+    {
+        return dump.replaceAll("'\\d{3}-\\d{2}-\\d{4}'", "'" + REAL_SSN + "'");
+    }
+
+    /**
+     * @return a mysqldump dump of a table whose phone numbers are removed, followed by one with nothing to obfuscate
+     */
+    private static String contactDump()
+    {
+        StringBuilder dump = new StringBuilder("""
+            CREATE TABLE `Contact` (
+              `id` bigint NOT NULL AUTO_INCREMENT,
+              `tel` varchar(20) DEFAULT NULL COMMENT '%s',
+              `note` varchar(255) DEFAULT NULL,
+              PRIMARY KEY (`id`)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+            /*!40000 ALTER TABLE `Contact` DISABLE KEYS */;
+            """.formatted(PHONE_COMMENT));
+        for (int id = 0; id < 200; id++)
+        {
+            dump.append("INSERT INTO `Contact` (`id`,`tel`,`note`) VALUES (").append(id)
+                .append(String.format(",'(555) 010-%04d','it''s, ok');\n", id));
+        }
+        dump.append("""
+            /*!40000 ALTER TABLE `Contact` ENABLE KEYS */;
+            CREATE TABLE `Tag` (
+              `name` varchar(20) NOT NULL
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+            INSERT INTO `Tag` VALUES ('a'),('b');
+            """);
+        return dump.toString();
+    }
+
+    /**
+     * @return a mysqldump dump of {@code tables} tables of the same size, whose phone numbers are removed, and every
+     * other one of which has no column list in its INSERTs
+     */
+    private static String multiTableDump(int tables)
+    {
+        StringBuilder dump = new StringBuilder("-- MySQL dump\n/*!40101 SET NAMES utf8mb4 */;\n");
+        for (int table = 0; table < tables; table++)
+        {
+            String name = "`Contact" + table + "`";
+            dump.append("""
+                CREATE TABLE %s (
+                  `id` bigint NOT NULL AUTO_INCREMENT,
+                  `tel` varchar(20) DEFAULT NULL COMMENT '%s',
+                  `note` varchar(255) DEFAULT NULL,
+                  PRIMARY KEY (`id`)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+                /*!40000 ALTER TABLE %s DISABLE KEYS */;
+                """.formatted(name, PHONE_COMMENT, name));
+            for (int id = 0; id < 100; id += 4)
+            {
+                dump.append("INSERT INTO ").append(name).append(table % 2 == 0 ? " (`id`, `tel`, `note`)" : "")
+                    .append(" VALUES ");
+                for (int row = id; row < id + 4; row++)
+                {
+                    dump.append(row == id ? "" : ",")
+                        .append(String.format("(%d,'(555) 010-%04d','it''s, row %d')", row, row, row));
+                }
+                dump.append(";\n");
+            }
+            dump.append("/*!40000 ALTER TABLE ").append(name).append(" ENABLE KEYS */;\n");
+        }
+        return dump.toString();
+    }
+
+    private Path mydumperDump(String data) throws IOException
+    {
+        Path dumpDir = Files.createDirectory(dir.resolve("dump"));
+        Files.writeString(dumpDir.resolve("metadata"), "Started dump at: 2024-01-01 00:00:00\n");
+        Files.writeString(dumpDir.resolve("db.Person-schema.sql"), SCHEMA);
+        Files.writeString(dumpDir.resolve("db.Person.sql"), data);
+        return dumpDir;
+    }
+}
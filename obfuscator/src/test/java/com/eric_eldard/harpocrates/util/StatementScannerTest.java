@@ -0,0 +1,185 @@
+package com.eric_eldard.harpocrates.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.eric_eldard.harpocrates.model.DumpStatement;
+import com.eric_eldard.harpocrates.model.DumpStatement.Type;
+
+class StatementScannerTest
+{
+    private static final String DATA_DEF = "%7B%22typ%22%3A%22SSN%22%2C%22act%22%3A%22REPLACE%22%7D";
+
+    @Test
+    void scansInsertWithColumnList()
+    {
+        String line = "INSERT INTO `Person` (`id`, `ssn`) VALUES (1,'123-45-6789'),(2,NULL);";
+
+        DumpStatement stmt = StatementScanner.scan(line);
+
+        assertEquals(Type.INSERT, stmt.getType());
+        assertEquals("`Person`", stmt.getName());
+        assertEquals("`id`, `ssn`", stmt.getColumns());
+        assertEquals(line.indexOf("(1,"), stmt.getValuesStart());
+    }
+
+    @Test
+    void scansInsertWithoutColumnList()
+    {
+        String line = "INSERT INTO `Person` VALUES (1,'123-45-6789');";
+
+        DumpStatement stmt = StatementScanner.scan(line);
+
+        assertEquals(Type.INSERT, stmt.getType());
+        assertEquals("`Person`", stmt.getName());
+        assertFalse(stmt.hasColumns());
+        assertEquals(line.indexOf("(1,"), stmt.getValuesStart());
+    }
+
+    @Test
+    void scansMydumperInsertWithNoSpaceBeforeValues()
+    {
+        String line = "INSERT INTO `Person` (`id`,`ssn`) VALUES(1,'123-45-6789');";
+
+        DumpStatement stmt = StatementScanner.scan(line);
+
+        assertEquals(Type.INSERT, stmt.getType());
+        assertEquals("`id`,`ssn`", stmt.getColumns());
+        assertEquals(line.indexOf("(1,"), stmt.getValuesStart());
+    }
+
+    /**
+     * The values start at the first tuple, whatever the strings within the tuples hold
+     */
+    @Test
+    void scansInsertWithQuotesCommasAndParensInStrings()
+    {
+        String line = "INSERT INTO `Person` (`id`, `note`) VALUES " +
+            "(1,'it\\'s'),(2,'it''s'),(3,'C:\\\\'),(4,'a, b) VALUES (c'),(5,'\\\\\\'),(');";
+
+        DumpStatement stmt = StatementScanner.scan(line);
+
+        assertEquals(Type.INSERT, stmt.getType());
+        assertEquals("`id`, `note`", stmt.getColumns());
+        assertEquals(line.indexOf("(1,"), stmt.getValuesStart());
+    }
+
+    /**
+     * A quoted column name may hold anything, including what would otherwise end the column list
+     */
+    @Test
+    void scansInsertWithParenAndBacktickInColumnNames()
+    {
+        String line = "INSERT INTO `odd``table` (`a) VALUES (b`, `c``d`) VALUES (1,2);";
+
+        DumpStatement stmt = StatementScanner.scan(line);
+
+        assertEquals(Type.INSERT, stmt.getType());
+        assertEquals("`odd``table`", stmt.getName());
+        assertEquals("`a) VALUES (b`, `c``d`", stmt.getColumns());
+        assertEquals(line.indexOf("(1,"), stmt.getValuesStart());
+    }
+
+    @Test
+    void treatsMalformedInsertsAsOther()
+    {
+        assertSame(DumpStatement.OTHER, StatementScanner.scan("INSERT INTO Person VALUES (1);"));
+        assertSame(DumpStatement.OTHER, StatementScanner.scan("INSERT INTO `Person` (`id`) VALUE (1);"));
+        assertSame(DumpStatement.OTHER, StatementScanner.scan("INSERT INTO `Person` (`id) VALUES (1);"));
+        assertSame(DumpStatement.OTHER, StatementScanner.scan("INSERT INTO `` VALUES (1);"));
+    }
+
+    @Test
+    void scansClassifiedColumnDef()
+    {
+        String line = "  `ssn` varchar(11) DEFAULT NULL COMMENT 'dataClassification=" + DATA_DEF + "',";
+
+        DumpStatement stmt = StatementScanner.scan(line);
+
+        assertEquals(Type.CLASSIFIED_COLUMN_DEF, stmt.getType());
+        assertEquals("`ssn`", stmt.getName());
+        assertEquals(DATA_DEF, stmt.getEncodedDataDef());
+    }
+
+    @Test
+    void scansClassificationAfterOtherCommentKeys()
+    {
+        String line = "  `ssn` varchar(11) COMMENT 'owner=hr,dataClassification=" + DATA_DEF + ",note=x',";
+
+        DumpStatement stmt = StatementScanner.scan(line);
+
+        assertEquals(Type.CLASSIFIED_COLUMN_DEF, stmt.getType());
+        assertEquals(DATA_DEF, stmt.getEncodedDataDef());
+    }
+
+    /**
+     * Only the last COMMENT is the column's; the others are inside its default, between escaped and doubled quotes
+     */
+    @Test
+    void scansColumnDefWithCommentInsideDefault()
+    {
+        String line = "  `ssn` varchar(99) DEFAULT 'it\\'s '' COMMENT ''dataClassification=fake'' \\\\' " +
+            "COMMENT 'dataClassification=" + DATA_DEF + "',";
+
+        DumpStatement stmt = StatementScanner.scan(line);
+
+        assertEquals(Type.CLASSIFIED_COLUMN_DEF, stmt.getType());
+        assertEquals(DATA_DEF, stmt.getEncodedDataDef());
+    }
+
+    @Test
+    void scansUnclassifiedColumnDef()
+    {
+        DumpStatement stmt = StatementScanner.scan("  `note` varchar(255) DEFAULT ',' COMMENT 'free text',");
+
+        assertEquals(Type.COLUMN_DEF, stmt.getType());
+        assertEquals("`note`", stmt.getName());
+    }
+
+    @Test
+    void scansTableBoundaries()
+    {
+        DumpStatement createTable = StatementScanner.scan("CREATE TABLE `Person` (");
+        assertEquals(Type.CREATE_TABLE, createTable.getType());
+        assertEquals("`Person`", createTable.getName());
+
+        assertEquals(Type.CREATE_TABLE_END,
+            StatementScanner.scan(") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;").getType());
+
+        DumpStatement enableKeys = StatementScanner.scan("/*!40000 ALTER TABLE `Person` ENABLE KEYS */;");
+        assertEquals(Type.ENABLE_KEYS, enableKeys.getType());
+        assertEquals("`Person`", enableKeys.getName());
+
+        assertSame(DumpStatement.OTHER, StatementScanner.scan("/*!40000 ALTER TABLE `Person` DISABLE KEYS */;"));
+    }
+
+    @Test
+    void splitsColumnsWithOrWithoutSpaces()
+    {
+        assertEquals(List.of("`id`", "`ssn`"), StatementScanner.splitColumns("`id`, `ssn`"));
+        assertEquals(List.of("`id`", "`ssn`"), StatementScanner.splitColumns("`id`,`ssn`"));
+        assertEquals(List.of("`id`", "`ssn`"), StatementScanner.splitColumns(" `id` ,\t`ssn` "));
+    }
+
+    @Test
+    void splitsColumnsWithCommasAndBackticksInNames()
+    {
+        assertEquals(List.of("`a, b`", "`c``d`"), StatementScanner.splitColumns("`a, b`,`c``d`"));
+    }
+
+    @Test
+    void rejectsMalformedColumnLists()
+    {
+        assertNull(StatementScanner.splitColumns("id, ssn"));
+        assertNull(StatementScanner.splitColumns("`id` `ssn`"));
+        assertNull(StatementScanner.splitColumns("`id`,"));
+        assertNull(StatementScanner.splitColumns("`id`, `ssn"));
+        assertNull(StatementScanner.splitColumns(""));
+    }
+}
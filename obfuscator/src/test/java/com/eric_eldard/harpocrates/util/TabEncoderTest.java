@@ -0,0 +1,128 @@
+package com.eric_eldard.harpocrates.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.eric_eldard.harpocrates.exception.BadMatchException;
+import com.eric_eldard.harpocrates.io.ByteBuilder;
+
+/**
+ * Expected rows are written as LOAD DATA reads them, so {@code \\t} in a Java string is a backslash and a {@code t} in
+ * the data file: an escaped tab
+ */
+class TabEncoderTest
+{
+    @Test
+    void separatesFieldsWithTabsAndRowsWithNewlines()
+    {
+        assertEquals("1\tabc\t2.5\n2\tdef\t-3\n", encode("(1,'abc',2.5),(2,'def',-3)"));
+    }
+
+    @Test
+    void writesNullAsBackslashN()
+    {
+        assertEquals("1\t\\N\t'NULL'\n", encode("(1,NULL,'\\'NULL''')"));
+    }
+
+    @Test
+    void escapesNulTabNewlineAndCarriageReturn()
+    {
+        assertEquals("a\\0b\ta\\tb\ta\\nb\ta\\rb\n", encode("('a\\0b','a\\tb','a\\nb','a\\rb')"));
+    }
+
+    /**
+     * mysqldump escapes these, but a dump written some other way may not have
+     */
+    @Test
+    void escapesUnescapedTabAndNewlineInStrings()
+    {
+        assertEquals("a\\tb\ta\\nb\n", encode("('a\tb','a\nb')"));
+    }
+
+    @Test
+    void escapesBackslashes()
+    {
+        assertEquals("C:\\\\dir\\\\\t\\\\\n", encode("('C:\\\\dir\\\\','\\\\')"));
+    }
+
+    @Test
+    void unescapesQuotes()
+    {
+        assertEquals("it's\tit's\t\"quoted\"\n", encode("('it\\'s','it''s','\\\"quoted\\\"')"));
+    }
+
+    /**
+     * MySQL keeps the backslash in {@code \%} and {@code \_}, for LIKE patterns
+     */
+    @Test
+    void keepsBackslashBeforePercentAndUnderscore()
+    {
+        assertEquals("50\\\\%\\\\_\n", encode("('50\\%\\_')"));
+    }
+
+    @Test
+    void writesHexLiteralsAsTheirBytes()
+    {
+        assertEquals("AB\\n\tAB\t\\0\\t\n", encode("(0x41420A,0X4142,0x0009)"));
+    }
+
+    /**
+     * An odd number of digits is padded on the left
+     */
+    @Test
+    void padsOddLengthHexLiterals()
+    {
+        assertEquals("\u0001A\n", encode("(0x141)"));
+    }
+
+    @Test
+    void writesBitLiteralsAsTheirBytes()
+    {
+        assertEquals("A\tAB\t\u0005\t\\0\n", encode("(b'1000001',b'0100000101000010',b'101',b'0')"));
+    }
+
+    @Test
+    void dropsCharsetIntroducers()
+    {
+        assertEquals("a\\0\t\\0\\t\tx\n", encode("(_binary 'a\\0',_binary 0x0009,_utf8mb4'x')"));
+    }
+
+    /**
+     * Bytes go across as they are, so the data file is in the dump's character set
+     */
+    @Test
+    void copiesNonAsciiBytesAsTheyAre()
+    {
+        String utf8AsBytes = new String("é".getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+
+        assertEquals(utf8AsBytes + "\n", encode("('" + utf8AsBytes + "')"));
+    }
+
+    @Test
+    void rejectsUnterminatedStatements()
+    {
+        assertThrows(BadMatchException.class, () -> encode("(1,'abc'", ""));
+        assertThrows(BadMatchException.class, () -> encode("(1,'abc)", ";"));
+        assertThrows(BadMatchException.class, () -> encode("(1,'abc') (2,'def')", ";"));
+    }
+
+    private static String encode(String values)
+    {
+        return encode(values, ";");
+    }
+
+    /**
+     * @return the rows, as bytes mapped one to one onto chars
+     */
+    private static String encode(String values, String end)
+    {
+        String stmt = "INSERT INTO `t` VALUES " + values + end;
+        ByteBuilder out = new ByteBuilder(64);
+        TabEncoder.appendRows(stmt, stmt.indexOf('('), out);
+        return StandardCharsets.ISO_8859_1.decode(out.toByteBuffer(0, out.length())).toString();
+    }
+}
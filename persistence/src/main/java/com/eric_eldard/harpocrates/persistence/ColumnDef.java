@@ -0,0 +1,190 @@
+package com.eric_eldard.harpocrates.persistence;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A column, as described by {@code INFORMATION_SCHEMA.COLUMNS}
+ */
+@AllArgsConstructor
+public class ColumnDef
+{
+    /**
+     * How a generated column is flagged in {@code INFORMATION_SCHEMA.COLUMNS.EXTRA}
+     */
+    private static final Pattern GENERATED_COLUMN_PATTERN = Pattern.compile("\\b(VIRTUAL|STORED) GENERATED\\b");
+
+    /**
+     * How an expression default (including {@code CURRENT_TIMESTAMP}, from MySQL 8) is flagged in
+     * {@code INFORMATION_SCHEMA.COLUMNS.EXTRA}
+     */
+    private static final String DEFAULT_GENERATED = "DEFAULT_GENERATED";
+
+    private static final Pattern CURRENT_TIMESTAMP_PATTERN =
+        Pattern.compile("CURRENT_TIMESTAMP(?:\\(\\d*\\))?", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern ON_UPDATE_PATTERN =
+        Pattern.compile("\\bon update (" + CURRENT_TIMESTAMP_PATTERN.pattern() + ")", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern AUTO_INCREMENT_PATTERN =
+        Pattern.compile("\\bauto_increment\\b", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern INVISIBLE_PATTERN = Pattern.compile("\\bINVISIBLE\\b", Pattern.CASE_INSENSITIVE);
+
+    @Getter
+    private final String name;
+
+    /**
+     * The type, with its length, precision and attributes, ex: {@code varchar(255)}, {@code int unsigned}
+     */
+    private final String type;
+
+    /**
+     * {@code null} for types other than text
+     */
+    private final String charset;
+
+    /**
+     * {@code null} for types other than text
+     */
+    private final String collation;
+
+    /**
+     * The spatial reference system a spatial column's values are restricted to, or {@code null} if they aren't
+     */
+    private final String srid;
+
+    private final boolean nullable;
+
+    /**
+     * The default value, unquoted, or the expression, if it's {@code DEFAULT_GENERATED}. {@code null} if there's
+     * no default, or it's {@code NULL}.
+     */
+    private final String defaultValue;
+
+    /**
+     * Other attributes, space-separated: {@code auto_increment}, {@code on update CURRENT_TIMESTAMP},
+     * {@code VIRTUAL GENERATED} or {@code STORED GENERATED}, {@code DEFAULT_GENERATED} and {@code INVISIBLE}
+     */
+    private final String extra;
+
+    /**
+     * {@code null} unless the column is generated
+     */
+    private final String generationExpression;
+
+    /**
+     * Without quotes or escapes
+     */
+    @Getter
+    private final String comment;
+
+    /**
+     * Anything left out of a MODIFY is reset, so every attribute must be carried over
+     * @param backslashEscapes see {@link #quote(String, boolean)}
+     * @return the column's definition, just as it stands, but without its comment, for a MODIFY
+     * @throws IllegalStateException if the column has an attribute we don't know how to write back
+     */
+    public String toDefinition(boolean backslashEscapes)
+    {
+        StringBuilder definition = new StringBuilder(type);
+        if (charset != null)
+        {
+            definition.append(" CHARACTER SET ").append(charset).append(" COLLATE ").append(collation);
+        }
+
+        String otherAttributes = extra;
+        Matcher generatedMatcher = GENERATED_COLUMN_PATTERN.matcher(otherAttributes);
+        boolean generated = generatedMatcher.find();
+        if (generated)
+        {
+            definition.append(" GENERATED ALWAYS AS (").append(generationExpression).append(") ")
+                .append(generatedMatcher.group(1));
+            otherAttributes = generatedMatcher.replaceFirst("");
+        }
+        boolean expressionDefault = otherAttributes.contains(DEFAULT_GENERATED);
+        otherAttributes = otherAttributes.replace(DEFAULT_GENERATED, "");
+
+        Matcher onUpdateMatcher = ON_UPDATE_PATTERN.matcher(otherAttributes);
+        String onUpdate = onUpdateMatcher.find() ? onUpdateMatcher.group(1) : null;
+        otherAttributes = onUpdateMatcher.replaceFirst("");
+
+        Matcher invisibleMatcher = INVISIBLE_PATTERN.matcher(otherAttributes);
+        boolean invisible = invisibleMatcher.find();
+        otherAttributes = invisibleMatcher.replaceFirst("");
+
+        Matcher autoIncrementMatcher = AUTO_INCREMENT_PATTERN.matcher(otherAttributes);
+        boolean autoIncrement = autoIncrementMatcher.find();
+        otherAttributes = autoIncrementMatcher.replaceFirst("").trim();
+
+        if (!otherAttributes.isEmpty())
+        {
+            throw new IllegalStateException("Column `" + name + "` has attributes [" + otherAttributes + "] " +
+                "which can't be carried over to a MODIFY; the table won't be altered, so as not to lose them");
+        }
+
+        definition.append(nullable ? " NULL" : " NOT NULL");
+        if (srid != null)
+        {
+            definition.append(" SRID ").append(srid);
+        }
+
+        // A generated column has no default, and neither does a NOT NULL column without one
+        if (!generated && (defaultValue != null || nullable))
+        {
+            definition.append(" DEFAULT ");
+            if (defaultValue == null)
+            {
+                definition.append("NULL");
+            }
+            else if (isTemporal() && CURRENT_TIMESTAMP_PATTERN.matcher(defaultValue).matches() ||
+                type.startsWith("bit"))
+            {
+                // Before MySQL 8, CURRENT_TIMESTAMP isn't flagged as an expression. A bit default is shown as a
+                // literal, ex: b'101'.
+                definition.append(defaultValue);
+            }
+            else if (expressionDefault)
+            {
+                definition.append('(').append(defaultValue).append(')');
+            }
+            else
+            {
+                definition.append(quote(defaultValue, backslashEscapes));
+            }
+        }
+
+        if (onUpdate != null)
+        {
+            definition.append(" ON UPDATE ").append(onUpdate);
+        }
+        if (invisible)
+        {
+            definition.append(" INVISIBLE");
+        }
+        if (autoIncrement)
+        {
+            definition.append(" AUTO_INCREMENT");
+        }
+        return definition.toString();
+    }
+
+    /**
+     * @param backslashEscapes whether backslashes in string literals are escape chars, as they are unless the session's
+     *                         {@code sql_mode} includes {@code NO_BACKSLASH_ESCAPES}
+     * @return the value as a string literal
+     */
+    static String quote(String value, boolean backslashEscapes)
+    {
+        String escaped = backslashEscapes ? value.replace("\\", "\\\\") : value;
+        return '\'' + escaped.replace("'", "''") + '\'';
+    }
+
+    private boolean isTemporal()
+    {
+        return type.startsWith("timestamp") || type.startsWith("datetime");
+    }
+}
@@ -12,17 +12,24 @@ import jakarta.persistence.Table;
 import javax.sql.DataSource;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
+import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -38,7 +45,9 @@ import org.springframework.core.annotation.AliasFor;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.core.type.classreading.MetadataReader;
 import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Component;
 
 import com.eric_eldard.harpocrates.annotation.DataClassification;
@@ -55,7 +64,9 @@ import com.eric_eldard.harpocrates.util.FunctionUtils;
  *     <li>ensure a {@link DataSource} bean is available in your Spring context</li>
  *     <li>set the property {@code harpocrates.base-package-to-scan}</li>
  * </ol>
- * {@link DataClassifier#writeClassificationsToDb()} will run automatically on startup
+ * {@link DataClassifier#writeClassificationsToDb()} will run automatically on startup. Optionally, set
+ * {@code harpocrates.max-concurrent-tables} to the number of tables to update at a time (see
+ * {@link #DEFAULT_MAX_CONCURRENT_TABLES}).
  * <br><br>
  * <b>Manual setup:</b>
  * {@snippet :
@@ -67,25 +78,37 @@ public class DataClassifierImpl implements DataClassifier
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(DataClassifierImpl.class);
 
-    private static final String GET_TABLE_DEF = "SHOW CREATE TABLE `%s`;";
-
-    private static final String COMMENT_KEY = "dataClassification";
+    /**
+     * The number of tables updated at a time, each holding a connection while it is, unless configured otherwise
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_TABLES = 4;
 
     /**
-     * Match a column definition with optional COMMENT and optional trailing ",", and capture 3 groups:
-     * <ul>
-     *     <li>the column name, without surrounding backticks</li>
-     *     <li>the column definition, without the COMMENT statement or trailing comma</li>
-     *     <li>any comment, without the COMMENT statement and without surrounding single quotes</li>
-     * </ul>
-     * <a href="https://regex101.com/r/ifiUpx/1">Debug this regex</a>
+     * Everything needed to write a MODIFY for each column of the tables named in the IN list, which is filled in with a
+     * parameter per table. The SRS_ID column is filled in too, as it's {@code NULL} before MySQL 8.0.3, which doesn't
+     * have it.
      */
-    private static final Pattern COL_NAME_PATTERN =
-        Pattern.compile("^ *`(.+)` ((?:(?!COMMENT|,).)+),?(?:COMMENT ')?((?:(?!').)*)'?,?$");
+    private static final String GET_COLUMN_DEFS = """
+        SELECT TABLE_NAME, COLUMN_NAME, COLUMN_TYPE, CHARACTER_SET_NAME, COLLATION_NAME, %s, IS_NULLABLE,
+            COLUMN_DEFAULT, EXTRA, GENERATION_EXPRESSION, COLUMN_COMMENT
+        FROM INFORMATION_SCHEMA.COLUMNS
+        WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME IN (%s)
+        ORDER BY TABLE_NAME, ORDINAL_POSITION
+        """;
 
-    private static final Splitter.MapSplitter COMMENT_SPLITTER = Splitter.on(',').withKeyValueSeparator('=');
+    private static final String HAS_SRS_ID = """
+        SELECT COUNT(*)
+        FROM INFORMATION_SCHEMA.COLUMNS
+        WHERE TABLE_SCHEMA = 'information_schema' AND TABLE_NAME = 'COLUMNS' AND COLUMN_NAME = 'SRS_ID'
+        """;
+
+    private static final String GET_SQL_MODE = "SELECT @@SESSION.sql_mode";
 
-    private final DataSource dataSource;
+    private static final String NO_BACKSLASH_ESCAPES = "NO_BACKSLASH_ESCAPES";
+
+    private static final String COMMENT_KEY = "dataClassification";
+
+    private static final Splitter.MapSplitter COMMENT_SPLITTER = Splitter.on(',').withKeyValueSeparator('=');
 
     private final JdbcTemplate jdbcTemplate;
 
@@ -93,6 +116,8 @@ public class DataClassifierImpl implements DataClassifier
 
     private final boolean destroyAfterExecution;
 
+    private final int maxConcurrentTables;
+
     private BeanFactory beanFactory;
 
     /**
@@ -100,7 +125,16 @@ public class DataClassifierImpl implements DataClassifier
      */
     public DataClassifierImpl(DataSource dataSource, String basePackageToScan)
     {
-        this(dataSource, basePackageToScan, false);
+        this(dataSource, basePackageToScan, DEFAULT_MAX_CONCURRENT_TABLES);
+    }
+
+    /**
+     * Non-Spring constructor
+     * @param maxConcurrentTables The number of tables to update at a time
+     */
+    public DataClassifierImpl(DataSource dataSource, String basePackageToScan, int maxConcurrentTables)
+    {
+        this(dataSource, basePackageToScan, false, maxConcurrentTables);
     }
 
     /**
@@ -115,18 +149,28 @@ public class DataClassifierImpl implements DataClassifier
      *                              this {@link DataClassifier} after execution. DataClassifier runs on app startup, and
      *                              there is generally no reason to keep it around after it's written classifications to
      *                              your database.
+     *                              <br>
+     * @param maxConcurrentTables   The number of tables to read and update at a time, each on its own virtual thread
+     *                              and connection. Keep this well within the size of {@code dataSource}'s pool, if
+     *                              it's shared with the rest of your app.
      */
     @Autowired
     @SneakyThrows
     private DataClassifierImpl(@Qualifier("${harpocrates.datasource:dataSource}") DataSource dataSource,
                               @Value("${harpocrates.base-package-to-scan}") String basePackageToScan,
-                              @Value("${harpocrates.destroy-after-exec:true}") boolean destroyAfterExecution
+                              @Value("${harpocrates.destroy-after-exec:true}") boolean destroyAfterExecution,
+                              @Value("${harpocrates.max-concurrent-tables:" + DEFAULT_MAX_CONCURRENT_TABLES + "}")
+                              int maxConcurrentTables
     )
     {
-        this.dataSource = dataSource;
+        if (maxConcurrentTables < 1)
+        {
+            throw new IllegalArgumentException("maxConcurrentTables must be positive");
+        }
         this.jdbcTemplate = new JdbcTemplate(dataSource);
         this.basePackageToScan = basePackageToScan;
         this.destroyAfterExecution = destroyAfterExecution;
+        this.maxConcurrentTables = maxConcurrentTables;
 
         try (Connection tmpConn = dataSource.getConnection())
         {
@@ -136,10 +180,12 @@ public class DataClassifierImpl implements DataClassifier
                 - database:               {}
                 - base package to scan:   {}
                 - destroy DataClassifier: {}
+                - concurrent tables:      {}
                 """.stripIndent(),
                 tmpConn.getMetaData().getURL(),
                 basePackageToScan,
-                destroyAfterExecution
+                destroyAfterExecution,
+                maxConcurrentTables
             );
         }
     }
@@ -157,6 +203,8 @@ public class DataClassifierImpl implements DataClassifier
      *   "dsc": "User's primary email"
      * }
      * }</pre>
+     * Tables are updated concurrently, up to {@code maxConcurrentTables} at a time. A failure to update one table
+     * doesn't stop the others; once they've all been tried, the failures are thrown together.
      */
     @PostConstruct
     public void writeClassificationsToDb()
@@ -168,75 +216,96 @@ public class DataClassifierImpl implements DataClassifier
             classesWithDataClassification.size() == 1 ? "class" : "classes"
         );
 
-        for (BeanDefinition candidateClass : classesWithDataClassification)
+        List<Class<?>> classes = classesWithDataClassification.stream()
+            .map(BeanDefinition::getBeanClassName)
+            .<Class<?>>map(this::forClass)
+            .toList();
+        Map<String, List<ColumnDef>> columnDefsByTable = classes.isEmpty() ?
+            Map.of() :
+            getColumnDefs(classes.stream().map(this::getTableName).distinct().toList());
+
+        // Every table is attempted, whatever happens to the others, and then any failures are reported together
+        Map<String, Exception> failures = new ConcurrentSkipListMap<>();
+        Semaphore permits = new Semaphore(maxConcurrentTables);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
         {
-            String className = candidateClass.getBeanClassName();
-            Class<?> clazz = forClass(className);
-            String tableName = getTableName(clazz);
-            String tableDef = getTableDef(tableName);
-            Map<String, DataDefinition> dataDefsByField = getDataDefsByField(clazz);
-
-            LOGGER.info("Retrieved table definition for `{}`:\n\n{}\n", tableName, tableDef);
-
-            List<String> columnList = Arrays.stream(tableDef.split("\n"))
-                .filter(this::isColumnDef)
-                .toList();
-
-            StringBuilder alterStmt = new StringBuilder(tableDef.length());
-            alterStmt.append("ALTER TABLE `").append(tableName).append('`');
-
-            for (int i = 0; i < columnList.size(); i++)
+            for (Class<?> clazz : classes)
             {
-                String stmt = columnList.get(i);
-                Matcher matcher = COL_NAME_PATTERN.matcher(stmt);
-                if (matcher.find())
+                executor.execute(() ->
                 {
-                    String columnName = matcher.group(1);
-                    DataDefinition dataDefinition = dataDefsByField.get(columnName);
-
-                    if (dataDefinition != null)
+                    permits.acquireUninterruptibly();
+                    try
                     {
-                        LOGGER.debug(
-                            "Preparing MODIFY statement for the following `{}` column def:\n{}\n",
-                            tableName,
-                            matcher.group(0)
-                        );
-
-                        String colDef = matcher.group(2);
-                        String oldComment = matcher.group(3);
-                        String newComment = makeNewComment(oldComment, dataDefinition);
-                        boolean isLast = i == columnList.size() - 1;
-
-                        String modifyStmt = makeModifyStatement(columnName, colDef, newComment, isLast);
-
-                        alterStmt.append(modifyStmt);
-
-                        LOGGER.debug("Added MODIFY statement for `{}`:{}\n", tableName, modifyStmt);
+                        writeClassificationsToTable(clazz, columnDefsByTable);
                     }
-                    else
+                    catch (Exception ex)
                     {
-                        LOGGER.debug(
-                            "The `{}` column in this statement has no data classification and won't be modified:\n{}\n",
-                            tableName,
-                            matcher.group(0)
-                        );
+                        LOGGER.error("Failed to write data classifications for {}", clazz.getName(), ex);
+                        failures.put(clazz.getName(), ex);
                     }
-                }
-                else
-                {
-                    LOGGER.warn("The following column definition was incorrectly flagged for processing:\n{}\n", stmt);
-                }
+                    finally
+                    {
+                        permits.release();
+                    }
+                });
             }
+        }
 
-            // We're guaranteed to have at least one MODIFY at this point, so we will definitely fun the ALTER statement
-            String finalAlterStmt = alterStmt.toString();
-            LOGGER.info("Updating table definition for `{}`:\n\n{}\n", tableName, finalAlterStmt);
-            updateTable(finalAlterStmt);
+        if (!failures.isEmpty())
+        {
+            IllegalStateException ex = new IllegalStateException(String.format(
+                "Failed to write data classifications for %d of %d classes: %s",
+                failures.size(),
+                classes.size(),
+                failures.keySet()
+            ));
+            failures.values().forEach(ex::addSuppressed);
+            throw ex;
         }
 
         shutdown();
     }
 
+    private void writeClassificationsToTable(Class<?> clazz, Map<String, List<ColumnDef>> columnDefsByTable)
+    {
+        String tableName = getTableName(clazz);
+        List<ColumnDef> columnDefs = findColumnDefs(tableName, columnDefsByTable);
+        Map<String, DataDefinition> dataDefsByField = getDataDefsByField(clazz);
+
+        Map<ColumnDef, String> newComments = new LinkedHashMap<>();
+        for (ColumnDef columnDef : columnDefs)
+        {
+            DataDefinition dataDefinition = dataDefsByField.get(columnDef.getName());
+
+            if (dataDefinition == null)
+            {
+                LOGGER.debug(
+                    "The `{}`.`{}` column has no data classification and won't be modified",
+                    tableName,
+                    columnDef.getName()
+                );
+            }
+            else if (isClassifiedAs(columnDef.getComment(), dataDefinition))
+            {
+                LOGGER.debug("The `{}`.`{}` column is already classified and won't be modified", tableName,
+                    columnDef.getName());
+            }
+            else
+            {
+                newComments.put(columnDef, makeNewComment(columnDef.getComment(), dataDefinition));
+            }
+        }
+
+        // A MODIFY can rebuild the table, and holds a metadata lock while it does, so don't run one for nothing
+        if (newComments.isEmpty())
+        {
+            LOGGER.info("Data classifications for `{}` are up to date; it won't be altered", tableName);
+            return;
+        }
+
+        updateTable(tableName, newComments);
+    }
+
     private Set<BeanDefinition> getClassesWithDataClassifications()
     {
         ClassPathScanningCandidateComponentProvider classPathScanner =
@@ -305,12 +374,86 @@ public class DataClassifierImpl implements DataClassifier
         );
     }
 
-    @SneakyThrows
-    private String getTableDef(String tableName)
+    /**
+     * Reads the columns of every table at once, so there's a single query for them however many tables there are
+     * @return each table's columns, in order, keyed by its name as the database has it
+     */
+    private Map<String, List<ColumnDef>> getColumnDefs(List<String> tableNames)
+    {
+        Integer srsIdColumns = jdbcTemplate.queryForObject(HAS_SRS_ID, Integer.class);
+        String query = String.format(
+            GET_COLUMN_DEFS,
+            srsIdColumns != null && srsIdColumns > 0 ? "SRS_ID" : "NULL AS SRS_ID",
+            String.join(", ", Collections.nCopies(tableNames.size(), "?"))
+        );
+
+        Map<String, List<ColumnDef>> columnDefsByTable = new HashMap<>();
+        jdbcTemplate.query(
+            query,
+            (RowCallbackHandler) rs -> columnDefsByTable
+                .computeIfAbsent(rs.getString("TABLE_NAME"), tableName -> new ArrayList<>())
+                .add(new ColumnDef(
+                    rs.getString("COLUMN_NAME"),
+                    rs.getString("COLUMN_TYPE"),
+                    rs.getString("CHARACTER_SET_NAME"),
+                    rs.getString("COLLATION_NAME"),
+                    rs.getString("SRS_ID"),
+                    "YES".equals(rs.getString("IS_NULLABLE")),
+                    rs.getString("COLUMN_DEFAULT"),
+                    Strings.nullToEmpty(rs.getString("EXTRA")),
+                    rs.getString("GENERATION_EXPRESSION"),
+                    Strings.nullToEmpty(rs.getString("COLUMN_COMMENT"))
+                )),
+            tableNames.toArray()
+        );
+
+        LOGGER.info("Retrieved column definitions for {} of {} tables", columnDefsByTable.size(), tableNames.size());
+        return columnDefsByTable;
+    }
+
+    /**
+     * Table names are case-insensitive on some platforms (see {@code lower_case_table_names}), so if there's no table
+     * by exactly this name, we'll take one whose name differs only in case, just as {@code ALTER TABLE} would
+     */
+    private static List<ColumnDef> findColumnDefs(String tableName, Map<String, List<ColumnDef>> columnDefsByTable)
+    {
+        List<ColumnDef> columnDefs = columnDefsByTable.get(tableName);
+        if (columnDefs == null)
+        {
+            columnDefs = columnDefsByTable.entrySet().stream()
+                .filter(entry -> entry.getKey().equalsIgnoreCase(tableName))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Table `" + tableName + "` not found in the database"));
+        }
+        return columnDefs;
+    }
+
+    /**
+     * @param comment a column comment, as stored (that is, without quotes or escapes)
+     * @return {@code true} if the comment already holds this data definition. Definitions are compared as json, so it
+     * doesn't matter how the comment's was encoded, or whether its empty values were written out.
+     */
+    private static boolean isClassifiedAs(String comment, DataDefinition dataDefinition)
     {
-        // Can't JDBC-template-parameterize this because it adds single quotes we don't want
-        String query = String.format(GET_TABLE_DEF, tableName);
-        return (String) jdbcTemplate.queryForMap(query).get("Create Table");
+        if (Strings.isNullOrEmpty(comment))
+        {
+            return false;
+        }
+
+        try
+        {
+            String encodedJson = COMMENT_SPLITTER.split(comment).get(COMMENT_KEY);
+            return encodedJson != null && DataDefinition.from(URLDecoder.decode(encodedJson, Charset.defaultCharset()))
+                .toJson()
+                .equals(dataDefinition.toJson());
+        }
+        catch (RuntimeException ex)
+        {
+            // Not one of ours, or garbled; either way, it's rewritten
+            LOGGER.debug("Unable to read the data classification in comment [{}]", comment, ex);
+            return false;
+        }
     }
 
     private static String makeNewComment(String oldComment, DataDefinition dataDefinition)
@@ -337,29 +480,47 @@ public class DataClassifierImpl implements DataClassifier
             .collect(Collectors.joining(","));
     }
 
-    private static String makeModifyStatement(String columnName, String colDef, String newComment, boolean isLast)
+    /**
+     * @param backslashEscapes see {@link ColumnDef#quote(String, boolean)}
+     */
+    private static String makeModifyStatement(ColumnDef columnDef, String newComment, boolean backslashEscapes)
     {
         return String.format(
-            "\nMODIFY COLUMN `%s` %s COMMENT '%s'%s",
-            columnName,
-            colDef,
-            newComment,
-            isLast ? ';' : ','
+            "\nMODIFY COLUMN `%s` %s COMMENT %s",
+            columnDef.getName(),
+            columnDef.toDefinition(backslashEscapes),
+            ColumnDef.quote(newComment, backslashEscapes)
         );
     }
 
-    @SneakyThrows
-    private void updateTable(String alterStmt)
+    /**
+     * DDL can't take parameters, so comments and defaults are written into the ALTER as literals. They're escaped for
+     * the {@code sql_mode} of the session which runs it.
+     * @param newComments the new comment for each column to modify
+     */
+    private void updateTable(String tableName, Map<ColumnDef, String> newComments)
     {
-        try (PreparedStatement statement = dataSource.getConnection().prepareStatement(alterStmt))
+        // Through the template, so the connection is released as soon as the statement's run
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection ->
         {
-            statement.execute();
-        }
-    }
+            boolean backslashEscapes;
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(GET_SQL_MODE))
+            {
+                backslashEscapes = !(rs.next() && Strings.nullToEmpty(rs.getString(1)).contains(NO_BACKSLASH_ESCAPES));
+            }
 
-    private boolean isColumnDef(String stmt)
-    {
-        return stmt.matches("^ *`.+`.*");
+            String alterStmt = newComments.entrySet().stream()
+                .map(entry -> makeModifyStatement(entry.getKey(), entry.getValue(), backslashEscapes))
+                .collect(Collectors.joining(",", "ALTER TABLE `" + tableName + '`', ";"));
+            LOGGER.info("Updating table definition for `{}`:\n\n{}\n", tableName, alterStmt);
+
+            try (Statement statement = connection.createStatement())
+            {
+                statement.execute(alterStmt);
+            }
+            return null;
+        });
     }
 
     private void shutdown()
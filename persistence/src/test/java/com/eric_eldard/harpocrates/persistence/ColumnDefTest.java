@@ -0,0 +1,128 @@
+package com.eric_eldard.harpocrates.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Columns are described as MySQL 8 has them in {@code INFORMATION_SCHEMA.COLUMNS}
+ */
+class ColumnDefTest
+{
+    @Test
+    void writesLiteralDefaultWithCharsetAndCollation()
+    {
+        ColumnDef column =
+            new ColumnDef("status", "varchar(20)", "utf8mb4", "utf8mb4_0900_ai_ci", null, true, "n/a", "", null, "");
+
+        assertEquals("varchar(20) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL DEFAULT 'n/a'",
+            column.toDefinition(true));
+    }
+
+    @Test
+    void escapesBackslashesInDefaultUnlessNoBackslashEscapes()
+    {
+        ColumnDef column = text("it's C:\\dir\\");
+
+        assertEquals("varchar(99) NULL DEFAULT 'it''s C:\\\\dir\\\\'", column.toDefinition(true));
+        assertEquals("varchar(99) NULL DEFAULT 'it''s C:\\dir\\'", column.toDefinition(false));
+    }
+
+    @Test
+    void writesNullDefaultForNullableColumn()
+    {
+        assertEquals("varchar(99) NULL DEFAULT NULL", text(null).toDefinition(true));
+    }
+
+    @Test
+    void writesNoDefaultForNotNullColumnWithoutOne()
+    {
+        ColumnDef column = new ColumnDef("id", "int", null, null, null, false, null, "auto_increment", null, "");
+
+        assertEquals("int NOT NULL AUTO_INCREMENT", column.toDefinition(true));
+    }
+
+    /**
+     * MySQL 8 flags CURRENT_TIMESTAMP as an expression default, but it's written without the parens others need
+     */
+    @Test
+    void writesGeneratedCurrentTimestampDefault()
+    {
+        ColumnDef created = new ColumnDef("created", "timestamp", null, null, null, false, "CURRENT_TIMESTAMP",
+            "DEFAULT_GENERATED", null, "");
+        ColumnDef updated = new ColumnDef("updated", "datetime(3)", null, null, null, true, "CURRENT_TIMESTAMP(3)",
+            "DEFAULT_GENERATED on update CURRENT_TIMESTAMP(3)", null, "");
+
+        assertEquals("timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP", created.toDefinition(true));
+        assertEquals("datetime(3) NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)",
+            updated.toDefinition(true));
+    }
+
+    /**
+     * Before MySQL 8, CURRENT_TIMESTAMP isn't flagged at all
+     */
+    @Test
+    void writesUnflaggedCurrentTimestampDefault()
+    {
+        ColumnDef column = new ColumnDef("updated", "timestamp", null, null, null, false, "CURRENT_TIMESTAMP",
+            "on update CURRENT_TIMESTAMP", null, "");
+
+        assertEquals("timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP",
+            column.toDefinition(true));
+    }
+
+    @Test
+    void writesExpressionDefaultInParens()
+    {
+        ColumnDef column = new ColumnDef("tags", "json", null, null, null, true, "json_array()", "DEFAULT_GENERATED",
+            null, "");
+
+        assertEquals("json NULL DEFAULT (json_array())", column.toDefinition(true));
+    }
+
+    @Test
+    void writesStoredAndVirtualGeneratedColumnsWithoutDefault()
+    {
+        ColumnDef stored = new ColumnDef("total", "int", null, null, null, true, null, "STORED GENERATED",
+            "(`price` * `qty`)", "");
+        ColumnDef virtual = new ColumnDef("total", "int", null, null, null, false, null, "VIRTUAL GENERATED INVISIBLE",
+            "(`price` * `qty`)", "");
+
+        assertEquals("int GENERATED ALWAYS AS ((`price` * `qty`)) STORED NULL", stored.toDefinition(true));
+        assertEquals("int GENERATED ALWAYS AS ((`price` * `qty`)) VIRTUAL NOT NULL INVISIBLE",
+            virtual.toDefinition(true));
+    }
+
+    @Test
+    void writesBitDefaultAsLiteral()
+    {
+        ColumnDef column = new ColumnDef("flags", "bit(3)", null, null, null, false, "b'101'", "", null, "");
+
+        assertEquals("bit(3) NOT NULL DEFAULT b'101'", column.toDefinition(true));
+    }
+
+    @Test
+    void writesSrid()
+    {
+        ColumnDef column = new ColumnDef("location", "point", null, null, "4326", false, null, "", null, "");
+
+        assertEquals("point NOT NULL SRID 4326", column.toDefinition(true));
+    }
+
+    @Test
+    void rejectsUnknownAttributes()
+    {
+        ColumnDef column = new ColumnDef("id", "int", null, null, null, false, null, "auto_increment SOMETHING_NEW",
+            null, "");
+
+        IllegalStateException ex = assertThrows(IllegalStateException.class, () -> column.toDefinition(true));
+        assertEquals("Column `id` has attributes [SOMETHING_NEW] which can't be carried over to a MODIFY; the table " +
+            "won't be altered, so as not to lose them", ex.getMessage());
+    }
+
+    private static ColumnDef text(String defaultValue)
+    {
+        return new ColumnDef("note", "varchar(99)", null, null, null, true, defaultValue, "", null, "");
+    }
+}